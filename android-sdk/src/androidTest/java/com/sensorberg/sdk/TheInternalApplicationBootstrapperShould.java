@@ -8,6 +8,8 @@ import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.resolver.ResolverConfiguration;
 import com.sensorberg.sdk.scanner.BeaconActionHistoryPublisher;
+import com.sensorberg.sdk.scanner.HistoryStore;
+import com.sensorberg.sdk.settings.SettingsManager;
 import com.sensorberg.sdk.testUtils.DumbSucessTransport;
 import com.sensorberg.sdk.testUtils.TestHandlerManager;
 import com.sensorberg.sdk.testUtils.TestServiceScheduler;
@@ -63,11 +65,19 @@ public class TheInternalApplicationBootstrapperShould {
     @Inject
     Gson gson;
 
+    @Inject
+    HistoryStore historyStore;
+
+    @Inject
+    @Named("dummyTransportSettingsManager")
+    SettingsManager testSettingsManager;
+
     @Before
     public void setUp() throws Exception {
         ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
 
-        beaconActionHistoryPublisher = new BeaconActionHistoryPublisher(mock(Transport.class),testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        beaconActionHistoryPublisher = new BeaconActionHistoryPublisher(mock(Transport.class),testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson, historyStore,
+                testSettingsManager);
         beaconActionHistoryPublisher.deleteAllData();
 
         tested = new InternalApplicationBootstrapper(new DumbSucessTransport(), testServiceScheduler, testHandlerManager,
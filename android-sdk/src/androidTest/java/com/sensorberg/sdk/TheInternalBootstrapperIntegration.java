@@ -14,9 +14,9 @@ import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
 import com.sensorberg.sdk.internal.transport.RetrofitApiServiceImpl;
 import com.sensorberg.sdk.internal.transport.RetrofitApiTransport;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
-import com.sensorberg.sdk.internal.transport.model.HistoryBody;
 import com.sensorberg.sdk.model.server.ResolveAction;
 import com.sensorberg.sdk.model.server.ResolveResponse;
+import com.sensorberg.sdk.model.server.Timeframe;
 import com.sensorberg.sdk.presenter.LocalBroadcastManager;
 import com.sensorberg.sdk.presenter.ManifestParser;
 import com.sensorberg.sdk.resolver.ResolverConfiguration;
@@ -41,11 +41,13 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import okhttp3.MediaType;
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.mock.Calls;
 import util.TestConstants;
@@ -143,7 +145,7 @@ public class TheInternalBootstrapperIntegration {
                 .thenReturn(Calls.response(RESOLVE_RESPONSE_WITH_REPORT_IMMEDIATELY));
 
         //enqueue the reporting result
-        Mockito.when(mockRetrofitApiService.publishHistory(Mockito.any(HistoryBody.class)))
+        Mockito.when(mockRetrofitApiService.publishHistory(Mockito.any(RequestBody.class)))
                 .thenReturn(Calls.response(PUBLISH_HISTORY_RESPONSE));
 
         System.out.println("TheInternalBootstrapperIntegration start test_an_instant_action_workflow");
@@ -216,4 +218,30 @@ public class TheInternalBootstrapperIntegration {
 
         spiedInternalApplicationBootstrapper.updateBeaconLayout();
     }
+
+    @Test
+    public void refresh_the_layout_when_a_timeframe_starts_later() {
+        long now = TimeUnit.DAYS.toMillis(1);
+        testHandlerManager.getCustomClock().setNowInMillis(now);
+        ResolveResponse layout = new ResolveResponse.Builder()
+                .withActions(Arrays.asList(
+                        new ResolveAction.Builder()
+                                .withBeacons(Arrays.asList(TestConstants.ANY_BEACON_ID.getPid()))
+                                .withTrigger(ScanEventType.ENTRY.getMask())
+                                .withUuid(ANY_UUID)
+                                .withTimeframes(Arrays.asList(new Timeframe(now + TimeUnit.HOURS.toMillis(1), null)))
+                                .build()
+                ))
+                .build();
+        Mockito.when(mockRetrofitApiService.updateBeaconLayout(Matchers.<TreeMap<String, String>>any())).thenReturn(Calls.response(layout));
+
+        TestServiceScheduler spiedServiceScheduler = Mockito.spy(testServiceScheduler);
+        InternalApplicationBootstrapper tested = new InternalApplicationBootstrapper(spiedTransportWithMockService, spiedServiceScheduler,
+                testHandlerManager, testHandlerManager.getCustomClock(), bluetoothPlatform, new ResolverConfiguration());
+
+        tested.updateBeaconLayout();
+
+        Mockito.verify(spiedServiceScheduler, Mockito.timeout(5000))
+                .scheduleOnce(SensorbergServiceMessage.MSG_BEACON_LAYOUT_UPDATE, TimeUnit.HOURS.toMillis(1));
+    }
 }
@@ -218,6 +218,19 @@ public class ActionFactoryTest {
         Assertions.assertThat(result.getType()).isEqualTo(ActionType.SILENT);
     }
 
+    @Test
+    public void should_create_a_new_instance_of_the_action_for_every_resolution() throws IOException {
+        String string = Utils.getRawResourceAsString(action_factory_payload_002_object, context);
+        ResolveAction input = gson.fromJson(string, ResolveAction.class);
+
+        Action first = ResolveAction.BEACON_EVENT_MAPPER.map(input).getAction();
+        Action second = ResolveAction.BEACON_EVENT_MAPPER.map(input).getAction();
+
+        Assertions.assertThat(second.getUuid()).isEqualTo(first.getUuid());
+        Assertions.assertThat(second.getPayload()).isEqualTo(first.getPayload());
+        Assertions.assertThat(second.getInstanceUuid()).isNotEqualTo(first.getInstanceUuid());
+    }
+
     private Action getAction(int resourceID) throws IOException {
         String string = Utils.getRawResourceAsString(resourceID, context);
         ResolveAction input = gson.fromJson(string, ResolveAction.class);
@@ -10,15 +10,20 @@ import com.sensorberg.sdk.TheInternalApplicationBootstrapperShould;
 import com.sensorberg.sdk.TheInternalBootstrapperIntegration;
 import com.sensorberg.sdk.action.ActionFactoryTest;
 import com.sensorberg.sdk.action.TheActionShould;
+import com.sensorberg.sdk.internal.TheBluetoothCaptureShould;
+import com.sensorberg.sdk.internal.TheIBeaconScanFilterShould;
 import com.sensorberg.sdk.internal.TheIntentSchedulingBeUpdateable;
 import com.sensorberg.sdk.internal.TheIntentSchedulingShould;
 import com.sensorberg.sdk.internal.http.HttpStackShouldCacheTheSettings;
 import com.sensorberg.sdk.internal.http.TransportShould;
 import com.sensorberg.sdk.internal.transport.ApiServiceInGeneralShould;
 import com.sensorberg.sdk.internal.transport.ApiServiceShould;
+import com.sensorberg.sdk.internal.transport.TheCompactHistoryShould;
+import com.sensorberg.sdk.internal.transport.TheLayoutSnapshotStoreShould;
 import com.sensorberg.sdk.location.LocationHelperTest;
 import com.sensorberg.sdk.model.persistence.TheBeaconActionShould;
 import com.sensorberg.sdk.model.persistence.TheBeaconScanShould;
+import com.sensorberg.sdk.model.server.ResolveActionBenchmark;
 import com.sensorberg.sdk.model.server.ResolveActionTest;
 import com.sensorberg.sdk.model.server.TheResolveResponse;
 import com.sensorberg.sdk.resolver.TheResolveResponseShould;
@@ -32,6 +37,7 @@ import com.sensorberg.sdk.scanner.TheBeaconMapShould;
 import com.sensorberg.sdk.scanner.TheBluetoothChangesShould;
 import com.sensorberg.sdk.scanner.TheDefaultScannerSetupShould;
 import com.sensorberg.sdk.scanner.TheForegroundScannerShould;
+import com.sensorberg.sdk.scanner.TheHistoryStoreShould;
 import com.sensorberg.sdk.scanner.TheScannerWithRestoredStateShould;
 import com.sensorberg.sdk.scanner.TheScannerWithTimeoutsShould;
 import com.sensorberg.sdk.scanner.TheScannerWithoutPausesShould;
@@ -93,6 +99,8 @@ public interface TestComponent extends Component {
 
     void inject(TheSettingsShould theSettingsShould);
 
+    void inject(ResolveActionBenchmark resolveActionBenchmark);
+
     void inject(ResolveActionTest resolveActionTest);
 
     void inject(TheResolveResponse theResolveResponse);
@@ -124,6 +132,16 @@ public interface TestComponent extends Component {
 
     void inject(LocationHelperTest locationHelperTest);
 
+    void inject(TheIBeaconScanFilterShould theIBeaconScanFilterShould);
+
+    void inject(TheBluetoothCaptureShould theBluetoothCaptureShould);
+
+    void inject(TheLayoutSnapshotStoreShould theLayoutSnapshotStoreShould);
+
+    void inject(TheHistoryStoreShould theHistoryStoreShould);
+
+    void inject(TheCompactHistoryShould theCompactHistoryShould);
+
     @NoArgsConstructor(access = AccessLevel.PRIVATE)
     final class Initializer {
 
@@ -0,0 +1,146 @@
+package com.sensorberg.sdk.internal;
+
+import com.sensorberg.sdk.SensorbergTestApplication;
+import com.sensorberg.sdk.di.TestComponent;
+import com.sensorberg.sdk.internal.interfaces.AddressedScanCallback;
+import com.sensorberg.sdk.scanner.Scanner;
+import com.sensorberg.sdk.settings.SettingsManager;
+import com.sensorberg.sdk.testUtils.DumbSucessTransport;
+import com.sensorberg.sdk.testUtils.TestBluetoothPlatform;
+import com.sensorberg.sdk.testUtils.TestFileManager;
+import com.sensorberg.sdk.testUtils.TestHandlerManager;
+import com.sensorberg.sdk.testUtils.TestServiceScheduler;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.SharedPreferences;
+import android.support.test.runner.AndroidJUnit4;
+
+import java.io.File;
+
+import javax.inject.Inject;
+
+import util.Utils;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static util.Utils.wrapWithZeroBytes;
+
+@RunWith(AndroidJUnit4.class)
+public class TheBluetoothCaptureShould {
+
+    @Inject
+    TestFileManager testFileManager;
+
+    @Inject
+    TestServiceScheduler testServiceScheduler;
+
+    @Inject
+    TestHandlerManager testHandlerManager;
+
+    @Inject
+    TestBluetoothPlatform bluetoothPlatform;
+
+    @Inject
+    SharedPreferences sharedPreferences;
+
+    private File captureFile;
+
+    @Before
+    public void setUp() throws Exception {
+        ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
+        sharedPreferences.edit().clear().commit();
+        testHandlerManager.getCustomClock().setNowInMillis(0);
+        captureFile = File.createTempFile("capture" + System.currentTimeMillis(), null);
+    }
+
+    @Test
+    public void record_what_the_platform_delivers() throws Exception {
+        RecordingBluetoothPlatform tested = new RecordingBluetoothPlatform(bluetoothPlatform, testHandlerManager.getCustomClock(), captureFile);
+        BluetoothAdapter.LeScanCallback callback = mock(BluetoothAdapter.LeScanCallback.class);
+        tested.startLeScan(callback);
+
+        testHandlerManager.getCustomClock().setNowInMillis(1000);
+        bluetoothPlatform.fakeIBeaconSighting();
+        testHandlerManager.getCustomClock().setNowInMillis(1500);
+        bluetoothPlatform.fakeAlienIBeaconSighting();
+        tested.stopLeScan();
+        tested.close();
+
+        verify(callback, times(2)).onLeScan(any(BluetoothDevice.class), eq(-100), any(byte[].class));
+
+        BluetoothCapture.Reader reader = new BluetoothCapture.Reader(captureFile);
+        Assertions.assertThat(reader.next()).isTrue();
+        Assertions.assertThat(reader.getTimestamp()).isEqualTo(1000);
+        Assertions.assertThat(reader.getRssi()).isEqualTo(-100);
+        Assertions.assertThat(reader.getAddress()).isNull();
+        Assertions.assertThat(reader.getScanRecord()).isEqualTo(wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_BEACON_1, 62));
+        Assertions.assertThat(reader.next()).isTrue();
+        Assertions.assertThat(reader.getTimestamp()).isEqualTo(1500);
+        Assertions.assertThat(reader.getScanRecord()).isEqualTo(wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1, 62));
+        Assertions.assertThat(reader.next()).isFalse();
+        reader.close();
+    }
+
+    @Test
+    public void keep_the_device_address() throws Exception {
+        BluetoothCapture.Writer writer = new BluetoothCapture.Writer(captureFile);
+        writer.write(42, "C4:0A:F3:12:34:56", -70, TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+        writer.close();
+
+        BluetoothCapture.Reader reader = new BluetoothCapture.Reader(captureFile);
+        Assertions.assertThat(reader.next()).isTrue();
+        Assertions.assertThat(reader.getAddress()).isEqualTo("C4:0A:F3:12:34:56");
+        Assertions.assertThat(reader.getRssi()).isEqualTo(-70);
+        reader.close();
+    }
+
+    @Test
+    public void replay_the_device_address() throws Exception {
+        BluetoothCapture.Writer writer = new BluetoothCapture.Writer(captureFile);
+        writer.write(1000, "C4:0A:F3:12:34:56", -70, TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+        writer.close();
+        ReplayBluetoothPlatform tested = new ReplayBluetoothPlatform(captureFile, testHandlerManager.getCustomClock());
+        AddressedScanCallback callback = mock(AddressedScanCallback.class);
+        tested.startLeScan(callback);
+
+        tested.replay(ReplayBluetoothPlatform.AS_FAST_AS_POSSIBLE, new ReplayBluetoothPlatform.Report());
+
+        verify(callback).onLeScan(eq("C4:0A:F3:12:34:56"), eq(-70), any(byte[].class));
+    }
+
+    @Test
+    public void replay_a_capture_through_the_scanner_in_virtual_time() throws Exception {
+        BluetoothCapture.Writer writer = new BluetoothCapture.Writer(captureFile);
+        writer.write(1000, null, -70, wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_BEACON_1, 62));
+        writer.write(2000, null, -72, wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_BEACON_1, 62));
+        writer.write(3000, null, -60, TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_1);
+        writer.write(2000 + Utils.EXIT_TIME + 1000, null, -60, TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_1);
+        writer.close();
+
+        ReplayBluetoothPlatform replay = new ReplayBluetoothPlatform(captureFile, testHandlerManager.getCustomClock());
+        Scanner scanner = new Scanner(new SettingsManager(new DumbSucessTransport(), sharedPreferences), false,
+                testHandlerManager.getCustomClock(), testFileManager, testServiceScheduler, testHandlerManager, replay);
+        ReplayBluetoothPlatform.Report report = new ReplayBluetoothPlatform.Report();
+        scanner.addScannerListener(report);
+        scanner.start();
+
+        replay.replay(ReplayBluetoothPlatform.AS_FAST_AS_POSSIBLE, report);
+
+        Assertions.assertThat(report.getRecords()).isEqualTo(4);
+        Assertions.assertThat(report.getEntries()).isEqualTo(1);
+        Assertions.assertThat(report.getExits()).isEqualTo(1);
+        Assertions.assertThat(report.getExitLatency().getMean()).isEqualTo(Utils.EXIT_TIME + 1000);
+        // the background scan time is over before the last record, so it arrives while the scanner pauses
+        Assertions.assertThat(report.getDropped()).isEqualTo(1);
+        Assertions.assertThat(report.getScannerNanos().getCount()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,137 @@
+package com.sensorberg.sdk.internal;
+
+import com.sensorberg.sdk.SensorbergTestApplication;
+import com.sensorberg.sdk.di.TestComponent;
+import com.sensorberg.sdk.scanner.BeaconFrameTable;
+import com.sensorberg.sdk.scanner.EddystoneFrameParser;
+import com.sensorberg.sdk.scanner.IBeaconFrameParser;
+import com.sensorberg.sdk.scanner.Scanner;
+import com.sensorberg.sdk.scanner.ScannerListener;
+import com.sensorberg.sdk.settings.SettingsManager;
+import com.sensorberg.sdk.testUtils.DumbSucessTransport;
+import com.sensorberg.sdk.testUtils.TestBluetoothPlatform;
+import com.sensorberg.sdk.testUtils.TestFileManager;
+import com.sensorberg.sdk.testUtils.TestHandlerManager;
+import com.sensorberg.sdk.testUtils.TestServiceScheduler;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import android.content.SharedPreferences;
+import android.support.test.runner.AndroidJUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Inject;
+
+import static com.sensorberg.sdk.testUtils.SensorbergMatcher.hasBeaconId;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@RunWith(AndroidJUnit4.class)
+public class TheIBeaconScanFilterShould {
+
+    @Inject
+    TestFileManager testFileManager;
+
+    @Inject
+    TestServiceScheduler testServiceScheduler;
+
+    @Inject
+    TestHandlerManager testHandlerManager;
+
+    @Inject
+    TestBluetoothPlatform bluetoothPlatform;
+
+    @Inject
+    SharedPreferences sharedPreferences;
+
+    private static final BeaconFrameTable IBEACON_AND_EDDYSTONE = new BeaconFrameTable.Builder()
+            .add(new IBeaconFrameParser())
+            .add(new EddystoneFrameParser(EddystoneFrameParser.FRAME_UID))
+            .build();
+
+    private IBeaconScanFilter tested;
+
+    @Before
+    public void setUp() throws Exception {
+        ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
+        tested = new IBeaconScanFilter(Collections.singletonList(TestBluetoothPlatform.SENSORBERG_PROXIMITY_UUID_0));
+    }
+
+    @Test
+    public void build_the_manufacturer_data_after_the_company_id() {
+        Assertions.assertThat(tested.getManufacturerData()).hasSize(1);
+        byte[] data = tested.getManufacturerData().get(0);
+        Assertions.assertThat(data).hasSize(18);
+        Assertions.assertThat(data[0]).isEqualTo((byte) 0x02);
+        Assertions.assertThat(data[1]).isEqualTo((byte) 0x15);
+        Assertions.assertThat(data[2]).isEqualTo((byte) 0x73);
+        Assertions.assertThat(tested.getManufacturerDataMask()).hasSize(18);
+    }
+
+    @Test
+    public void skip_invalid_proximity_uuids() {
+        tested = new IBeaconScanFilter(Arrays.asList("invalid", "7367672374000000FFFF0000FFFF000Z", TestBluetoothPlatform.ALIEN_PROXIMITY_UUID));
+
+        Assertions.assertThat(tested.getManufacturerData()).hasSize(1);
+    }
+
+    @Test
+    public void match_only_beacons_with_the_proximity_uuids() {
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_BEACON_1)).isTrue();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_BEACON_WITH_ACCENT_STYLE_BATTERY)).isTrue();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1)).isFalse();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_ALTBEACON_WITH_FLAGS)).isFalse();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_2)).isFalse();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_4)).isFalse();
+    }
+
+    @Test
+    public void match_everything_without_proximity_uuids() {
+        tested = new IBeaconScanFilter(Collections.<String>emptyList());
+
+        Assertions.assertThat(tested.isEmpty()).isTrue();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1)).isTrue();
+    }
+
+    @Test
+    public void let_eddystone_frames_through_with_the_proximity_uuids() {
+        tested = new IBeaconScanFilter(Collections.singletonList(TestBluetoothPlatform.SENSORBERG_PROXIMITY_UUID_0), IBEACON_AND_EDDYSTONE);
+
+        Assertions.assertThat(tested.isEmpty()).isFalse();
+        Assertions.assertThat(tested.getServiceUUIDs()).containsOnly(0xFEAA);
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_BEACON_1)).isTrue();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_EDDYSTONE_UID_1)).isTrue();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1)).isFalse();
+    }
+
+    @Test
+    public void match_everything_while_the_frame_table_has_altbeacon() {
+        tested = new IBeaconScanFilter(Collections.singletonList(TestBluetoothPlatform.SENSORBERG_PROXIMITY_UUID_0), BeaconFrameTable.DEFAULT);
+
+        Assertions.assertThat(tested.isEmpty()).isTrue();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_ALTBEACON_WITH_FLAGS)).isTrue();
+        Assertions.assertThat(tested.matches(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1)).isTrue();
+    }
+
+    @Test
+    public void keep_beacons_of_other_accounts_away_from_the_scanner() {
+        Scanner scanner = new Scanner(new SettingsManager(new DumbSucessTransport(), sharedPreferences), false,
+                testHandlerManager.getCustomClock(), testFileManager, testServiceScheduler, testHandlerManager, bluetoothPlatform);
+        ScannerListener mockListener = mock(ScannerListener.class);
+        scanner.addScannerListener(mockListener);
+        scanner.setBeaconFrameTable(IBEACON_AND_EDDYSTONE);
+        scanner.start();
+
+        bluetoothPlatform.setProximityUUIDs(Collections.singletonList(TestBluetoothPlatform.SENSORBERG_PROXIMITY_UUID_0));
+        bluetoothPlatform.fakeBatchedIBeaconSightings(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1, TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+
+        verify(mockListener).onScanEventDetected(hasBeaconId(TestBluetoothPlatform.EXPECTED_BEACON_1));
+        verifyNoMoreInteractions(mockListener);
+    }
+}
@@ -29,6 +29,7 @@ import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 
@@ -46,6 +47,8 @@ import javax.inject.Inject;
 import okhttp3.MediaType;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
 import retrofit2.mock.Calls;
 import util.TestConstants;
 import util.Utils;
@@ -145,6 +148,51 @@ public class TransportShould {
         });
     }
 
+    @Test
+    public void resolve_against_the_current_layout_without_fetching_it_again() throws Exception {
+        ResolveResponse response = gson.fromJson(
+                Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_response_005, InstrumentationRegistry.getContext()),
+                ResolveResponse.class);
+        Mockito.when(mockRetrofitApiService.getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any()))
+                .thenReturn(Calls.response(response), Calls.response(response));
+        BeaconResponseHandler mockHandler = mock(BeaconResponseHandler.class);
+
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, mockHandler);
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, mockHandler);
+
+        Mockito.verify(mockRetrofitApiService, times(1)).getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any());
+        Mockito.verify(mockHandler, times(2)).onSuccess(Matchers.<List<BeaconEvent>>any());
+
+        tested.invalidateBeaconLayout();
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, mockHandler);
+
+        Mockito.verify(mockRetrofitApiService, times(2)).getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void share_one_layout_request_between_concurrent_resolutions() throws Exception {
+        ResolveResponse response = gson.fromJson(
+                Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_response_005, InstrumentationRegistry.getContext()),
+                ResolveResponse.class);
+        Call<ResolveResponse> pendingCall = mock(Call.class);
+        Mockito.when(mockRetrofitApiService.getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any()))
+                .thenReturn(pendingCall);
+        BeaconResponseHandler firstHandler = mock(BeaconResponseHandler.class);
+        BeaconResponseHandler secondHandler = mock(BeaconResponseHandler.class);
+
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, firstHandler);
+        tested.getBeacon(TestConstants.BEACON_SCAN_ENTRY_EVENT(clock.now()), null, secondHandler);
+
+        ArgumentCaptor<Callback> callback = ArgumentCaptor.forClass(Callback.class);
+        Mockito.verify(pendingCall, times(1)).enqueue(callback.capture());
+        callback.getValue().onResponse(pendingCall, Response.success(response));
+
+        Mockito.verify(mockRetrofitApiService, times(1)).getBeacon(anyString(), anyString(), Matchers.<TreeMap<String, String>>any());
+        Mockito.verify(firstHandler).onSuccess(Matchers.<List<BeaconEvent>>any());
+        Mockito.verify(secondHandler).onSuccess(Matchers.<List<BeaconEvent>>any());
+    }
+
     @Test
     public void test_a_settings_request() {
         Mockito.when(mockRetrofitApiService.getSettings()).thenReturn(Calls.response(new SettingsResponse(0, new Settings())));
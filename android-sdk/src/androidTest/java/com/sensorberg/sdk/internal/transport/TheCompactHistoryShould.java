@@ -0,0 +1,193 @@
+package com.sensorberg.sdk.internal.transport;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sensorberg.sdk.SensorbergTestApplication;
+import com.sensorberg.sdk.di.TestComponent;
+import com.sensorberg.sdk.internal.interfaces.Clock;
+import com.sensorberg.sdk.internal.interfaces.PlatformIdentifier;
+import com.sensorberg.sdk.internal.transport.interfaces.Transport;
+import com.sensorberg.sdk.internal.transport.interfaces.TransportHistoryCallback;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
+import com.sensorberg.sdk.model.persistence.ActionConversion;
+import com.sensorberg.sdk.model.persistence.BeaconAction;
+import com.sensorberg.sdk.model.persistence.BeaconScan;
+import com.sensorberg.sdk.resolver.BeaconEvent;
+import com.sensorberg.sdk.settings.SharedPreferencesKeys;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.GzipSource;
+import okio.Okio;
+import util.TestConstants;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class TheCompactHistoryShould {
+
+    private static final int SCANS = 50;
+
+    @Inject
+    Gson gson;
+
+    @Inject
+    Context context;
+
+    @Inject
+    Clock clock;
+
+    @Inject
+    SharedPreferences prefs;
+
+    @Inject
+    @Named("androidPlatformIdentifier")
+    PlatformIdentifier platformIdentifier;
+
+    private MockWebServer server;
+
+    private RetrofitApiServiceImpl apiService;
+
+    @Before
+    public void setUp() throws Exception {
+        ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
+        prefs.edit().remove(SharedPreferencesKeys.Network.KEY_COMPACT_HISTORY).commit();
+        server = new MockWebServer();
+        server.start();
+        apiService = new RetrofitApiServiceImpl(null, gson, platformIdentifier, server.url("/").toString());
+        apiService.setApiToken(TestConstants.API_TOKEN_DEFAULT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        prefs.edit().remove(SharedPreferencesKeys.Network.KEY_COMPACT_HISTORY).commit();
+    }
+
+    @Test
+    public void upload_the_compact_history_once_the_backend_accepts_it() throws Exception {
+        server.enqueue(acceptingCompactHistory());
+        server.enqueue(acceptingCompactHistory());
+        RetrofitApiTransport tested = new RetrofitApiTransport(apiService, clock, prefs, gson);
+
+        assertThat(publish(tested, history()).succeeded).isTrue();
+        HistoryRequestBody compact = history();
+        assertThat(publish(tested, compact).succeeded).isTrue();
+
+        RecordedRequest plainRequest = server.takeRequest();
+        assertThat(plainRequest.getHeader("Content-Encoding")).isNull();
+        assertThat(new JsonParser().parse(plainRequest.getBody().readUtf8()).getAsJsonObject()
+                .getAsJsonArray("events").size()).isEqualTo(SCANS);
+
+        RecordedRequest compactRequest = server.takeRequest();
+        assertThat(compactRequest.getHeader("Content-Encoding")).isEqualTo("gzip");
+        assertThat(compactRequest.getHeader(Transport.HEADER_HISTORY_FORMAT)).isEqualTo(Transport.HISTORY_FORMAT_COMPACT);
+        assertThat(compactRequest.getBodySize()).isEqualTo(compact.getBytesWritten());
+
+        JsonObject body = new JsonParser().parse(Okio.buffer(new GzipSource(compactRequest.getBody())).readUtf8())
+                .getAsJsonObject();
+        assertThat(body.getAsJsonObject("dictionaries").getAsJsonArray("pid").size()).isEqualTo(1);
+        JsonObject events = body.getAsJsonObject("events");
+        assertThat(events.get("count").getAsInt()).isEqualTo(SCANS);
+        JsonObject columns = events.getAsJsonObject("columns");
+        assertThat(columns.getAsJsonArray("pid").get(SCANS - 1).getAsInt()).isEqualTo(0);
+        JsonArray times = columns.getAsJsonArray("dt");
+        assertThat(times.get(0).getAsLong()).isEqualTo(1000L);
+        assertThat(times.get(SCANS - 1).getAsLong()).isEqualTo(1L);
+        assertThat(compact.getBytesSaved()).isGreaterThan(0L);
+    }
+
+    @Test
+    public void go_back_to_the_plain_history_when_the_backend_rejects_the_compact_one() throws Exception {
+        prefs.edit().putBoolean(SharedPreferencesKeys.Network.KEY_COMPACT_HISTORY, true).commit();
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNSUPPORTED_TYPE));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NO_CONTENT));
+        RetrofitApiTransport tested = new RetrofitApiTransport(apiService, clock, prefs, gson);
+
+        assertThat(publish(tested, history()).succeeded).isFalse();
+        assertThat(publish(tested, history()).succeeded).isTrue();
+
+        assertThat(server.takeRequest().getHeader("Content-Encoding")).isEqualTo("gzip");
+        assertThat(server.takeRequest().getHeader("Content-Encoding")).isNull();
+        assertThat(prefs.getBoolean(SharedPreferencesKeys.Network.KEY_COMPACT_HISTORY, true)).isFalse();
+    }
+
+    private static MockResponse acceptingCompactHistory() {
+        return new MockResponse()
+                .setResponseCode(HttpURLConnection.HTTP_NO_CONTENT)
+                .addHeader(Transport.HEADER_HISTORY_FORMAT, Transport.HISTORY_FORMAT_COMPACT);
+    }
+
+    private HistoryRequestBody history() {
+        return new HistoryRequestBody(new HistoryRequestBody.Rows() {
+            @Override
+            public void writeScans(HistoryRequestBody.RowWriter out) throws IOException {
+                for (int i = 0; i < SCANS; i++) {
+                    out.write(gson.toJson(BeaconScan.from(TestConstants.BEACON_SCAN_ENTRY_EVENT(1000 + i))));
+                }
+            }
+
+            @Override
+            public void writeActions(HistoryRequestBody.RowWriter out) {
+            }
+
+            @Override
+            public void writeConversions(HistoryRequestBody.RowWriter out) {
+            }
+
+            @Override
+            public void writeSessions(HistoryRequestBody.RowWriter out) {
+            }
+        }, gson, clock);
+    }
+
+    private static Result publish(Transport transport, HistoryRequestBody body) throws InterruptedException {
+        Result result = new Result();
+        transport.publishHistory(body, result);
+        assertThat(result.done.await(10, TimeUnit.SECONDS)).isTrue();
+        return result;
+    }
+
+    private static class Result implements TransportHistoryCallback {
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        volatile boolean succeeded;
+
+        @Override
+        public void onFailure(Exception throwable) {
+            done.countDown();
+        }
+
+        @Override
+        public void onInstantActions(List<BeaconEvent> instantActions) {
+        }
+
+        @Override
+        public void onSuccess(List<BeaconScan> scans, List<BeaconAction> actions, List<ActionConversion> conversions) {
+            succeeded = true;
+            done.countDown();
+        }
+    }
+}
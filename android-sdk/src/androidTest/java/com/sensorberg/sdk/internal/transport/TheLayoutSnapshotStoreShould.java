@@ -0,0 +1,129 @@
+package com.sensorberg.sdk.internal.transport;
+
+import android.content.SharedPreferences;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.sensorberg.sdk.SensorbergTestApplication;
+import com.sensorberg.sdk.di.TestComponent;
+import com.sensorberg.sdk.internal.interfaces.Clock;
+import com.sensorberg.sdk.model.server.ResolveResponse;
+import com.sensorberg.sdk.settings.SharedPreferencesKeys;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.inject.Inject;
+
+import util.Utils;
+
+@RunWith(AndroidJUnit4.class)
+public class TheLayoutSnapshotStoreShould {
+
+    @Inject
+    Gson gson;
+
+    @Inject
+    Clock clock;
+
+    @Inject
+    SharedPreferences prefs;
+
+    private File file;
+
+    private ResolveResponse layout;
+
+    @Before
+    public void setUp() throws Exception {
+        ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
+        file = File.createTempFile("layoutSnapshot", null);
+        file.delete();
+        layout = gson.fromJson(Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_response_005,
+                InstrumentationRegistry.getContext()), ResolveResponse.class);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        prefs.edit().remove(SharedPreferencesKeys.Network.KEY_RESOLVE_RESPONSE).commit();
+    }
+
+    @Test
+    public void return_the_stored_layout_after_a_restart() {
+        new LayoutSnapshotStore(file).write(layout);
+
+        LayoutSnapshotStore.Snapshot snapshot = new LayoutSnapshotStore(file).open();
+
+        Assertions.assertThat(snapshot).isNotNull();
+        Assertions.assertThat(gson.toJson(snapshot.decode())).isEqualTo(gson.toJson(layout));
+    }
+
+    @Test
+    public void write_a_layout_only_when_it_changed() {
+        LayoutSnapshotStore tested = new LayoutSnapshotStore(file);
+
+        Assertions.assertThat(tested.write(layout)).isTrue();
+        Assertions.assertThat(tested.write(gson.fromJson(gson.toJson(layout), ResolveResponse.class))).isFalse();
+        Assertions.assertThat(tested.write(new ResolveResponse.Builder().build())).isTrue();
+    }
+
+    @Test
+    public void ignore_a_damaged_snapshot() throws Exception {
+        new LayoutSnapshotStore(file).write(layout);
+        RandomAccessFile damaged = new RandomAccessFile(file, "rw");
+        damaged.seek(damaged.length() - 1);
+        int last = damaged.read();
+        damaged.seek(damaged.length() - 1);
+        damaged.write(last ^ 1);
+        damaged.close();
+
+        LayoutSnapshotStore tested = new LayoutSnapshotStore(file);
+
+        Assertions.assertThat(tested.open().decode()).isNull();
+        Assertions.assertThat(tested.write(layout)).isTrue();
+    }
+
+    @Test
+    public void write_and_decode_the_layout_on_the_snapshot_executor_of_the_transport() {
+        //the layout kept in the preferences is moved to the snapshot when the transport is created
+        prefs.edit().putString(SharedPreferencesKeys.Network.KEY_RESOLVE_RESPONSE, gson.toJson(layout)).commit();
+        RecordingExecutor executor = new RecordingExecutor();
+
+        new RetrofitApiTransport(null, clock, prefs, gson, new LayoutSnapshotStore(file), executor);
+
+        Assertions.assertThat(file.exists()).isFalse();
+        executor.runAll();
+        Assertions.assertThat(file.exists()).isTrue();
+
+        new RetrofitApiTransport(null, clock, prefs, gson, new LayoutSnapshotStore(file), executor);
+
+        Assertions.assertThat(executor.commands).hasSize(1);
+    }
+
+    private static class RecordingExecutor implements Executor {
+
+        final List<Runnable> commands = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            commands.add(command);
+        }
+
+        void runAll() {
+            for (Runnable command : commands) {
+                command.run();
+            }
+            commands.clear();
+        }
+    }
+}
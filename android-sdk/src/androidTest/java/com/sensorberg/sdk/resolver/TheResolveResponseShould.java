@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 
 import com.sensorberg.sdk.SensorbergTestApplication;
 import com.sensorberg.sdk.di.TestComponent;
+import com.sensorberg.sdk.model.server.ResolveAction;
 import com.sensorberg.sdk.model.server.ResolveResponse;
 import com.sensorberg.sdk.settings.TimeConstants;
 
@@ -15,6 +16,7 @@ import org.junit.runner.RunWith;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -101,6 +103,25 @@ public class TheResolveResponseShould {
         Assertions.assertThat(tested.resolve(TestConstants.RESOLVABLE_ENTRY_EVENT_WITH_ID_1, newDate(1970, Calendar.MARCH, 0, 0).getTime())).hasSize(0);
     }
 
+    @Test
+    public void match_beacons_written_with_dashes_and_in_upper_case_by_trigger() throws Exception {
+        ResolveAction entry = new ResolveAction.Builder().withTrigger(1)
+                .withBeacons(Arrays.asList("73676723-7400-0000-FFFF-0000FFFF0001-01337-01337")).build();
+        ResolveAction exit = new ResolveAction.Builder().withTrigger(2)
+                .withBeacons(Arrays.asList("7367672374000000ffff0000ffff00010133701337")).build();
+        ResolveAction both = new ResolveAction.Builder().withTrigger(3)
+                .withBeacons(Arrays.asList("7367672374000000FFFF0000FFFF00010133701337", "7367672374000000ffff0000ffff00010133701337")).build();
+        ResolveAction other = new ResolveAction.Builder().withTrigger(3)
+                .withBeacons(Arrays.asList("7367672374000000ffff0000ffff00040133701337")).build();
+        ResolveResponse tested = new ResolveResponse.Builder()
+                .withActions(Arrays.asList(entry, exit, both, other))
+                .build();
+
+        Assertions.assertThat(tested.resolve(TestConstants.RESOLVABLE_ENTRY_EVENT_WITH_ID_1, 0)).isEqualTo(Arrays.asList(entry, both));
+        Assertions.assertThat(tested.resolve(TestConstants.RESOLVABLE_EXIT_EVENT_WITH_ID_4, 0)).isEqualTo(Arrays.asList(other));
+        Assertions.assertThat(tested.resolve(TestConstants.NON_RESOLVABLE_ENTRY_EVENT_WITH_ID_4, 0)).isEqualTo(Arrays.asList(other));
+    }
+
     private Date newDate(int year, int month, int dayOfMonth, int hour) {
         Calendar calendar = Calendar.getInstance();
         calendar.clear();
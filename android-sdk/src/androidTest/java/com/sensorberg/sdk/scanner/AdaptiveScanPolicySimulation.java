@@ -0,0 +1,240 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.sensorberg.sdk.settings.DefaultSettings;
+import com.sensorberg.sdk.settings.TimeConstants;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays beacon traces against the background duty cycle of the scanner, once with the configured wait time and once
+ * with the {@link AdaptiveScanPolicy}, and compares the radio-on time with the detection latency. The results are
+ * written to logcat with the tag of this class.
+ * <p>
+ * A trace is a list of {@link Visit}s: a beacon is in range from start to end. The traces below are generated, not
+ * recorded. Recorded traces can be replayed by building the list from the scan log of a device instead.
+ * <p>
+ * Every trace checks that the adaptive cycle needs less radio-on time without a higher mean or maximum entry latency.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AdaptiveScanPolicySimulation {
+
+    private static final String TAG = "AdaptiveScanPolicySim";
+
+    private static final long SCAN_TIME = DefaultSettings.DEFAULT_BACKGROUND_SCAN_TIME;
+
+    private static final long WAIT_TIME = DefaultSettings.DEFAULT_BACKGROUND_WAIT_TIME;
+
+    private static final long MIN_WAIT_TIME = 5 * TimeConstants.ONE_SECOND;
+
+    private static final long MAX_WAIT_TIME = 3 * TimeConstants.ONE_MINUTE;
+
+    private static final long EXIT_TIMEOUT = DefaultSettings.DEFAULT_EXIT_TIMEOUT_MILLIS;
+
+    private static final long ONE_HOUR = 60 * TimeConstants.ONE_MINUTE;
+
+    private static final long DAY = 24 * ONE_HOUR;
+
+    /**
+     * How many times each trace is replayed, with the scanner started at evenly spread points of one fixed cycle. A
+     * single replay only shows the latency of one phase between the visits and the scans.
+     */
+    private static final int PHASES = 16;
+
+    @Test
+    public void office_day() {
+        List<Visit> visits = new ArrayList<>();
+        visits.add(new Visit(0, 9 * ONE_HOUR, 17 * ONE_HOUR));
+
+        Result fixed = simulate(visits, DAY, false);
+        Result adaptive = simulate(visits, DAY, true);
+        log("office day", fixed, adaptive);
+
+        assertSavesWithoutLatency(fixed, adaptive);
+        Assertions.assertThat(adaptive.missed).isEqualTo(0);
+    }
+
+    @Test
+    public void shop_with_walk_ins() {
+        Random random = new Random(42);
+        List<Visit> visits = new ArrayList<>();
+        long start = 8 * ONE_HOUR;
+        while (start < 20 * ONE_HOUR) {
+            long duration = 2 * TimeConstants.ONE_MINUTE + (long) (random.nextDouble() * 13 * TimeConstants.ONE_MINUTE);
+            visits.add(new Visit(random.nextInt(5), start, start + duration));
+            start += duration + (long) (-Math.log(1 - random.nextDouble()) * 20 * TimeConstants.ONE_MINUTE);
+        }
+
+        Result fixed = simulate(visits, DAY, false);
+        Result adaptive = simulate(visits, DAY, true);
+        log("shop with walk ins", fixed, adaptive);
+
+        Assertions.assertThat(adaptive.detected + adaptive.missed).isEqualTo(visits.size() * PHASES);
+        Assertions.assertThat(fixed.detected + fixed.missed).isEqualTo(visits.size() * PHASES);
+        assertSavesWithoutLatency(fixed, adaptive);
+    }
+
+    @Test
+    public void commute_with_pass_bys() {
+        Random random = new Random(7);
+        List<Visit> visits = new ArrayList<>();
+        long start = ONE_HOUR;
+        while (start < DAY) {
+            long duration = 30 * TimeConstants.ONE_SECOND + (long) (random.nextDouble() * TimeConstants.ONE_MINUTE);
+            visits.add(new Visit(random.nextInt(20), start, start + duration));
+            start += duration + (long) (random.nextDouble() * 4 * ONE_HOUR);
+        }
+
+        Result fixed = simulate(visits, DAY, false);
+        Result adaptive = simulate(visits, DAY, true);
+        log("commute with pass bys", fixed, adaptive);
+
+        assertSavesWithoutLatency(fixed, adaptive);
+    }
+
+    /**
+     * Checks that the adaptive cycle keeps the radio on for less time and misses no more visits. The mean entry latency
+     * must not be higher, a missed visit counts with its whole length there, so a cycle that catches more short visits
+     * is not punished for catching them late. The maximum entry latency must stay within the worst case of the fixed
+     * cycle, a visit that starts right after a scan ended and waits the whole configured wait time.
+     */
+    private static void assertSavesWithoutLatency(Result fixed, Result adaptive) {
+        Assertions.assertThat(adaptive.radioOnTime).isLessThan(fixed.radioOnTime);
+        Assertions.assertThat(adaptive.missed).isLessThanOrEqualTo(fixed.missed);
+        Assertions.assertThat(adaptive.undetectedTime).isLessThanOrEqualTo(fixed.undetectedTime);
+        Assertions.assertThat(adaptive.maxLatency).isLessThanOrEqualTo(Math.max(fixed.maxLatency, WAIT_TIME));
+    }
+
+    private static Result simulate(List<Visit> visits, long duration, boolean adaptive) {
+        Result result = new Result();
+        for (int phase = 0; phase < PHASES; phase++) {
+            simulate(visits, phase * (SCAN_TIME + WAIT_TIME) / PHASES, duration, adaptive, result);
+        }
+        return result;
+    }
+
+    private static void simulate(List<Visit> visits, long start, long duration, boolean adaptive, Result result) {
+        AdaptiveScanPolicy policy = new AdaptiveScanPolicy();
+        long radioOnTime = 0;
+        long[] detectedAt = new long[visits.size()];
+        for (int i = 0; i < detectedAt.length; i++) {
+            detectedAt[i] = -1;
+        }
+        List<Integer> entered = new ArrayList<>();
+        List<Long> radioOnTimeWhenLastSeen = new ArrayList<>();
+
+        long now = start;
+        long scanTime = SCAN_TIME;
+        while (now < duration) {
+            long scanEnd = Math.min(now + scanTime, duration);
+            radioOnTime += scanEnd - now;
+            int entries = 0;
+            for (int i = 0; i < visits.size(); i++) {
+                Visit visit = visits.get(i);
+                if (visit.start < scanEnd && visit.end > now) {
+                    int index = entered.indexOf(visit.beacon);
+                    if (index < 0) {
+                        entered.add(visit.beacon);
+                        radioOnTimeWhenLastSeen.add(radioOnTime);
+                        entries++;
+                    } else {
+                        radioOnTimeWhenLastSeen.set(index, radioOnTime);
+                    }
+                    if (detectedAt[i] < 0) {
+                        detectedAt[i] = Math.max(now, visit.start);
+                    }
+                }
+            }
+            int exits = 0;
+            for (int index = entered.size() - 1; index >= 0; index--) {
+                // like the BeaconMap, only scan time counts towards the exit timeout
+                if (radioOnTime - radioOnTimeWhenLastSeen.get(index) > EXIT_TIMEOUT) {
+                    entered.remove(index);
+                    radioOnTimeWhenLastSeen.remove(index);
+                    exits++;
+                }
+            }
+
+            long waitTime = WAIT_TIME;
+            if (adaptive) {
+                policy.onScanFinished(scanEnd, entries, exits, entered.size());
+                waitTime = policy.getWaitTime(scanEnd, WAIT_TIME, MIN_WAIT_TIME, MAX_WAIT_TIME, false, AdaptiveScanPolicy.BATTERY_UNKNOWN);
+                scanTime = policy.getScanTime(SCAN_TIME);
+            }
+            now = scanEnd + waitTime;
+        }
+
+        for (int i = 0; i < visits.size(); i++) {
+            if (detectedAt[i] < 0) {
+                result.missed++;
+                result.undetectedTime += visits.get(i).end - visits.get(i).start;
+            } else {
+                long latency = detectedAt[i] - visits.get(i).start;
+                result.detected++;
+                result.totalLatency += latency;
+                result.maxLatency = Math.max(result.maxLatency, latency);
+                result.undetectedTime += latency;
+            }
+        }
+        result.radioOnTime += radioOnTime;
+        result.duration += duration - start;
+    }
+
+    private static void log(String trace, Result fixed, Result adaptive) {
+        Log.i(TAG, trace + ": fixed " + fixed + "; adaptive " + adaptive);
+    }
+
+    private static class Visit {
+
+        final int beacon;
+
+        final long start;
+
+        final long end;
+
+        Visit(int beacon, long start, long end) {
+            this.beacon = beacon;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static class Result {
+
+        long duration;
+
+        long radioOnTime;
+
+        int detected;
+
+        int missed;
+
+        long totalLatency;
+
+        long maxLatency;
+
+        /**
+         * The latency of the detected visits plus the length of the missed ones.
+         */
+        long undetectedTime;
+
+        long getMeanLatency() {
+            return detected == 0 ? 0 : totalLatency / detected;
+        }
+
+        @Override
+        public String toString() {
+            return "radio on " + (radioOnTime * 1000 / duration) / 10f + "%, "
+                    + detected + " visits detected, " + missed + " missed, "
+                    + "latency avg " + getMeanLatency() / 1000 + " s, max " + maxLatency / 1000 + " s";
+        }
+    }
+}
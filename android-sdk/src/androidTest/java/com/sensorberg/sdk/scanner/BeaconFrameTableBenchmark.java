@@ -0,0 +1,108 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.sensorberg.sdk.testUtils.TestBluetoothPlatform;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static util.Utils.wrapWithZeroBytes;
+
+/**
+ * Compares the throughput of the {@link BeaconFrameTable} with the iBeacon only {@link ScanHelper}. The results are
+ * written to logcat with the tag of this class, the assertions only make sure both paths did the work.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BeaconFrameTableBenchmark {
+
+    private static final String TAG = "BeaconFrameTableBench";
+
+    private static final int WARM_UP_ROUNDS = 20000;
+
+    private static final int ROUNDS = 200000;
+
+    /**
+     * What a scan in a busy place looks like: mostly other devices, some beacons of all formats.
+     */
+    private static final byte[][] MIXED_RECORDS = new byte[][]{
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_4, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_BEACON_1, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_5, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_EDDYSTONE_UID_1, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_1, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_ALTBEACON_WITH_FLAGS, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_EDDYSTONE_TLM_1, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1, 62),
+    };
+
+    private static final byte[][] IBEACON_RECORDS = new byte[][]{
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_BEACON_1, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_BEACON_WITH_ABSTRUSE_VARIATION_1, 62),
+            wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_4, 62),
+    };
+
+    @Test
+    public void compare_ibeacon_records() {
+        compare("iBeacon records", IBEACON_RECORDS);
+    }
+
+    @Test
+    public void compare_mixed_records() {
+        compare("mixed records", MIXED_RECORDS);
+    }
+
+    private void compare(String name, byte[][] records) {
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        BeaconFrameTable table = BeaconFrameTable.DEFAULT;
+
+        runScanHelper(records, advertisement, WARM_UP_ROUNDS);
+        runTable(table, records, advertisement, WARM_UP_ROUNDS);
+
+        long start = System.nanoTime();
+        int scanHelperMatches = runScanHelper(records, advertisement, ROUNDS);
+        long scanHelperNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int tableMatches = runTable(table, records, advertisement, ROUNDS);
+        long tableNanos = System.nanoTime() - start;
+
+        long parsed = (long) ROUNDS * records.length;
+        Log.i(TAG, name + ": ScanHelper " + throughput(parsed, scanHelperNanos) + " records/s, " + scanHelperMatches + " frames; "
+                + "BeaconFrameTable " + throughput(parsed, tableNanos) + " records/s, " + tableMatches + " frames");
+
+        Assertions.assertThat(scanHelperMatches).isGreaterThan(0);
+        Assertions.assertThat(tableMatches).isGreaterThanOrEqualTo(scanHelperMatches);
+    }
+
+    private static int runScanHelper(byte[][] records, BeaconAdvertisement advertisement, int rounds) {
+        int matches = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (byte[] record : records) {
+                if (ScanHelper.parseBeacon(record, advertisement)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static int runTable(BeaconFrameTable table, byte[][] records, BeaconAdvertisement advertisement, int rounds) {
+        int matches = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (byte[] record : records) {
+                if (table.parse(record, advertisement)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static long throughput(long records, long nanos) {
+        return nanos == 0 ? 0 : records * 1000000000L / nanos;
+    }
+}
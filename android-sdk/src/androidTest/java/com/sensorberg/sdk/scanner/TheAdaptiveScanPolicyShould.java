@@ -0,0 +1,102 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.sensorberg.sdk.settings.TimeConstants;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+public class TheAdaptiveScanPolicyShould {
+
+    private static final long BASE = 2 * TimeConstants.ONE_MINUTE;
+
+    private static final long MIN = 5 * TimeConstants.ONE_SECOND;
+
+    private static final long MAX = 10 * TimeConstants.ONE_MINUTE;
+
+    private static final long SCAN = 15 * TimeConstants.ONE_SECOND;
+
+    private AdaptiveScanPolicy tested;
+
+    private long now;
+
+    @Before
+    public void setUp() throws Exception {
+        tested = new AdaptiveScanPolicy();
+        now = 0;
+    }
+
+    private long scan(int entries, int exits, int beaconsInRange) {
+        now += BASE;
+        tested.onScanFinished(now, entries, exits, beaconsInRange);
+        return tested.getWaitTime(now, BASE, MIN, MAX, false, AdaptiveScanPolicy.BATTERY_UNKNOWN);
+    }
+
+    @Test
+    public void scan_again_soon_after_a_new_beacon() {
+        Assertions.assertThat(scan(1, 0, 1)).isEqualTo(MIN);
+    }
+
+    @Test
+    public void keep_the_configured_wait_time_while_the_environment_changes() {
+        scan(1, 0, 1);
+
+        Assertions.assertThat(scan(0, 1, 0)).isEqualTo(BASE);
+        Assertions.assertThat(scan(0, 0, 0)).isEqualTo(BASE);
+    }
+
+    @Test
+    public void scan_shorter_and_more_often_when_nothing_is_in_range() {
+        for (int i = 0; i < 10; i++) {
+            long waitTime = scan(0, 0, 0);
+
+            Assertions.assertThat(waitTime).isLessThan(BASE);
+            Assertions.assertThat(tested.getScanTime(SCAN)).isLessThan(SCAN);
+            // the radio is on for a smaller share of the cycle
+            Assertions.assertThat(tested.getScanTime(SCAN) * (SCAN + BASE)).isLessThan(SCAN * (tested.getScanTime(SCAN) + waitTime));
+        }
+    }
+
+    @Test
+    public void keep_the_configured_scan_time_while_beacons_are_in_range() {
+        scan(0, 0, 1);
+
+        Assertions.assertThat(tested.getScanTime(SCAN)).isEqualTo(SCAN);
+    }
+
+    @Test
+    public void not_stretch_the_wait_while_beacons_are_in_range() {
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertThat(scan(0, 0, 2)).isEqualTo(BASE);
+        }
+    }
+
+    @Test
+    public void fall_back_to_the_minimum_after_a_long_wait() {
+        for (int i = 0; i < 10; i++) {
+            scan(0, 0, 0);
+        }
+
+        Assertions.assertThat(scan(1, 0, 1)).isEqualTo(MIN);
+    }
+
+    @Test
+    public void scan_more_often_while_charging_and_less_often_on_a_low_battery() {
+        tested.onScanFinished(BASE, 0, 1, 0);
+        Assertions.assertThat(tested.getWaitTime(BASE, BASE, MIN, MAX, true, 50)).isEqualTo(BASE / 2);
+        Assertions.assertThat(tested.getWaitTime(BASE, BASE, MIN, MAX, false, 50)).isEqualTo(BASE);
+        Assertions.assertThat(tested.getWaitTime(BASE, BASE, MIN, MAX, false, 10)).isEqualTo(2 * BASE);
+    }
+
+    @Test
+    public void stay_within_the_bounds() {
+        tested.onScanFinished(BASE, 0, 1, 0);
+
+        Assertions.assertThat(tested.getWaitTime(BASE, BASE, MIN, BASE / 4, false, 10)).isEqualTo(BASE / 4);
+        Assertions.assertThat(tested.getWaitTime(BASE, BASE, 3 * BASE, MAX, true, 50)).isEqualTo(3 * BASE);
+    }
+}
@@ -9,7 +9,6 @@ import com.sensorberg.sdk.internal.interfaces.HandlerManager;
 import com.sensorberg.sdk.internal.transport.RetrofitApiServiceImpl;
 import com.sensorberg.sdk.internal.transport.RetrofitApiTransport;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
-import com.sensorberg.sdk.internal.transport.model.HistoryBody;
 import com.sensorberg.sdk.settings.SettingsManager;
 
 import org.junit.Before;
@@ -24,6 +23,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import okhttp3.MediaType;
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.mock.Calls;
 import util.TestConstants;
@@ -55,6 +55,9 @@ public class TheBeaconActionHistoryPublisherIntegrationShould {
     @Inject
     Gson gson;
 
+    @Inject
+    HistoryStore historyStore;
+
     private RetrofitApiServiceImpl mockRetrofitApiService = mock(RetrofitApiServiceImpl.class);
 
     private Transport transport = mock(Transport.class);
@@ -69,28 +72,29 @@ public class TheBeaconActionHistoryPublisherIntegrationShould {
 
         testTransportWithMockService = new RetrofitApiTransport(mockRetrofitApiService, clock, sharedPreferences, gson);
         tested = new BeaconActionHistoryPublisher(testTransportWithMockService, clock,
-                testHandlerManager, sharedPreferences, gson);
+                testHandlerManager, sharedPreferences, gson, historyStore, testSettingsManager);
+        tested.deleteAllData();
     }
 
     @Test
     public void test_should_send_history_to_the_server() throws Exception {
-        Mockito.when(mockRetrofitApiService.publishHistory(Mockito.any(HistoryBody.class)))
+        Mockito.when(mockRetrofitApiService.publishHistory(Mockito.any(RequestBody.class)))
                 .thenReturn(Calls.response(PUBLISH_HISTORY_RESPONSE));
 
         tested.onScanEventDetected(TestConstants.BEACON_SCAN_ENTRY_EVENT(100));
         tested.publishHistory();
 
-        verify(mockRetrofitApiService, times(1)).publishHistory(Mockito.any(HistoryBody.class));
+        verify(mockRetrofitApiService, times(1)).publishHistory(Mockito.any(RequestBody.class));
     }
 
     @Test
     public void test_should_send_no_history_to_the_server_when_nothing_happend() throws Exception {
-        Mockito.when(mockRetrofitApiService.publishHistory(Mockito.any(HistoryBody.class)))
+        Mockito.when(mockRetrofitApiService.publishHistory(Mockito.any(RequestBody.class)))
                 .thenReturn(Calls.response(PUBLISH_HISTORY_RESPONSE));
 
         tested.publishHistory();
 
-        verify(mockRetrofitApiService, never()).publishHistory(Mockito.any(HistoryBody.class));
+        verify(mockRetrofitApiService, never()).publishHistory(Mockito.any(RequestBody.class));
     }
 
     private static final ResponseBody PUBLISH_HISTORY_RESPONSE = ResponseBody.create(MediaType.parse("application/json"), "");
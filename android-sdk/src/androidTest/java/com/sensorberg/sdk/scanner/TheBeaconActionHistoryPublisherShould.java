@@ -4,29 +4,44 @@ import android.content.SharedPreferences;
 import android.support.test.runner.AndroidJUnit4;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.sensorberg.sdk.SensorbergTestApplication;
 import com.sensorberg.sdk.di.TestComponent;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.internal.transport.interfaces.TransportHistoryCallback;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
 import com.sensorberg.sdk.model.persistence.ActionConversion;
+import com.sensorberg.sdk.model.persistence.BeaconScan;
 import com.sensorberg.sdk.settings.SettingsManager;
+import com.sensorberg.sdk.settings.TimeConstants;
 import com.sensorberg.sdk.testUtils.TestHandlerManager;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import okio.Buffer;
 import util.TestConstants;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static util.Verfier.hasSize;
+import static util.Verfier.hasHistory;
 
 @RunWith(AndroidJUnit4.class)
 public class TheBeaconActionHistoryPublisherShould {
@@ -44,6 +59,9 @@ public class TheBeaconActionHistoryPublisherShould {
     @Inject
     Gson gson;
 
+    @Inject
+    HistoryStore historyStore;
+
     private BeaconActionHistoryPublisher tested;
 
     private Transport transport = mock(Transport.class);
@@ -53,7 +71,8 @@ public class TheBeaconActionHistoryPublisherShould {
         ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
 
         testHandlerManager.getCustomClock().setNowInMillis(System.currentTimeMillis());
-        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson, historyStore,
+                testSettingsManager);
         tested.deleteAllData();
         tested = Mockito.spy(tested);
     }
@@ -65,7 +84,7 @@ public class TheBeaconActionHistoryPublisherShould {
         tested.onActionPresented(TestConstants.BEACON_EVENT_IN_FUTURE);
         tested.onConversionUpdate(TestConstants.ACTION_CONVERSION(ActionConversion.TYPE_SUCCESS));
         tested.publishHistory();
-        verify(transport).publishHistory(hasSize(1), hasSize(1), hasSize(1), any(TransportHistoryCallback.class));
+        verify(transport).publishHistory(hasHistory(1, 1, 1), any(TransportHistoryCallback.class));
     }
 
     @Test
@@ -74,20 +93,21 @@ public class TheBeaconActionHistoryPublisherShould {
         tested.onActionPresented(TestConstants.BEACON_EVENT_IN_FUTURE);
 
         tested.publishHistory();
-        verify(transport).publishHistory(hasSize(0), hasSize(1), hasSize(0), any(TransportHistoryCallback.class));
+        verify(transport).publishHistory(hasHistory(0, 1, 0), any(TransportHistoryCallback.class));
         Mockito.reset(transport);
 
         //  nullify and make new instance
 
         tested = null;
-        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson, historyStore,
+                testSettingsManager);
 
         //Make sure the object returned is not null.
         assertThat(tested);
 
         //check that this instance read from local persistence layer
         tested.publishHistory();
-        verify(transport).publishHistory(hasSize(0), hasSize(1), hasSize(0), any(TransportHistoryCallback.class));
+        verify(transport).publishHistory(hasHistory(0, 1, 0), any(TransportHistoryCallback.class));
     }
 
     @Test
@@ -96,20 +116,21 @@ public class TheBeaconActionHistoryPublisherShould {
         tested.onScanEventDetected(TestConstants.BEACON_SCAN_ENTRY_EVENT(100));
 
         tested.publishHistory();
-        verify(transport).publishHistory(hasSize(1), hasSize(0), hasSize(0), any(TransportHistoryCallback.class));
+        verify(transport).publishHistory(hasHistory(1, 0, 0), any(TransportHistoryCallback.class));
         Mockito.reset(transport);
 
         // nullify and make new instance
 
         tested = null;
-        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson, historyStore,
+                testSettingsManager);
 
         //Make sure the object returned is not null.
         assertThat(tested);
 
         //check that this instance read from local persistence layer
         tested.publishHistory();
-        verify(transport).publishHistory(hasSize(1), hasSize(0), hasSize(0), any(TransportHistoryCallback.class));
+        verify(transport).publishHistory(hasHistory(1, 0, 0), any(TransportHistoryCallback.class));
     }
 
     @Test
@@ -118,20 +139,35 @@ public class TheBeaconActionHistoryPublisherShould {
         tested.onConversionUpdate(TestConstants.ACTION_CONVERSION(ActionConversion.TYPE_SUCCESS));
 
         tested.publishHistory();
-        verify(transport).publishHistory(hasSize(0), hasSize(0), hasSize(1), any(TransportHistoryCallback.class));
+        verify(transport).publishHistory(hasHistory(0, 0, 1), any(TransportHistoryCallback.class));
         Mockito.reset(transport);
 
         // nullify and make new instance
 
         tested = null;
-        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson, historyStore,
+                testSettingsManager);
 
         //Make sure the object returned is not null.
         assertThat(tested);
 
         //check that this instance read from local persistence layer
         tested.publishHistory();
-        verify(transport).publishHistory(hasSize(0), hasSize(0), hasSize(1), any(TransportHistoryCallback.class));
+        verify(transport).publishHistory(hasHistory(0, 0, 1), any(TransportHistoryCallback.class));
+    }
+
+    @Test
+    public void should_move_the_history_out_of_the_shared_preferences() throws Exception {
+        sharedPreferences.edit()
+                .putString(BeaconScan.SHARED_PREFS_TAG, gson.toJson(Arrays.asList(BeaconScan.from(TestConstants.BEACON_SCAN_ENTRY_EVENT(100)))))
+                .commit();
+
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson, historyStore,
+                testSettingsManager);
+
+        assertThat(sharedPreferences.contains(BeaconScan.SHARED_PREFS_TAG)).isFalse();
+        tested.publishHistory();
+        verify(transport).publishHistory(hasHistory(1, 0, 0), any(TransportHistoryCallback.class));
     }
 
     @Test
@@ -144,7 +180,62 @@ public class TheBeaconActionHistoryPublisherShould {
             tested.onScanEventDetected(TestConstants.BEACON_SCAN_ENTRY_EVENT(100 + i));
         }
         tested.publishHistory();
-        verify(transport).publishHistory(hasSize(limit), hasSize(0), hasSize(0), any(TransportHistoryCallback.class));
+        verify(transport).publishHistory(hasHistory(limit, 0, 0), any(TransportHistoryCallback.class));
+
+    }
+
+    @Test
+    public void should_publish_pages_until_the_history_is_drained() throws Exception {
+        int eventSize = 10 + BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE;
+        List<ScanEvent> events = new ArrayList<>(eventSize);
+        for (int i = 0; i < eventSize; i++) {
+            events.add(TestConstants.BEACON_SCAN_ENTRY_EVENT(100 + i));
+        }
+        tested.onScanEventsDetected(events);
+
+        final List<Integer> pageSizes = new ArrayList<>();
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Buffer buffer = new Buffer();
+                ((HistoryRequestBody) invocation.getArguments()[0]).writeTo(buffer);
+                JsonObject body = new JsonParser().parse(buffer.readUtf8()).getAsJsonObject();
+                pageSizes.add(body.getAsJsonArray("events").size());
+                ((TransportHistoryCallback) invocation.getArguments()[1]).onSuccess(null, null, null);
+                return null;
+            }
+        }).when(transport).publishHistory(any(HistoryRequestBody.class), any(TransportHistoryCallback.class));
+
+        tested.publishHistory();
+
+        assertThat(pageSizes).isEqualTo(Arrays.asList(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE, 10));
+        assertThat(historyStore.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void not_publish_a_page_again_while_it_is_in_flight() throws Exception {
+        tested.onScanEventDetected(TestConstants.BEACON_SCAN_ENTRY_EVENT(100));
+        tested.publishHistory();
+
+        testHandlerManager.getCustomClock().increaseTimeInMillis(2 * BeaconActionHistoryPublisher.MAX_PUBLISH_DURATION);
+        tested.publishHistory();
+
+        verify(transport, times(1)).publishHistory(any(HistoryRequestBody.class), any(TransportHistoryCallback.class));
+    }
+
+    @Test
+    public void keep_the_open_dwell_sessions_when_publishing_after_a_restart() throws Exception {
+        SettingsManager aggregating = mock(SettingsManager.class);
+        Mockito.when(aggregating.getDwellSessionMergeGap()).thenReturn(TimeConstants.ONE_MINUTE);
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson, historyStore,
+                aggregating);
+        tested.onScanEventDetected(TestConstants.BEACON_SCAN_ENTRY_EVENT(testHandlerManager.getCustomClock().now()));
+
+        tested = new BeaconActionHistoryPublisher(transport, testHandlerManager.getCustomClock(), testHandlerManager, sharedPreferences, gson, historyStore,
+                aggregating);
+        tested.publishHistory();
 
+        assertThat(historyStore.openSessions()).isEqualTo(1);
+        verify(transport, never()).publishHistory(any(HistoryRequestBody.class), any(TransportHistoryCallback.class));
     }
 }
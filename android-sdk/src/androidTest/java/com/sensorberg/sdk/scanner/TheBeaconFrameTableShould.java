@@ -0,0 +1,107 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.sensorberg.sdk.testUtils.TestBluetoothPlatform;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static util.Utils.wrapWithZeroBytes;
+
+@RunWith(AndroidJUnit4.class)
+public class TheBeaconFrameTableShould {
+
+    private BeaconFrameTable tested;
+
+    private BeaconAdvertisement advertisement;
+
+    @Before
+    public void setUp() throws Exception {
+        tested = BeaconFrameTable.DEFAULT;
+        advertisement = new BeaconAdvertisement();
+    }
+
+    @Test
+    public void parse_an_ibeacon_like_the_scan_helper() {
+        Assertions.assertThat(tested.parse(wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_BEACON_1, 62), advertisement)).isTrue();
+
+        Assertions.assertThat(advertisement.getFrameType()).isEqualTo(BeaconAdvertisement.FRAME_IBEACON);
+        Assertions.assertThat(advertisement.toBeaconId()).isEqualTo(TestBluetoothPlatform.EXPECTED_BEACON_1);
+        Assertions.assertThat(advertisement.getCalibratedTxPower()).isEqualTo(-58);
+    }
+
+    @Test
+    public void parse_ibeacons_with_unusual_flags() {
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_BEACON_WITH_ABSTRUSE_VARIATION_1, advertisement)).isTrue();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_BEACON_WITH_ABSTRUSE_VARIATION_2, advertisement)).isTrue();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_BEACON_WITH_ABSTRUSE_VARIATION_3, advertisement)).isTrue();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_BEACON_WITH_ACCENT_STYLE_BATTERY, advertisement)).isTrue();
+        Assertions.assertThat(advertisement.toBeaconId()).isEqualTo(TestBluetoothPlatform.EXPECTED_BEACON_1);
+    }
+
+    @Test
+    public void parse_an_altbeacon_of_any_manufacturer() {
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_ALTBEACON_WITH_FLAGS, advertisement)).isTrue();
+
+        Assertions.assertThat(advertisement.getFrameType()).isEqualTo(BeaconAdvertisement.FRAME_ALTBEACON);
+        Assertions.assertThat(advertisement.toBeaconId()).isEqualTo(TestBluetoothPlatform.EXPECTED_BEACON_1);
+        Assertions.assertThat(advertisement.getCalibratedTxPower()).isEqualTo(-58);
+    }
+
+    @Test
+    public void parse_an_eddystone_uid() {
+        Assertions.assertThat(tested.parse(wrapWithZeroBytes(TestBluetoothPlatform.BYTES_FOR_EDDYSTONE_UID_1, 62), advertisement)).isTrue();
+
+        Assertions.assertThat(advertisement.getFrameType()).isEqualTo(BeaconAdvertisement.FRAME_EDDYSTONE_UID);
+        Assertions.assertThat(advertisement.toBeaconId()).isEqualTo(TestBluetoothPlatform.EXPECTED_EDDYSTONE_UID_1);
+        Assertions.assertThat(advertisement.getCalibratedTxPower()).isEqualTo(-62);
+    }
+
+    @Test
+    public void parse_an_eddystone_eid() {
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_EDDYSTONE_EID_1, advertisement)).isTrue();
+
+        Assertions.assertThat(advertisement.getFrameType()).isEqualTo(BeaconAdvertisement.FRAME_EDDYSTONE_EID);
+        Assertions.assertThat(advertisement.toBeaconId()).isEqualTo(TestBluetoothPlatform.EXPECTED_EDDYSTONE_EID_1);
+    }
+
+    @Test
+    public void parse_eddystone_telemetry_without_a_beacon_id() {
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_EDDYSTONE_TLM_1, advertisement)).isTrue();
+
+        Assertions.assertThat(advertisement.hasBeaconId()).isFalse();
+        Assertions.assertThat(advertisement.getBatteryVoltage()).isEqualTo(3000);
+        Assertions.assertThat(advertisement.getTemperature()).isEqualTo(0x1880);
+        Assertions.assertThat(advertisement.getAdvertisingCount()).isEqualTo(100);
+        Assertions.assertThat(advertisement.getUptime()).isEqualTo(1000);
+    }
+
+    @Test
+    public void not_parse_other_bluetooth_devices() {
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_1, advertisement)).isFalse();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_2, advertisement)).isFalse();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_3, advertisement)).isFalse();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_4, advertisement)).isFalse();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_5, advertisement)).isFalse();
+    }
+
+    @Test
+    public void only_parse_the_registered_layouts() {
+        tested = new BeaconFrameTable.Builder().add(new EddystoneFrameParser(EddystoneFrameParser.FRAME_UID)).build();
+
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement)).isFalse();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_EDDYSTONE_TLM_1, advertisement)).isFalse();
+        Assertions.assertThat(tested.parse(TestBluetoothPlatform.BYTES_FOR_EDDYSTONE_UID_1, advertisement)).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reject_two_parsers_for_the_same_frame() {
+        new BeaconFrameTable.Builder()
+                .add(new IBeaconFrameParser())
+                .add(new IBeaconFrameParser())
+                .build();
+    }
+}
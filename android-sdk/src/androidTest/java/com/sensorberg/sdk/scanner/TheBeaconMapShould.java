@@ -6,6 +6,7 @@ import com.sensorberg.sdk.SensorbergTestApplication;
 import com.sensorberg.sdk.di.TestComponent;
 import com.sensorberg.sdk.model.BeaconId;
 import com.sensorberg.sdk.testUtils.NoClock;
+import com.sensorberg.sdk.testUtils.TestBluetoothPlatform;
 import com.sensorberg.sdk.testUtils.TestFileManager;
 
 import org.fest.assertions.api.Assertions;
@@ -14,7 +15,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -46,8 +51,9 @@ public class TheBeaconMapShould {
         long firstSize = file.length();
 
         tested.put(getNewBeaconId(), new EventEntry(System.currentTimeMillis(), 0, ScanEventType.ENTRY.getMask(), pairingId));
+        Assertions.assertThat(firstSize).isEqualTo(file.length());
 
-
+        tested.flush();
         Assertions.assertThat(firstSize).isNotEqualTo(file.length());
     }
 
@@ -71,6 +77,7 @@ public class TheBeaconMapShould {
         BeaconMap first = new BeaconMap(testFileManager, file);
 
         first.put(getNewBeaconId(), new EventEntry(System.currentTimeMillis(), 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.flush();
 
         tested = new BeaconMap(testFileManager, file);
 
@@ -88,8 +95,7 @@ public class TheBeaconMapShould {
         BeaconMap first = new BeaconMap(testFileManager, file);
 
         first.put(getNewBeaconId(), new EventEntry(noClock.now(), 0, ScanEventType.ENTRY.getMask(), pairingId));
-
-        long originalSize = file.length();
+        first.flush();
 
         tested = new BeaconMap(testFileManager, file);
         Assertions.assertThat(tested.size()).isEqualTo(1);
@@ -100,8 +106,9 @@ public class TheBeaconMapShould {
                 return true;
             }
         });
+        tested.flush();
 
-        Assertions.assertThat(file.length()).isLessThan(originalSize);
+        Assertions.assertThat(new BeaconMap(testFileManager, file).size()).isEqualTo(0);
     }
 
     @Test
@@ -135,9 +142,243 @@ public class TheBeaconMapShould {
         File tempFile = getTempFile();
         tested = new BeaconMap(testFileManager, tempFile);
         tested.put(getNewBeaconId(), new EventEntry(noClock.now(), 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.flush();
 
         BeaconMap otherFile = new BeaconMap(testFileManager, tempFile);
         Assertions.assertThat(otherFile).isNotNull();
         Assertions.assertThat(otherFile.size()).isEqualTo(1);
     }
+
+    @Test
+    public void find_the_stored_beacon_id_of_an_advertisement() throws Exception {
+        tested = new BeaconMap(testFileManager, null);
+        BeaconId stored = getNewBeaconId();
+        tested.put(stored, new EventEntry(noClock.now(), 0, ScanEventType.ENTRY.getMask(), pairingId));
+
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement);
+        Assertions.assertThat(tested.getBeaconId(advertisement)).isNull();
+
+        tested.put(TestBluetoothPlatform.EXPECTED_BEACON_1, new EventEntry(noClock.now(), 0, ScanEventType.ENTRY.getMask(), pairingId));
+        Assertions.assertThat(tested.getBeaconId(advertisement)).isSameAs(TestBluetoothPlatform.EXPECTED_BEACON_1);
+    }
+
+    @Test
+    public void keep_all_beacons_when_growing_and_removing() throws Exception {
+        tested = new BeaconMap(testFileManager, null);
+        for (int i = 0; i < 500; i++) {
+            tested.put(new BeaconId(UUID.fromString("D57092AC-DFAA-446C-8EF3-C81AA22815B5"), i, i), new EventEntry(i, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        }
+        Assertions.assertThat(tested.size()).isEqualTo(500);
+
+        tested.filter(new BeaconMap.SlotFilter() {
+            @Override
+            public boolean filter(BeaconMap beaconMap, int slot) {
+                return beaconMap.getLastBeaconTime(slot) % 2 == 0;
+            }
+        });
+
+        Assertions.assertThat(tested.size()).isEqualTo(250);
+        for (int i = 0; i < 500; i++) {
+            EventEntry entry = tested.get(new BeaconId(UUID.fromString("D57092AC-DFAA-446C-8EF3-C81AA22815B5"), i, i));
+            if (i % 2 == 0) {
+                Assertions.assertThat(entry).isNull();
+            } else {
+                Assertions.assertThat(entry.getLastBeaconTime()).isEqualTo(i);
+            }
+        }
+    }
+
+    @Test
+    public void add_the_scan_pause_to_all_beacons_until_they_are_seen_again() throws Exception {
+        tested = new BeaconMap(testFileManager, null);
+        tested.put(getNewBeaconId(), new EventEntry(noClock.now(), 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.put(TestBluetoothPlatform.EXPECTED_BEACON_1, new EventEntry(noClock.now(), 0, ScanEventType.ENTRY.getMask(), pairingId));
+
+        tested.addScanPauseTime(1000);
+        tested.addScanPauseTime(500);
+
+        Assertions.assertThat(tested.get(getNewBeaconId()).getScanPauseTime()).isEqualTo(1500);
+        Assertions.assertThat(tested.get(TestBluetoothPlatform.EXPECTED_BEACON_1).getScanPauseTime()).isEqualTo(1500);
+
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement);
+        tested.seenAgain(tested.indexOf(advertisement), 42);
+
+        Assertions.assertThat(tested.get(TestBluetoothPlatform.EXPECTED_BEACON_1).getScanPauseTime()).isEqualTo(0);
+        Assertions.assertThat(tested.get(TestBluetoothPlatform.EXPECTED_BEACON_1).getLastBeaconTime()).isEqualTo(42);
+        Assertions.assertThat(tested.get(getNewBeaconId()).getScanPauseTime()).isEqualTo(1500);
+    }
+
+    @Test
+    public void expire_only_the_beacons_seen_longest_ago() throws Exception {
+        tested = new BeaconMap(testFileManager, null);
+        for (int i = 0; i < 100; i++) {
+            tested.put(new BeaconId(UUID.fromString("D57092AC-DFAA-446C-8EF3-C81AA22815B5"), i, i), new EventEntry(i * 10, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        }
+        final List<Long> expiredTimes = new ArrayList<>();
+
+        int removed = tested.removeExpired(1000, 500, new BeaconMap.ExpiryListener() {
+            @Override
+            public void onExpired(BeaconMap beaconMap, int slot, long timeSinceLastSeen) {
+                expiredTimes.add(beaconMap.getLastBeaconTime(slot));
+                Assertions.assertThat(timeSinceLastSeen).isGreaterThan(500);
+            }
+        });
+
+        Assertions.assertThat(removed).isEqualTo(50);
+        Assertions.assertThat(tested.size()).isEqualTo(50);
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertThat(expiredTimes.get(i)).isEqualTo(i * 10L);
+        }
+    }
+
+    @Test
+    public void move_the_exit_of_a_beacon_that_is_seen_again() throws Exception {
+        tested = new BeaconMap(testFileManager, null);
+        tested.put(TestBluetoothPlatform.EXPECTED_BEACON_1, new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.put(getNewBeaconId(), new EventEntry(100, 0, ScanEventType.ENTRY.getMask(), pairingId));
+
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement);
+        tested.seenAgain(tested.indexOf(advertisement), 200);
+
+        final List<BeaconId> expired = new ArrayList<>();
+        BeaconMap.ExpiryListener listener = new BeaconMap.ExpiryListener() {
+            @Override
+            public void onExpired(BeaconMap beaconMap, int slot, long timeSinceLastSeen) {
+                expired.add(beaconMap.getBeaconId(slot));
+            }
+        };
+        tested.removeExpired(250, 100, listener);
+        Assertions.assertThat(expired).containsExactly(getNewBeaconId());
+
+        tested.addScanPauseTime(1000);
+        tested.removeExpired(1250, 100, listener);
+        Assertions.assertThat(expired).containsExactly(getNewBeaconId());
+
+        tested.removeExpired(1301, 100, listener);
+        Assertions.assertThat(expired).containsExactly(getNewBeaconId(), TestBluetoothPlatform.EXPECTED_BEACON_1);
+        Assertions.assertThat(tested.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void restore_repeat_sightings_and_pauses_from_the_journal() throws Exception {
+        File file = getTempFile();
+        BeaconMap first = new BeaconMap(testFileManager, file);
+        first.put(TestBluetoothPlatform.EXPECTED_BEACON_1, new EventEntry(10, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.put(getNewBeaconId(), new EventEntry(10, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.flush();
+
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement);
+        first.seenAgain(first.indexOf(advertisement), 20);
+        first.addScanPauseTime(300);
+        first.flush();
+
+        tested = new BeaconMap(testFileManager, file);
+
+        EventEntry seenAgain = tested.get(TestBluetoothPlatform.EXPECTED_BEACON_1);
+        Assertions.assertThat(seenAgain.getLastBeaconTime()).isEqualTo(20);
+        Assertions.assertThat(seenAgain.getScanPauseTime()).isEqualTo(300);
+        Assertions.assertThat(seenAgain.getPairingId()).isEqualTo(pairingId);
+        Assertions.assertThat(tested.get(getNewBeaconId()).getLastBeaconTime()).isEqualTo(10);
+        Assertions.assertThat(tested.get(getNewBeaconId()).getScanPauseTime()).isEqualTo(300);
+    }
+
+    @Test
+    public void ignore_a_record_cut_off_by_a_crash() throws Exception {
+        File file = getTempFile();
+        BeaconMap first = new BeaconMap(testFileManager, file);
+        first.put(getNewBeaconId(), new EventEntry(10, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        first.flush();
+
+        FileOutputStream output = new FileOutputStream(file, true);
+        output.write(new byte[]{BeaconMapJournal.RECORD_PUT, 1, 2, 3});
+        output.close();
+
+        tested = new BeaconMap(testFileManager, file);
+        Assertions.assertThat(tested.size()).isEqualTo(1);
+
+        tested.put(TestBluetoothPlatform.EXPECTED_BEACON_1, new EventEntry(20, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.flush();
+
+        Assertions.assertThat(new BeaconMap(testFileManager, file).size()).isEqualTo(2);
+    }
+
+    @Test
+    public void write_a_snapshot_again_after_a_failed_one() throws Exception {
+        File directory = new File(getTempFile().getPath() + ".d");
+        File file = new File(directory, "journal");
+        tested = new BeaconMap(testFileManager, file);
+        tested.put(getNewBeaconId(), new EventEntry(10, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.flush();
+        Assertions.assertThat(file.exists()).isFalse();
+
+        Assertions.assertThat(directory.mkdir()).isTrue();
+        tested.addScanPauseTime(1);
+        tested.flush();
+
+        BeaconMap restored = new BeaconMap(testFileManager, file);
+        Assertions.assertThat(restored.size()).isEqualTo(1);
+        Assertions.assertThat(restored.get(getNewBeaconId()).getScanPauseTime()).isEqualTo(1);
+        file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void compact_the_journal() throws Exception {
+        File file = getTempFile();
+        tested = new BeaconMap(testFileManager, file);
+        tested.put(getNewBeaconId(), new EventEntry(10, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.flush();
+        long snapshotSize = file.length();
+
+        for (int i = 0; i < 2000; i++) {
+            tested.addScanPauseTime(1);
+            tested.flush();
+        }
+
+        Assertions.assertThat(file.length()).isLessThan(snapshotSize + 2000 * 9);
+        Assertions.assertThat(new BeaconMap(testFileManager, file).get(getNewBeaconId()).getScanPauseTime()).isEqualTo(2000);
+    }
+
+    @Test
+    public void migrate_a_map_written_by_older_versions() throws Exception {
+        File file = getTempFile();
+        HashMap<BeaconId, EventEntry> legacy = new HashMap<>();
+        legacy.put(getNewBeaconId(), new EventEntry(10, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        testFileManager.write(legacy, file);
+
+        tested = new BeaconMap(testFileManager, file);
+        Assertions.assertThat(tested.size()).isEqualTo(1);
+
+        tested.flush();
+        Assertions.assertThat(new BeaconMap(testFileManager, file).get(getNewBeaconId()).getPairingId()).isEqualTo(pairingId);
+    }
+
+    @Test
+    public void smooth_the_rssi_and_hand_out_each_update_once() throws Exception {
+        tested = new BeaconMap(testFileManager, null);
+        tested.put(TestBluetoothPlatform.EXPECTED_BEACON_1, new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), pairingId));
+        tested.put(getNewBeaconId(), new EventEntry(0, 0, ScanEventType.ENTRY.getMask(), pairingId));
+
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement);
+        int slot = tested.indexOf(advertisement);
+        Assertions.assertThat(tested.getRssi(slot)).isEqualTo(Integer.MIN_VALUE);
+
+        tested.updateRssi(slot, -70);
+        Assertions.assertThat(tested.getRssi(slot)).isEqualTo(-70);
+        tested.updateRssi(slot, -90);
+        tested.updateRssi(slot, -70);
+        Assertions.assertThat(tested.getRssi(slot)).isGreaterThan(-80).isLessThan(-70);
+
+        BeaconId[] beaconIds = new BeaconId[tested.size()];
+        int[] rssis = new int[tested.size()];
+        Assertions.assertThat(tested.takeRssiUpdates(beaconIds, rssis)).isEqualTo(1);
+        Assertions.assertThat(beaconIds[0]).isEqualTo(TestBluetoothPlatform.EXPECTED_BEACON_1);
+        Assertions.assertThat(rssis[0]).isEqualTo(tested.getRssi(slot));
+        Assertions.assertThat(tested.takeRssiUpdates(beaconIds, rssis)).isEqualTo(0);
+    }
 }
@@ -0,0 +1,220 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sensorberg.sdk.SensorbergTestApplication;
+import com.sensorberg.sdk.di.TestComponent;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
+import com.sensorberg.sdk.model.persistence.ActionConversion;
+import com.sensorberg.sdk.model.persistence.BeaconScan;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import util.TestConstants;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class TheHistoryStoreShould {
+
+    private static final String INSTANCE_UUID = UUID.randomUUID().toString();
+
+    private static final String PAIRING_ID = UUID.randomUUID().toString();
+
+    @Inject
+    Gson gson;
+
+    private HistoryStore tested;
+
+    @Before
+    public void setUp() throws Exception {
+        ((TestComponent) SensorbergTestApplication.getComponent()).inject(this);
+
+        tested = new HistoryStore(InstrumentationRegistry.getContext(), Long.toString(System.currentTimeMillis()), gson);
+    }
+
+    @Test
+    public void keep_the_rows_appended_after_the_page_was_selected() throws Exception {
+        tested.addScans(Arrays.asList(scan(100), scan(101)));
+
+        HistoryStore.Page page = tested.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE);
+        tested.addScans(Arrays.asList(scan(102)));
+
+        assertThat(page.scanCount).isEqualTo(2);
+        assertThat(scans(page).size()).isEqualTo(2);
+
+        tested.commit(page.lastSeq);
+
+        assertThat(tested.size()).isEqualTo(1);
+        JsonArray left = scans(tested.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE));
+        assertThat(left.get(0).getAsJsonObject().get("dt").getAsLong()).isEqualTo(102L);
+    }
+
+    @Test
+    public void select_the_rows_in_pages() throws Exception {
+        tested.addScans(Arrays.asList(scan(100), scan(101), scan(102)));
+
+        HistoryStore.Page first = tested.nextPage(2);
+        tested.commit(first.lastSeq);
+        HistoryStore.Page second = tested.nextPage(2);
+
+        assertThat(first.scanCount).isEqualTo(2);
+        assertThat(second.scanCount).isEqualTo(1);
+        assertThat(second.lastSeq).isGreaterThan(first.lastSeq);
+    }
+
+    @Test
+    public void only_replace_a_conversion_by_a_higher_type() throws Exception {
+        assertThat(tested.putConversion(new ActionConversion(INSTANCE_UUID, ActionConversion.TYPE_IGNORED))).isTrue();
+        assertThat(tested.putConversion(new ActionConversion(INSTANCE_UUID, ActionConversion.TYPE_SUPPRESSED))).isFalse();
+        assertThat(tested.putConversion(new ActionConversion(INSTANCE_UUID, ActionConversion.TYPE_SUCCESS))).isTrue();
+
+        HistoryStore.Page page = tested.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE);
+        assertThat(page.conversionCount).isEqualTo(1);
+
+        Rows rows = new Rows();
+        page.writeConversions(rows);
+        JsonArray conversions = rows.json;
+        assertThat(conversions.get(0).getAsJsonObject().get("type").getAsInt()).isEqualTo(ActionConversion.TYPE_SUCCESS);
+    }
+
+    @Test
+    public void keep_the_cursor_when_opened_again() throws Exception {
+        String fileName = Long.toString(System.currentTimeMillis()) + "cursor";
+        tested = new HistoryStore(InstrumentationRegistry.getContext(), fileName, gson);
+        tested.addScans(Arrays.asList(scan(100), scan(101)));
+        tested.commit(tested.nextPage(1).lastSeq);
+
+        HistoryStore reopened = new HistoryStore(InstrumentationRegistry.getContext(), fileName, gson);
+
+        assertThat(reopened.size()).isEqualTo(1);
+        assertThat(scans(reopened.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE)).get(0).getAsJsonObject()
+                .get("dt").getAsLong()).isEqualTo(101L);
+    }
+
+    @Test
+    public void accept_any_conversion_after_the_previous_one_was_published() throws Exception {
+        tested.putConversion(new ActionConversion(INSTANCE_UUID, ActionConversion.TYPE_SUCCESS));
+        tested.commit(tested.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE).lastSeq);
+
+        assertThat(tested.putConversion(new ActionConversion(INSTANCE_UUID, ActionConversion.TYPE_IGNORED))).isTrue();
+        assertThat(tested.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void keep_the_rows_after_the_cursor_when_compacted() throws Exception {
+        tested.addScans(Arrays.asList(scan(100), scan(101)));
+        HistoryStore.Page page = tested.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE);
+        tested.commit(page.lastSeq);
+        tested.addScans(Arrays.asList(scan(102)));
+
+        tested.compact();
+
+        assertThat(tested.size()).isEqualTo(1);
+        assertThat(scans(tested.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE)).size()).isEqualTo(1);
+    }
+
+    @Test
+    public void collapse_an_entry_and_its_exit_into_a_dwell_session() throws Exception {
+        tested.addToSessions(Arrays.asList(entry(1000, -70), exit(5000, -80)), 0);
+
+        assertThat(tested.closeSessions(5001, 0)).isEqualTo(1);
+
+        HistoryStore.Page page = tested.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE);
+        assertThat(page.scanCount).isEqualTo(0);
+        assertThat(page.sessionCount).isEqualTo(1);
+        JsonObject session = sessions(page).get(0).getAsJsonObject();
+        assertThat(session.get("start").getAsLong()).isEqualTo(1000L);
+        assertThat(session.get("end").getAsLong()).isEqualTo(5000L);
+        assertThat(session.get("samples").getAsInt()).isEqualTo(2);
+        assertThat(session.get("minRssi").getAsInt()).isEqualTo(-80);
+        assertThat(session.get("maxRssi").getAsInt()).isEqualTo(-70);
+    }
+
+    @Test
+    public void merge_the_flaps_of_a_beacon_within_the_merge_gap() throws Exception {
+        tested.addToSessions(Arrays.asList(entry(1000, -70), exit(2000, -75), entry(2500, -60), exit(3000, -90)), 1000);
+        tested.addToSessions(Arrays.asList(entry(10000, -70)), 1000);
+
+        assertThat(tested.openSessions()).isEqualTo(1);
+        JsonArray sessions = sessions(tested.nextPage(BeaconActionHistoryPublisher.MAX_UPLOAD_SIZE));
+        assertThat(sessions.size()).isEqualTo(1);
+        JsonObject session = sessions.get(0).getAsJsonObject();
+        assertThat(session.get("start").getAsLong()).isEqualTo(1000L);
+        assertThat(session.get("end").getAsLong()).isEqualTo(3000L);
+        assertThat(session.get("samples").getAsInt()).isEqualTo(4);
+        assertThat(session.get("minRssi").getAsInt()).isEqualTo(-90);
+        assertThat(session.get("maxRssi").getAsInt()).isEqualTo(-60);
+    }
+
+    @Test
+    public void keep_a_dwell_session_open_until_the_merge_gap_passed() throws Exception {
+        tested.addToSessions(Arrays.asList(entry(1000, -70), exit(2000, -75)), 1000);
+
+        assertThat(tested.closeSessions(1500, 0)).isEqualTo(0);
+        assertThat(tested.size()).isEqualTo(0);
+
+        tested.addToSessions(Arrays.asList(entry(2800, -65)), 1000);
+
+        assertThat(tested.closeSessions(Long.MAX_VALUE, 0)).isEqualTo(0);
+        assertThat(tested.closeSessions(Long.MAX_VALUE, 2801)).isEqualTo(1);
+        assertThat(tested.openSessions()).isEqualTo(0);
+    }
+
+    @Test
+    public void forget_outdated_presentation_times() throws Exception {
+        tested.putPresentationTime("old", 1000);
+        tested.putPresentationTime("new", 3000);
+
+        tested.deletePresentationTimesOlderThan(2000);
+
+        assertThat(tested.getPresentationTime("old")).isNull();
+        assertThat(tested.getPresentationTime("new")).isEqualTo(3000L);
+    }
+
+    private static BeaconScan scan(long time) {
+        return BeaconScan.from(TestConstants.BEACON_SCAN_ENTRY_EVENT(time));
+    }
+
+    private static ScanEvent entry(long time, int rssi) {
+        return new ScanEvent(TestConstants.REGULAR_BEACON_ID, time, true, "00:11:22:AA:BB:CC", rssi, 0, null, PAIRING_ID);
+    }
+
+    private static ScanEvent exit(long time, int rssi) {
+        return new ScanEvent(TestConstants.REGULAR_BEACON_ID, time, false, null, rssi, 0, null, PAIRING_ID);
+    }
+
+    private static JsonArray sessions(HistoryStore.Page page) throws Exception {
+        Rows rows = new Rows();
+        page.writeSessions(rows);
+        return rows.json;
+    }
+
+    private static JsonArray scans(HistoryStore.Page page) throws Exception {
+        Rows rows = new Rows();
+        page.writeScans(rows);
+        return rows.json;
+    }
+
+    private static class Rows implements HistoryRequestBody.RowWriter {
+
+        final JsonArray json = new JsonArray();
+
+        @Override
+        public void write(String row) {
+            json.add(new JsonParser().parse(row));
+        }
+    }
+}
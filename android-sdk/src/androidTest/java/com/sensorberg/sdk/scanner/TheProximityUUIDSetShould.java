@@ -0,0 +1,66 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.sensorberg.sdk.testUtils.TestBluetoothPlatform;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+@RunWith(AndroidJUnit4.class)
+public class TheProximityUUIDSetShould {
+
+    @Test
+    public void accept_everything_without_proximity_uuids() {
+        ProximityUUIDSet tested = ProximityUUIDSet.from(Collections.<String>emptyList());
+
+        Assertions.assertThat(tested).isSameAs(ProximityUUIDSet.ALL);
+        Assertions.assertThat(tested.accepts(1, 2)).isTrue();
+    }
+
+    @Test
+    public void accept_only_its_proximity_uuids() {
+        ProximityUUIDSet tested = ProximityUUIDSet.from(Arrays.asList(TestBluetoothPlatform.SENSORBERG_PROXIMITY_UUID_0.toLowerCase()));
+
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        Assertions.assertThat(ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement)).isTrue();
+        Assertions.assertThat(tested.accepts(advertisement)).isTrue();
+        Assertions.assertThat(ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1, advertisement)).isTrue();
+        Assertions.assertThat(tested.accepts(advertisement)).isFalse();
+    }
+
+    @Test
+    public void skip_invalid_proximity_uuids() {
+        ProximityUUIDSet tested = ProximityUUIDSet.from(Arrays.asList("not a uuid", "0123456789abcdef0123456789abcdeX"));
+
+        Assertions.assertThat(tested.acceptsAll()).isTrue();
+    }
+
+    @Test
+    public void find_every_member_of_a_large_set() {
+        List<String> proximityUUIDs = new ArrayList<>();
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            proximityUUIDs.add(uuid.toString().replace("-", ""));
+        }
+        proximityUUIDs.add("00000000000000000000000000000000");
+
+        ProximityUUIDSet tested = ProximityUUIDSet.from(proximityUUIDs);
+
+        for (UUID uuid : uuids) {
+            Assertions.assertThat(tested.accepts(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())).isTrue();
+        }
+        Assertions.assertThat(tested.accepts(0, 0)).isTrue();
+        UUID other = UUID.randomUUID();
+        Assertions.assertThat(tested.accepts(other.getMostSignificantBits(), other.getLeastSignificantBits())).isFalse();
+    }
+}
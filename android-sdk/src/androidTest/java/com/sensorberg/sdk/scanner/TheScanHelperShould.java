@@ -145,5 +145,35 @@ public class TheScanHelperShould {
         Pair<BeaconId, Integer> beacon = ScanHelper.getBeaconID(TestBluetoothPlatform.NON_STANDART_BYTES_THAT_FILLED_WITH_ZEROS_PRODUCE_A_BEACON);
         Assertions.assertThat(beacon).isNull();
     }
-}
 
+    @Test
+    public void parse_a_beacon_in_place() {
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        Assertions.assertThat(ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement)).isTrue();
+        Assertions.assertThat(advertisement.matches(TestBluetoothPlatform.EXPECTED_BEACON_1)).isTrue();
+        Assertions.assertThat(advertisement.getMajorId()).isEqualTo(273);
+        Assertions.assertThat(advertisement.getMinorId()).isEqualTo(273);
+        Assertions.assertThat(advertisement.getCalibratedTxPower()).isEqualTo(-58);
+        Assertions.assertThat(advertisement.beaconIdHashCode()).isEqualTo(TestBluetoothPlatform.EXPECTED_BEACON_1.hashCode());
+        Assertions.assertThat(advertisement.toBeaconId()).isEqualTo(TestBluetoothPlatform.EXPECTED_BEACON_1);
+    }
+
+    @Test
+    public void reuse_the_advertisement_for_the_next_beacon() {
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_BEACON_1, advertisement);
+        ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1, advertisement);
+
+        Assertions.assertThat(advertisement.matches(TestBluetoothPlatform.EXPECTED_BEACON_1)).isFalse();
+        Assertions.assertThat(advertisement.matches(TestBluetoothPlatform.EXPECTED_ALIEN_1)).isTrue();
+        Assertions.assertThat(advertisement.beaconIdHashCode()).isEqualTo(TestBluetoothPlatform.EXPECTED_ALIEN_1.hashCode());
+    }
+
+    @Test
+    public void not_parse_other_bluetooth_devices() {
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        Assertions.assertThat(ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_ALTBEACON_WITH_FLAGS, advertisement)).isFalse();
+        Assertions.assertThat(ScanHelper.parseBeacon(TestBluetoothPlatform.BYTES_FOR_OTHER_BT_DEVICE_4, advertisement)).isFalse();
+        Assertions.assertThat(ScanHelper.parseBeacon(TestBluetoothPlatform.NON_STANDART_BYTES_THAT_FILLED_WITH_ZEROS_PRODUCE_A_BEACON, advertisement)).isFalse();
+    }
+}
@@ -0,0 +1,95 @@
+package com.sensorberg.sdk.scanner;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.sensorberg.sdk.testUtils.TestBluetoothPlatform;
+
+import org.fest.assertions.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class TheScanRecordRingShould {
+
+    private ScanRecordRing tested;
+
+    private List<Integer> rssis;
+
+    private ScanRecordRing.Consumer consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        tested = new ScanRecordRing(4);
+        rssis = new ArrayList<>();
+        consumer = new ScanRecordRing.Consumer() {
+            @Override
+            public void onScanRecord(String address, int rssi, byte[] scanRecord) {
+                rssis.add(rssi);
+            }
+        };
+    }
+
+    @Test
+    public void round_the_capacity_up_to_a_power_of_two() {
+        Assertions.assertThat(new ScanRecordRing(3).getCapacity()).isEqualTo(4);
+        Assertions.assertThat(new ScanRecordRing(256).getCapacity()).isEqualTo(256);
+        Assertions.assertThat(new ScanRecordRing(1).getCapacity()).isEqualTo(2);
+    }
+
+    @Test
+    public void request_a_drain_only_once_until_drained() {
+        Assertions.assertThat(tested.offer(null, -50, TestBluetoothPlatform.BYTES_FOR_BEACON_1)).isTrue();
+        Assertions.assertThat(tested.offer(null, -51, TestBluetoothPlatform.BYTES_FOR_BEACON_1)).isFalse();
+
+        Assertions.assertThat(tested.drain(consumer)).isEqualTo(2);
+        Assertions.assertThat(rssis).containsExactly(-50, -51);
+
+        Assertions.assertThat(tested.offer(null, -52, TestBluetoothPlatform.BYTES_FOR_BEACON_1)).isTrue();
+    }
+
+    @Test
+    public void count_the_records_dropped_while_full() {
+        for (int i = 0; i < 6; i++) {
+            tested.offer(null, -i, TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+        }
+
+        Assertions.assertThat(tested.getDroppedCount()).isEqualTo(2);
+        Assertions.assertThat(tested.drain(consumer)).isEqualTo(4);
+        Assertions.assertThat(rssis).containsExactly(0, -1, -2, -3);
+    }
+
+    @Test
+    public void keep_the_records_in_order_when_wrapping_around() {
+        for (int i = 0; i < 10; i++) {
+            tested.offer(null, i, TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+            tested.offer(null, i, TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+            tested.drain(consumer);
+        }
+
+        Assertions.assertThat(rssis).hasSize(20);
+        Assertions.assertThat(tested.getDroppedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void hand_out_a_record_that_parses_like_the_original() {
+        tested.offer("00:11:22:33:44:55", -60, TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1);
+        tested.offer("00:11:22:33:44:55", -60, TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+        final List<Boolean> parsed = new ArrayList<>();
+        final BeaconAdvertisement advertisement = new BeaconAdvertisement();
+
+        tested.drain(new ScanRecordRing.Consumer() {
+            @Override
+            public void onScanRecord(String address, int rssi, byte[] scanRecord) {
+                Assertions.assertThat(address).isEqualTo("00:11:22:33:44:55");
+                parsed.add(ScanHelper.parseBeacon(scanRecord, advertisement));
+            }
+        });
+
+        Assertions.assertThat(parsed).containsExactly(true, true);
+        Assertions.assertThat(advertisement.matches(TestBluetoothPlatform.EXPECTED_BEACON_1)).isTrue();
+    }
+}
@@ -12,11 +12,15 @@ import com.sensorberg.sdk.testUtils.TestServiceScheduler;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import android.content.SharedPreferences;
 import android.support.test.runner.AndroidJUnit4;
 
+import java.util.Collections;
+import java.util.List;
+
 import javax.inject.Inject;
 
 import util.Utils;
@@ -26,6 +30,10 @@ import static com.sensorberg.sdk.testUtils.SensorbergMatcher.isEntryEvent;
 import static com.sensorberg.sdk.testUtils.SensorbergMatcher.isExitEvent;
 import static com.sensorberg.sdk.testUtils.SensorbergMatcher.isNotEntryEvent;
 import static com.sensorberg.sdk.testUtils.SensorbergMatcher.isNotExitEvent;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -127,4 +135,59 @@ public class TheScannerWithoutPausesShould {
         verify(mockListener).onScanEventDetected(isNotExitEvent());
         verify(mockListener).onScanEventDetected(hasBeaconId(TestBluetoothPlatform.EXPECTED_BEACON_1));
     }
+
+    @Test
+    public void coalesce_rssi_updates_within_the_dispatch_interval() {
+        AbstractScanner.RssiListener rssiListener = Mockito.mock(AbstractScanner.RssiListener.class);
+        tested.setRssiListener(rssiListener);
+        tested.setRssiDispatchInterval(1000);
+
+        bluetoothPlatform.fakeIBeaconSighting();
+        bluetoothPlatform.fakeIBeaconSighting();
+        bluetoothPlatform.fakeIBeaconSighting();
+
+        verify(rssiListener).onRssiUpdated(TestBluetoothPlatform.EXPECTED_BEACON_1, -100);
+
+        testHandlerManager.getCustomClock().setNowInMillis(1000);
+
+        verify(rssiListener, times(2)).onRssiUpdated(TestBluetoothPlatform.EXPECTED_BEACON_1, -100);
+        verifyNoMoreInteractions(rssiListener);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deliver_the_exits_of_one_tick_in_one_batch() {
+        bluetoothPlatform.fakeIBeaconSighting(TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+        bluetoothPlatform.fakeIBeaconSighting(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1);
+
+        BatchScannerListener batchListener = Mockito.mock(BatchScannerListener.class);
+        ScannerListener singleListener = Mockito.mock(ScannerListener.class);
+        tested.addScannerListener(batchListener);
+        tested.addScannerListener(singleListener);
+
+        testHandlerManager.getCustomClock().setNowInMillis(Utils.EXIT_TIME_HAS_PASSED);
+
+        ArgumentCaptor<List> batch = ArgumentCaptor.forClass(List.class);
+        verify(batchListener).onScanEventsDetected(batch.capture());
+        verify(batchListener, never()).onScanEventDetected(any(ScanEvent.class));
+        assertThat(batch.getValue()).hasSize(2);
+        assertThat(((ScanEvent) batch.getValue().get(0)).isEntry()).isFalse();
+        assertThat(((ScanEvent) batch.getValue().get(1)).isEntry()).isFalse();
+
+        verify(singleListener, times(2)).onScanEventDetected(isExitEvent());
+    }
+
+    @Test
+    public void reject_the_beacons_of_other_accounts_before_the_entry() {
+        ScannerListener mockListener = Mockito.mock(ScannerListener.class);
+        tested.addScannerListener(mockListener);
+        tested.setProximityUUIDs(Collections.singletonList(TestBluetoothPlatform.SENSORBERG_PROXIMITY_UUID_0.toLowerCase()));
+
+        bluetoothPlatform.fakeIBeaconSighting(TestBluetoothPlatform.BYTES_FOR_ALIEN_BEACON_1);
+        bluetoothPlatform.fakeIBeaconSighting(TestBluetoothPlatform.BYTES_FOR_BEACON_1);
+
+        verify(mockListener).onScanEventDetected(hasBeaconId(TestBluetoothPlatform.EXPECTED_BEACON_1));
+        verifyNoMoreInteractions(mockListener);
+        assertThat(tested.getRejectedScanRecords()).isEqualTo(1);
+    }
 }
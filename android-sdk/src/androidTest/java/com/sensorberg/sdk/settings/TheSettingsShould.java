@@ -111,6 +111,22 @@ public class TheSettingsShould {
         Assertions.assertThat(tested.getSettingsRevision()).isEqualTo(1L);
     }
 
+    @Test
+    public void call_back_when_the_beacon_report_level_changes() throws Exception {
+        SettingsResponse settingsResponse = gson.fromJson(
+                Utils.getRawResourceAsString(com.sensorberg.sdk.test.R.raw.response_settings_newdefaults, InstrumentationRegistry.getContext()),
+                SettingsResponse.class);
+        Mockito.when(mockRetrofitApiService.getSettings())
+                .thenReturn(Calls.response(settingsResponse), Calls.response(settingsResponse));
+        SettingsUpdateCallback callback = Mockito.mock(SettingsUpdateCallback.class);
+        tested.setSettingsUpdateCallback(callback);
+
+        tested.updateSettingsFromNetwork();
+        tested.updateSettingsFromNetwork();
+
+        Mockito.verify(callback, Mockito.times(1)).onBeaconReportLevelChange(Settings.BEACON_REPORT_LEVEL_ONLY_CONTAINED);
+    }
+
     @SuppressLint("CommitPrefEdits")
     @Test
     public void test_update_the_default_values_if_the_constants_change() throws Exception {
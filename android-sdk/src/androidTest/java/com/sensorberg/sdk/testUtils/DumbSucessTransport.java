@@ -5,6 +5,7 @@ import com.sensorberg.sdk.internal.interfaces.BeaconResponseHandler;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.internal.transport.interfaces.TransportHistoryCallback;
 import com.sensorberg.sdk.internal.transport.interfaces.TransportSettingsCallback;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
 import com.sensorberg.sdk.model.persistence.ActionConversion;
 import com.sensorberg.sdk.model.persistence.BeaconAction;
 import com.sensorberg.sdk.model.persistence.BeaconScan;
@@ -20,6 +21,11 @@ public class DumbSucessTransport implements Transport {
 
     }
 
+    @Override
+    public void invalidateBeaconLayout() {
+
+    }
+
     @Override
     public void setBeaconHistoryUploadIntervalListener(BeaconHistoryUploadIntervalListener listener) {
 
@@ -35,6 +41,11 @@ public class DumbSucessTransport implements Transport {
 
     }
 
+    @Override
+    public void setLayoutValidityListener(LayoutValidityListener layoutValidityListener) {
+
+    }
+
     @Override
     public void getBeacon(ScanEvent scanEvent, SortedMap<String, String> attributes, BeaconResponseHandler beaconResponseHandler) {
         beaconResponseHandler.onFailure(new IllegalArgumentException("this transport is dumb"));
@@ -54,4 +65,9 @@ public class DumbSucessTransport implements Transport {
     public void publishHistory(List<BeaconScan> scans, List<BeaconAction> actions, List<ActionConversion> conversions, TransportHistoryCallback callback) {
         callback.onSuccess(scans, actions, conversions);
     }
+
+    @Override
+    public void publishHistory(HistoryRequestBody body, TransportHistoryCallback callback) {
+        callback.onSuccess(null, null, null);
+    }
 }
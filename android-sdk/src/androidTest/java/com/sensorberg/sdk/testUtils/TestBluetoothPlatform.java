@@ -1,12 +1,17 @@
 package com.sensorberg.sdk.testUtils;
 
+import com.sensorberg.sdk.internal.IBeaconScanFilter;
 import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
 import com.sensorberg.sdk.model.BeaconId;
+import com.sensorberg.sdk.scanner.BeaconFrameTable;
 
 import android.annotation.TargetApi;
 import android.bluetooth.BluetoothAdapter;
 import android.os.Build;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import util.Utils;
 
 import static util.Utils.hexStringToByteArray;
@@ -60,6 +65,18 @@ public class TestBluetoothPlatform implements BluetoothPlatform {
     public static final byte[] BYTES_FOR_ALTBEACON_WITHOUT_FLAGS = hexStringToByteArray( ALTBEACON_HEADER + BEACON_ID_1 + CALIBRATED_TX_VALUE + ALT_BEACON_FOOTER );
     public static final byte[] BYTES_FOR_ALTBEACON_WITH_FLAGS = hexStringToByteArray( ADVERTISEMENT_DATA_FLAGS + ALTBEACON_HEADER + BEACON_ID_1 + CALIBRATED_TX_VALUE + ALT_BEACON_FOOTER );
 
+    public static final String EDDYSTONE_SERVICE_UUID_LIST = "0303AAFE";
+    public static final String EDDYSTONE_UID_HEADER = "1716AAFE00";
+    public static final String EDDYSTONE_EID_HEADER = "0D16AAFE30";
+    public static final String EDDYSTONE_TLM_HEADER = "1116AAFE20";
+    public static final String EDDYSTONE_TX_AT_0_METERS = "EB"; //DEC: -21, -62 at one meter
+    public static final String EDDYSTONE_EID_1 = "0102030405060708";
+    public static final String EDDYSTONE_TLM_1 = "00" + "0BB8" + "1880" + "00000064" + "000003E8"; //3000 mV, 24.5 degrees, 100 advertisements, 100 seconds
+
+    public static final byte[] BYTES_FOR_EDDYSTONE_UID_1 = hexStringToByteArray( ADVERTISEMENT_DATA_FLAGS + EDDYSTONE_SERVICE_UUID_LIST + EDDYSTONE_UID_HEADER + EDDYSTONE_TX_AT_0_METERS + SENSORBERG_PROXIMITY_UUID_0 + "0000" );
+    public static final byte[] BYTES_FOR_EDDYSTONE_EID_1 = hexStringToByteArray( ADVERTISEMENT_DATA_FLAGS + EDDYSTONE_SERVICE_UUID_LIST + EDDYSTONE_EID_HEADER + EDDYSTONE_TX_AT_0_METERS + EDDYSTONE_EID_1 );
+    public static final byte[] BYTES_FOR_EDDYSTONE_TLM_1 = hexStringToByteArray( ADVERTISEMENT_DATA_FLAGS + EDDYSTONE_SERVICE_UUID_LIST + EDDYSTONE_TLM_HEADER + EDDYSTONE_TLM_1 );
+
     public static final byte[] BYTES_FOR_OTHER_BT_DEVICE_1 = hexStringToByteArray( "1DF5E591493F40F8B8FD716280C66358F52289B9C58C460692340DE138CE" );
     public static final byte[] BYTES_FOR_OTHER_BT_DEVICE_2 = hexStringToByteArray( "0011223344556677889900112233445566778899001122334455667788990011223344556677889900112233445566778899001122334455667788990011" );
     public static final byte[] BYTES_FOR_OTHER_BT_DEVICE_3 = hexStringToByteArray( "0201120100" );
@@ -71,6 +88,8 @@ public class TestBluetoothPlatform implements BluetoothPlatform {
     public static final BeaconId EXPECTED_BEACON_1 = new BeaconId(Utils.hexStringToByteArray(BEACON_ID_1));
     public static final BeaconId EXPECTED_ALIEN_1 = new BeaconId(Utils.hexStringToByteArray(ALIEN_ID_1));
     public static final BeaconId EXPECTED_ESTIMOTE_ID = new BeaconId(Utils.hexStringToByteArray(ESTIMOTE_ID));
+    public static final BeaconId EXPECTED_EDDYSTONE_UID_1 = new BeaconId(Utils.hexStringToByteArray(SENSORBERG_PROXIMITY_UUID_0 + "0000" + "0000"));
+    public static final BeaconId EXPECTED_EDDYSTONE_EID_1 = new BeaconId(Utils.hexStringToByteArray(EDDYSTONE_EID_1 + "0000000000000000" + "0000" + "0000"));
 
     public static final byte[] BYTES_FOR_BEACON_1 = hexStringToByteArray( ADVERTISEMENT_DATA_FLAGS + IBEACON_HEADER + BEACON_ID_1 + CALIBRATED_TX_VALUE );
     public static final byte[] BYTES_FOR_SENSORBERG_BEACON_1 = hexStringToByteArray( ADVERTISEMENT_DATA_FLAGS + IBEACON_HEADER + BEACON_ID_1 + CALIBRATED_TX_VALUE );
@@ -78,6 +97,15 @@ public class TestBluetoothPlatform implements BluetoothPlatform {
 
     private BluetoothAdapter.LeScanCallback scanCallback;
 
+    /**
+     * Applied to every fake sighting, like the hardware filter of the bluetooth controller.
+     */
+    private Collection<String> proximityUUIDs = Collections.emptyList();
+
+    private BeaconFrameTable beaconFrameTable = BeaconFrameTable.DEFAULT;
+
+    private IBeaconScanFilter scanFilter = new IBeaconScanFilter(proximityUUIDs, beaconFrameTable);
+
     @Override
     public boolean isBluetoothLowEnergyDeviceTurnedOn() {
         return true;
@@ -103,6 +131,18 @@ public class TestBluetoothPlatform implements BluetoothPlatform {
         return this.scanCallback != null;
     }
 
+    @Override
+    public void setProximityUUIDs(Collection<String> proximityUUIDs) {
+        this.proximityUUIDs = proximityUUIDs;
+        this.scanFilter = new IBeaconScanFilter(proximityUUIDs, beaconFrameTable);
+    }
+
+    @Override
+    public void setBeaconFrameTable(BeaconFrameTable beaconFrameTable) {
+        this.beaconFrameTable = beaconFrameTable;
+        this.scanFilter = new IBeaconScanFilter(proximityUUIDs, beaconFrameTable);
+    }
+
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
     public void fakeIBeaconSighting() {
         fakeIBeaconSighting(BYTES_FOR_BEACON_1);
@@ -120,8 +160,18 @@ public class TestBluetoothPlatform implements BluetoothPlatform {
 
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
     public void fakeIBeaconSighting(byte[] bytesForFakeScan){
-        if (this.scanCallback != null){
+        if (this.scanCallback != null && scanFilter.matches(bytesForFakeScan)){
             this.scanCallback.onLeScan(null, -100, wrapWithZeroBytes(bytesForFakeScan, 62));
         }
     }
+
+    /**
+     * Delivers the sightings one after the other, like a batch of scan results reported by the controller.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public void fakeBatchedIBeaconSightings(byte[]... bytesForFakeScans){
+        for (byte[] bytesForFakeScan : bytesForFakeScans) {
+            fakeIBeaconSighting(bytesForFakeScan);
+        }
+    }
 }
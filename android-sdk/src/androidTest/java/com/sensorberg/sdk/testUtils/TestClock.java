@@ -1,8 +1,8 @@
 package com.sensorberg.sdk.testUtils;
 
-import com.sensorberg.sdk.internal.interfaces.Clock;
+import com.sensorberg.sdk.internal.interfaces.SettableClock;
 
-public class TestClock implements Clock {
+public class TestClock implements SettableClock {
 
     private long nowInMillis = 0;
 
@@ -16,6 +16,7 @@ public class TestClock implements Clock {
         return nowInMillis;
     }
 
+    @Override
     public void setNowInMillis(long nowInMillis) {
         this.nowInMillis = nowInMillis;
     }
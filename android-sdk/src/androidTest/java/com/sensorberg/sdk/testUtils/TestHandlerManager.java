@@ -1,7 +1,7 @@
 package com.sensorberg.sdk.testUtils;
 
 import com.sensorberg.sdk.internal.interfaces.RunLoop;
-import com.sensorberg.sdk.internal.interfaces.Clock;
+import com.sensorberg.sdk.internal.interfaces.SettableClock;
 import com.sensorberg.sdk.internal.interfaces.HandlerManager;
 
 import java.util.ArrayList;
@@ -43,7 +43,7 @@ public class TestHandlerManager implements HandlerManager {
         }
     }
 
-    public class CustomClock implements Clock {
+    public class CustomClock implements SettableClock {
 
         private long nowInMillis = 0;
 
@@ -57,6 +57,7 @@ public class TestHandlerManager implements HandlerManager {
             return nowInMillis;
         }
 
+        @Override
         public void setNowInMillis(long nowInMillis) {
             this.nowInMillis = nowInMillis;
             triggerRunLoop();
@@ -44,6 +44,16 @@ public class TestServiceScheduler implements ServiceScheduler, MessageDelayWindo
         android.util.Log.e(TAG, "NOT IMPLEMENTED");
     }
 
+    @Override
+    public void scheduleOnce(int MSG_type, long delayMillis) {
+        android.util.Log.e(TAG, "NOT IMPLEMENTED");
+    }
+
+    @Override
+    public void cancelOnce(int MSG_type) {
+        android.util.Log.e(TAG, "NOT IMPLEMENTED");
+    }
+
     @Override
     public void postToServiceDelayed(long delay, int type, Parcelable what, boolean surviveReboot) {
         android.util.Log.e(TAG, "NOT IMPLEMENTED");
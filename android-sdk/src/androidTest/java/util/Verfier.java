@@ -1,10 +1,17 @@
 package util;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
+
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 
+import java.io.IOException;
 import java.util.List;
 
+import okio.Buffer;
+
 import static org.mockito.Matchers.argThat;
 
 public class Verfier {
@@ -27,4 +34,35 @@ public class Verfier {
             }
         });
     }
+
+    public static HistoryRequestBody hasHistory(final int scans, final int actions, final int conversions) {
+        return argThat(new BaseMatcher<HistoryRequestBody>() {
+
+            public String actual;
+
+            @Override
+            public boolean matches(Object o) {
+                Buffer buffer = new Buffer();
+                try {
+                    ((HistoryRequestBody) o).writeTo(buffer);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                JsonObject body = new JsonParser().parse(buffer.readUtf8()).getAsJsonObject();
+                int[] sizes = {
+                        body.getAsJsonArray("events").size(),
+                        body.getAsJsonArray("actions").size(),
+                        body.getAsJsonArray("conversions").size()
+                };
+                actual = String.format("%d scans, %d actions and %d conversions", sizes[0], sizes[1], sizes[2]);
+                return sizes[0] == scans && sizes[1] == actions && sizes[2] == conversions;
+            }
+
+            @Override
+            public void describeTo(Description description) {
+                description.appendText(String.format("history was not %d scans, %d actions and %d conversions, it was %s",
+                        scans, actions, conversions, actual));
+            }
+        });
+    }
 }
@@ -6,11 +6,13 @@ import android.app.NotificationManager;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.location.LocationManager;
+import android.os.Build;
 import android.support.annotation.Nullable;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.sensorberg.sdk.internal.AndroidBluetoothPlatform;
+import com.sensorberg.sdk.internal.AndroidLollipopBluetoothPlatform;
 import com.sensorberg.sdk.internal.AndroidClock;
 import com.sensorberg.sdk.internal.AndroidFileManager;
 import com.sensorberg.sdk.internal.AndroidHandlerManager;
@@ -26,6 +28,7 @@ import com.sensorberg.sdk.internal.interfaces.HandlerManager;
 import com.sensorberg.sdk.internal.interfaces.Platform;
 import com.sensorberg.sdk.internal.interfaces.PlatformIdentifier;
 import com.sensorberg.sdk.internal.interfaces.ServiceScheduler;
+import com.sensorberg.sdk.internal.transport.LayoutSnapshotStore;
 import com.sensorberg.sdk.internal.transport.RetrofitApiServiceImpl;
 import com.sensorberg.sdk.internal.transport.RetrofitApiTransport;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
@@ -34,6 +37,7 @@ import com.sensorberg.sdk.location.LocationHelper;
 import com.sensorberg.sdk.location.PlayServiceManager;
 import com.sensorberg.sdk.model.ISO8601TypeAdapter;
 import com.sensorberg.sdk.scanner.BeaconActionHistoryPublisher;
+import com.sensorberg.sdk.scanner.HistoryStore;
 import com.sensorberg.sdk.settings.DefaultSettings;
 import com.sensorberg.sdk.settings.SettingsManager;
 import com.sensorberg.utils.PlayServicesUtils;
@@ -154,14 +158,19 @@ public class ProvidersModule {
     @Named("androidBluetoothPlatform")
     @Singleton
     public BluetoothPlatform provideAndroidBluetoothPlatform(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return new AndroidLollipopBluetoothPlatform(context);
+        }
         return new AndroidBluetoothPlatform(context);
     }
 
     @Provides
     @Named("realTransport")
     @Singleton
-    public Transport provideRealTransport(@Named("realRetrofitApiService") RetrofitApiServiceImpl retrofitApiService, Clock clock, SharedPreferences sharedPreferences, Gson gson) {
-        return new RetrofitApiTransport(retrofitApiService, clock, sharedPreferences, gson);
+    public Transport provideRealTransport(@Named("realRetrofitApiService") RetrofitApiServiceImpl retrofitApiService, Clock clock, SharedPreferences sharedPreferences, Gson gson,
+            FileManager fileManager) {
+        return new RetrofitApiTransport(retrofitApiService, clock, sharedPreferences, gson,
+                new LayoutSnapshotStore(fileManager.getFile(LayoutSnapshotStore.FILE_NAME)));
     }
 
     @Provides
@@ -174,6 +183,12 @@ public class ProvidersModule {
                 .create();
     }
 
+    @Provides
+    @Singleton
+    public HistoryStore provideHistoryStore(Context context, Gson gson) {
+        return new HistoryStore(context, HistoryStore.FILE_NAME, gson);
+    }
+
     @Provides
     @Named("realBeaconActionHistoryPublisher")
     @Singleton
@@ -181,8 +196,10 @@ public class ProvidersModule {
             @Named("realTransport") Transport transport,
             Clock clock,
             @Named("realHandlerManager") HandlerManager handlerManager,
-            SharedPreferences sharedPreferences, Gson gson) {
-        return new BeaconActionHistoryPublisher(transport, clock, handlerManager, sharedPreferences, gson);
+            SharedPreferences sharedPreferences, Gson gson, HistoryStore historyStore,
+            @Named("realSettingsManager") SettingsManager settingsManager) {
+        return new BeaconActionHistoryPublisher(transport, clock, handlerManager, sharedPreferences, gson, historyStore,
+                settingsManager);
     }
 
     @Provides
@@ -210,9 +227,9 @@ public class ProvidersModule {
     @Provides
     @Singleton
     @Nullable
-    public GeofenceManager provideGeofenceManager(Context context, @Named("realSettingsManager") SettingsManager settings, SharedPreferences preferences, Gson gson, @Nullable PlayServiceManager play) {
+    public GeofenceManager provideGeofenceManager(Context context, @Named("realSettingsManager") SettingsManager settings, SharedPreferences preferences, Gson gson, @Nullable PlayServiceManager play, LocationHelper location) {
         if (play != null) {
-            return new GeofenceManager(context, settings, preferences, gson, play);
+            return new GeofenceManager(context, settings, preferences, gson, play, location);
         } else {
             return null;
         }
@@ -37,10 +37,10 @@ import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.resolver.Resolver;
 import com.sensorberg.sdk.resolver.ResolverConfiguration;
 import com.sensorberg.sdk.resolver.ResolverListener;
+import com.sensorberg.sdk.scanner.BatchScannerListener;
 import com.sensorberg.sdk.scanner.BeaconActionHistoryPublisher;
 import com.sensorberg.sdk.scanner.ScanEvent;
 import com.sensorberg.sdk.scanner.Scanner;
-import com.sensorberg.sdk.scanner.ScannerListener;
 import com.sensorberg.sdk.settings.Settings;
 import com.sensorberg.sdk.settings.SettingsManager;
 import com.sensorberg.sdk.settings.SettingsUpdateCallback;
@@ -61,8 +61,8 @@ import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-public class InternalApplicationBootstrapper extends MinimalBootstrapper implements ScannerListener,
-        SyncStatusObserver, Transport.ProximityUUIDUpdateHandler, GeofenceListener {
+public class InternalApplicationBootstrapper extends MinimalBootstrapper implements BatchScannerListener,
+        SyncStatusObserver, Transport.ProximityUUIDUpdateHandler, Transport.LayoutValidityListener, GeofenceListener {
 
     private static final boolean SURVIVE_REBOOT = true;
 
@@ -125,6 +125,7 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
 
         this.transport = transport;
         transport.setProximityUUIDUpdateHandler(this);
+        transport.setLayoutValidityListener(this);
 
         if (geofenceAvailable) {
             geofenceManager.addListener(this);
@@ -183,27 +184,41 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
 
     @Override
     public void onScanEventDetected(ScanEvent scanEvent) {
+        onScanEventsDetected(Collections.singletonList(scanEvent));
+    }
+
+    /**
+     * Reports and resolves a batch of {@link ScanEvent}s: the history is saved once and the events are handed to the
+     * resolver with one message.
+     */
+    @Override
+    public void onScanEventsDetected(List<ScanEvent> scanEvents) {
 
         int reportLevel = settingsManager.getBeaconReportLevel();
 
         if (reportLevel == Settings.BEACON_REPORT_LEVEL_ALL) {
-            beaconActionHistoryPublisher.onScanEventDetected(scanEvent);
+            beaconActionHistoryPublisher.onScanEventsDetected(scanEvents);
         }
 
-        boolean contained;
+        List<ScanEvent> contained = new ArrayList<>(scanEvents.size());
         synchronized (proximityUUIDsMonitor) {
-            if (scanEvent.getBeaconId().getGeofenceData() == null) {
-                contained = proximityUUIDs.isEmpty()
-                        || proximityUUIDs.contains(scanEvent.getBeaconId().getProximityUUIDWithoutDashes());
-            } else {
-                contained = true;
+            for (ScanEvent scanEvent : scanEvents) {
+                if (scanEvent.getBeaconId().getGeofenceData() != null
+                        || proximityUUIDs.isEmpty()
+                        || proximityUUIDs.contains(scanEvent.getBeaconId().getProximityUUIDWithoutDashes())) {
+                    contained.add(scanEvent);
+                }
             }
         }
-        if (contained) {
+        if (!contained.isEmpty()) {
             if (reportLevel == Settings.BEACON_REPORT_LEVEL_ONLY_CONTAINED) {
-                beaconActionHistoryPublisher.onScanEventDetected(scanEvent);
+                beaconActionHistoryPublisher.onScanEventsDetected(contained);
+            }
+            if (contained.size() == 1) {
+                resolver.resolve(contained.get(0));
+            } else {
+                resolver.resolve(contained);
             }
-            resolver.resolve(scanEvent);
         }
     }
 
@@ -229,6 +244,8 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
         attributes.putAll(incoming);
         resolver.setAttributes(attributes);
         saveAttributes(attributes);
+        //the layout is targeted by the attributes, the next resolution fetches it again
+        transport.invalidateBeaconLayout();
     }
 
     private void saveAttributes(Map<String, String> attributes) {
@@ -326,10 +343,6 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
         }
     }
 
-    public void saveAllDataBeforeDestroy() {
-        beaconActionHistoryPublisher.saveAllData();
-    }
-
     public void hostApplicationInForeground() {
         scanner.hostApplicationInForeground();
         updateSettings();
@@ -419,6 +432,8 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
                 }
             }
 
+            applyProximityUUIDFilters();
+
             if (doFences) {
                 try {
                     geofenceManager.onFencesChanged(fences);
@@ -429,6 +444,34 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
         }
     }
 
+    /**
+     * Restricts the scan to the proximity UUIDs of the account, depending on the report level. Call with the
+     * {@link #proximityUUIDsMonitor}.
+     */
+    private void applyProximityUUIDFilters() {
+        // with the report level ALL the history also needs the beacons of other accounts
+        if (settingsManager.getBeaconReportLevel() == Settings.BEACON_REPORT_LEVEL_ALL) {
+            bluetoothPlatform.setProximityUUIDs(Collections.<String>emptyList());
+            scanner.setProximityUUIDs(Collections.<String>emptyList());
+        } else {
+            bluetoothPlatform.setProximityUUIDs(proximityUUIDs);
+            scanner.setProximityUUIDs(proximityUUIDs);
+        }
+    }
+
+    /**
+     * Refreshes the layout once when the next timeframe of its actions starts or ends, in addition to the regular
+     * layout updates.
+     */
+    @Override
+    public void layoutValidityChangesAt(long timestamp) {
+        if (timestamp == Long.MAX_VALUE) {
+            serviceScheduler.cancelOnce(SensorbergServiceMessage.MSG_BEACON_LAYOUT_UPDATE);
+        } else {
+            serviceScheduler.scheduleOnce(SensorbergServiceMessage.MSG_BEACON_LAYOUT_UPDATE, Math.max(0, timestamp - clock.now()));
+        }
+    }
+
     public ListUtils.Filter<BeaconEvent> beaconEventFilter = new ListUtils.Filter<BeaconEvent>() {
         @Override
         public boolean matches(BeaconEvent beaconEvent) {
@@ -480,5 +523,12 @@ public class InternalApplicationBootstrapper extends MinimalBootstrapper impleme
             serviceScheduler.cancelIntent(SensorbergServiceMessage.MSG_UPLOAD_HISTORY);
             serviceScheduler.scheduleRepeating(SensorbergServiceMessage.MSG_UPLOAD_HISTORY, newHistoryUploadInterval, TimeUnit.MILLISECONDS);
         }
+
+        @Override
+        public void onBeaconReportLevelChange(int newBeaconReportLevel) {
+            synchronized (proximityUUIDsMonitor) {
+                applyProximityUUIDFilters();
+            }
+        }
     };
 }
@@ -524,7 +524,6 @@ public class SensorbergService extends Service {
         Logger.log.logServiceState("onDestroy");
         if (bootstrapper != null) {
             bootstrapper.stopScanning();
-            bootstrapper.saveAllDataBeforeDestroy();
         }
         super.onDestroy();
     }
@@ -532,9 +531,6 @@ public class SensorbergService extends Service {
     @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
     @Override
     public void onTaskRemoved(Intent rootIntent) {
-        if (bootstrapper != null) {
-            bootstrapper.saveAllDataBeforeDestroy();
-        }
         Logger.log.logServiceState("onTaskRemoved");
         super.onTaskRemoved(rootIntent);
     }
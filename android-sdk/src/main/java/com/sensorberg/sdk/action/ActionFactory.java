@@ -37,14 +37,26 @@ public class ActionFactory {
 
 
     public static Action getAction(int actionType, JsonObject message, UUID actionUUID, long delay) throws JSONException {
-        String instanceUuid = UUID.randomUUID().toString();
+        ActionTemplate template = getTemplate(actionType, message, actionUUID, delay);
+        return template == null ? null : template.newAction();
+    }
+
+    /**
+     * Parses the content of an action once, see {@link ActionTemplate}.
+     *
+     * @param actionType - the {@link ServerType} of the action.
+     * @param message    - the content of the action as sent by the backend.
+     * @param actionUUID - the server uuid of the action.
+     * @param delay      - the delay in milliseconds.
+     * @return - the template, null if the action has no content.
+     */
+    public static ActionTemplate getTemplate(int actionType, JsonObject message, UUID actionUUID, long delay) {
         if (actionType == ServerType.SILENT){
-            return new SilentAction(actionUUID, instanceUuid);
+            return new ActionTemplate(actionType, actionUUID, null, null, null, null, delay);
         }
         if (message == null) {
             return null;
         }
-        Action value = null;
         String payload = null;
         JsonElement payloadElement = message.get(PAYLOAD);
         if (payloadElement != null && !payloadElement.isJsonNull()) {
@@ -63,45 +75,7 @@ public class ActionFactory {
 
         String url = getUriFromJson(message.get(URL), actionType);
 
-        switch (actionType) {
-            case ServerType.URL_MESSAGE: {
-                value = new UriMessageAction(
-                        actionUUID,
-                        subject,
-                        body,
-                        url,
-                        payload,
-                        delay,
-                        instanceUuid
-                );
-                break;
-            }
-            case ServerType.VISIT_WEBSITE: {
-                value = new VisitWebsiteAction(
-                        actionUUID,
-                        subject,
-                        body,
-                        Uri.parse(url),
-                        payload,
-                        delay,
-                        instanceUuid
-                );
-                break;
-            }
-            case ServerType.IN_APP: {
-                value = new InAppAction(
-                        actionUUID,
-                        subject,
-                        body,
-                        payload,
-                        Uri.parse(url),
-                        delay,
-                        instanceUuid
-                );
-                break;
-            }
-        }
-        return value;
+        return new ActionTemplate(actionType, actionUUID, subject, body, url, payload, delay);
     }
 
     private static Gson getGson() {
@@ -0,0 +1,66 @@
+package com.sensorberg.sdk.action;
+
+import android.net.Uri;
+
+import java.util.UUID;
+
+/**
+ * Class {@link ActionTemplate} holds the parsed content of an action of the layout. It is built once by
+ * {@link ActionFactory#getTemplate(int, com.google.gson.JsonObject, UUID, long)}, every resolution of the action
+ * only creates a new {@link Action} instance from it, see {@link #newAction()}.
+ */
+public final class ActionTemplate {
+
+    private final int actionType;
+
+    private final UUID actionUUID;
+
+    private final String subject;
+
+    private final String body;
+
+    private final String url;
+
+    private final Uri uri;
+
+    private final String payload;
+
+    private final long delay;
+
+    ActionTemplate(int actionType, UUID actionUUID, String subject, String body, String url, String payload, long delay) {
+        this.actionType = actionType;
+        this.actionUUID = actionUUID;
+        this.subject = subject;
+        this.body = body;
+        this.url = url;
+        this.uri = url == null ? null : Uri.parse(url);
+        this.payload = payload;
+        this.delay = delay;
+    }
+
+    /**
+     * Creates a new instance of the action with its own instance uuid.
+     *
+     * @return the {@link Action}, null if the action type is unknown
+     */
+    public Action newAction() {
+        String instanceUuid = UUID.randomUUID().toString();
+        switch (actionType) {
+            case ActionFactory.ServerType.SILENT: {
+                return new SilentAction(actionUUID, instanceUuid);
+            }
+            case ActionFactory.ServerType.URL_MESSAGE: {
+                return new UriMessageAction(actionUUID, subject, body, url, payload, delay, instanceUuid);
+            }
+            case ActionFactory.ServerType.VISIT_WEBSITE: {
+                return new VisitWebsiteAction(actionUUID, subject, body, uri, payload, delay, instanceUuid);
+            }
+            case ActionFactory.ServerType.IN_APP: {
+                return new InAppAction(actionUUID, subject, body, payload, uri, delay, instanceUuid);
+            }
+            default: {
+                return null;
+            }
+        }
+    }
+}
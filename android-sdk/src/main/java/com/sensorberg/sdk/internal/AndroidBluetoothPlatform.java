@@ -3,6 +3,7 @@ package com.sensorberg.sdk.internal;
 import com.sensorberg.bluetooth.CrashCallBackWrapper;
 import com.sensorberg.sdk.Logger;
 import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
+import com.sensorberg.sdk.scanner.BeaconFrameTable;
 
 import android.annotation.TargetApi;
 import android.bluetooth.BluetoothAdapter;
@@ -10,17 +11,19 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Build;
 
+import java.util.Collection;
+
 public class AndroidBluetoothPlatform implements BluetoothPlatform {
 
-    private final CrashCallBackWrapper crashCallBackWrapper;
+    protected final CrashCallBackWrapper crashCallBackWrapper;
 
-    private BluetoothAdapter bluetoothAdapter;
+    protected BluetoothAdapter bluetoothAdapter;
 
     private final Context context;
 
-    private boolean leScanRunning = false;
+    protected boolean leScanRunning = false;
 
-    private PermissionChecker permissionChecker;
+    protected PermissionChecker permissionChecker;
 
     public AndroidBluetoothPlatform(Context ctx) {
         context = ctx;
@@ -102,4 +105,14 @@ public class AndroidBluetoothPlatform implements BluetoothPlatform {
     public boolean isLeScanRunning() {
         return leScanRunning;
     }
+
+    @Override
+    public void setProximityUUIDs(Collection<String> proximityUUIDs) {
+        //the old API cannot filter in hardware
+    }
+
+    @Override
+    public void setBeaconFrameTable(BeaconFrameTable beaconFrameTable) {
+        //the old API cannot filter in hardware
+    }
 }
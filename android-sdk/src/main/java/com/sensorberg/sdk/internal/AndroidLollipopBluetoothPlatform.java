@@ -0,0 +1,216 @@
+package com.sensorberg.sdk.internal;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.scanner.BeaconFrameTable;
+import com.sensorberg.sdk.settings.TimeConstants;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.os.Build;
+import android.os.ParcelUuid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Class {@link AndroidLollipopBluetoothPlatform} scans with the {@link BluetoothLeScanner} of API 21.
+ * <p>
+ * The scan is restricted to the proximity UUIDs of the account with {@link ScanFilter}s on the iBeacon manufacturer data
+ * and to the service UUIDs of the other layouts, e.g. Eddystone. While the {@link BeaconFrameTable} has a layout any
+ * manufacturer may send, e.g. AltBeacon, nothing is filtered. The results are batched by the controller if it supports it, so the CPU is not woken up for every advertisement
+ * of every device nearby. If the new API fails, the platform falls back to the old {@link BluetoothAdapter.LeScanCallback}.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class AndroidLollipopBluetoothPlatform extends AndroidBluetoothPlatform {
+
+    /**
+     * How long the controller may hold back scan results. Well below the scan times and the exit timeout,
+     * the pending results are flushed when the scan stops.
+     */
+    static final long REPORT_DELAY_MILLIS = 2 * TimeConstants.ONE_SECOND;
+
+    private final ScanCallback batchScanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            deliver(result);
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            for (ScanResult result : results) {
+                deliver(result);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            onBatchScanFailed(errorCode);
+        }
+    };
+
+    private Set<String> proximityUUIDs = Collections.emptySet();
+
+    private BeaconFrameTable beaconFrameTable = BeaconFrameTable.DEFAULT;
+
+    private IBeaconScanFilter scanFilter = new IBeaconScanFilter(proximityUUIDs, beaconFrameTable);
+
+    private BluetoothAdapter.LeScanCallback scanCallback;
+
+    /**
+     * The {@link BluetoothLeScanner} while scanning with the new API, null otherwise.
+     */
+    private BluetoothLeScanner leScanner;
+
+    private boolean useLegacyScan = false;
+
+    public AndroidLollipopBluetoothPlatform(Context ctx) {
+        super(ctx);
+    }
+
+    @Override
+    public synchronized void startLeScan(BluetoothAdapter.LeScanCallback scanCallback) {
+        if (useLegacyScan) {
+            super.startLeScan(scanCallback);
+            return;
+        }
+        if (!isBluetoothLowEnergySupported()
+                || bluetoothAdapter.getState() != BluetoothAdapter.STATE_ON
+                || !permissionChecker.hasScanPermissionCheckAndroid6()) {
+            return;
+        }
+        BluetoothLeScanner scanner = bluetoothAdapter.getBluetoothLeScanner();
+        if (scanner == null) {
+            return;
+        }
+        try {
+            crashCallBackWrapper.setCallback(scanCallback);
+            scanner.startScan(buildScanFilters(), buildScanSettings(), batchScanCallback);
+            this.scanCallback = scanCallback;
+            leScanner = scanner;
+            leScanRunning = true;
+        } catch (IllegalStateException e) {
+            Logger.log.logError("System bug throwing error.", e);
+            leScanRunning = false;
+            crashCallBackWrapper.setCallback(null);
+        }
+    }
+
+    @Override
+    public synchronized void stopLeScan() {
+        if (leScanner == null) {
+            super.stopLeScan();
+            return;
+        }
+        try {
+            if (bluetoothAdapter.getState() == BluetoothAdapter.STATE_ON) {
+                leScanner.flushPendingScanResults(batchScanCallback);
+            }
+            leScanner.stopScan(batchScanCallback);
+        } catch (Exception sentBySysteminternally) {
+            Logger.log.logError("System bug throwing an exception internally.", sentBySysteminternally);
+        } finally {
+            leScanner = null;
+            scanCallback = null;
+            leScanRunning = false;
+            crashCallBackWrapper.setCallback(null);
+        }
+    }
+
+    @Override
+    public synchronized void setProximityUUIDs(Collection<String> proximityUUIDs) {
+        Set<String> normalized = new TreeSet<>();
+        for (String proximityUUID : proximityUUIDs) {
+            normalized.add(proximityUUID.toLowerCase(Locale.US));
+        }
+        if (normalized.equals(this.proximityUUIDs)) {
+            return;
+        }
+        this.proximityUUIDs = normalized;
+        updateScanFilter();
+    }
+
+    @Override
+    public synchronized void setBeaconFrameTable(BeaconFrameTable beaconFrameTable) {
+        if (beaconFrameTable == this.beaconFrameTable) {
+            return;
+        }
+        this.beaconFrameTable = beaconFrameTable;
+        updateScanFilter();
+    }
+
+    private void updateScanFilter() {
+        scanFilter = new IBeaconScanFilter(proximityUUIDs, beaconFrameTable);
+        if (leScanner != null) {
+            Logger.log.scannerStateChange("restarting the scan with " + scanFilter.getManufacturerData().size() + " proximity UUID filters");
+            BluetoothAdapter.LeScanCallback callback = scanCallback;
+            stopLeScan();
+            startLeScan(callback);
+        }
+    }
+
+    private List<ScanFilter> buildScanFilters() {
+        if (scanFilter.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ScanFilter> filters = new ArrayList<>(scanFilter.getManufacturerData().size() + scanFilter.getServiceUUIDs().size());
+        byte[] mask = scanFilter.getManufacturerDataMask();
+        for (byte[] manufacturerData : scanFilter.getManufacturerData()) {
+            filters.add(new ScanFilter.Builder()
+                    .setManufacturerData(IBeaconScanFilter.APPLE_COMPANY_ID, manufacturerData, mask)
+                    .build());
+        }
+        for (int serviceUUID : scanFilter.getServiceUUIDs()) {
+            filters.add(new ScanFilter.Builder()
+                    .setServiceUuid(toParcelUuid(serviceUUID))
+                    .build());
+        }
+        return filters;
+    }
+
+    /**
+     * Expands a 16 bit service UUID with the Bluetooth base UUID.
+     */
+    private static ParcelUuid toParcelUuid(int serviceUUID) {
+        return ParcelUuid.fromString(String.format(Locale.US, "0000%04x-0000-1000-8000-00805f9b34fb", serviceUUID));
+    }
+
+    private ScanSettings buildScanSettings() {
+        ScanSettings.Builder builder = new ScanSettings.Builder()
+                .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY);
+        if (bluetoothAdapter.isOffloadedScanBatchingSupported()) {
+            builder.setReportDelay(REPORT_DELAY_MILLIS);
+        }
+        return builder.build();
+    }
+
+    private void deliver(ScanResult result) {
+        ScanRecord scanRecord = result.getScanRecord();
+        if (scanRecord != null) {
+            crashCallBackWrapper.onLeScan(result.getDevice(), result.getRssi(), scanRecord.getBytes());
+        }
+    }
+
+    private synchronized void onBatchScanFailed(int errorCode) {
+        Logger.log.logError("BluetoothLeScanner failed with error code " + errorCode + ", falling back to the old scan API");
+        useLegacyScan = true;
+        if (leScanner != null) {
+            BluetoothAdapter.LeScanCallback callback = scanCallback;
+            leScanner = null;
+            scanCallback = null;
+            leScanRunning = false;
+            super.startLeScan(callback);
+        }
+    }
+}
@@ -64,9 +64,13 @@ public class AndroidServiceScheduler implements ServiceScheduler, MessageDelayWi
     }
 
     private PendingIntent getPendingIntent(int MSG_type) {
+        return getMessagePendingIntent(MSG_type, "broadcast_repeating:///message_");
+    }
+
+    private PendingIntent getMessagePendingIntent(int MSG_type, String actionPrefix) {
         Intent intent = new Intent(context, GenericBroadcastReceiver.class);
         intent.putExtra(SensorbergServiceMessage.EXTRA_GENERIC_TYPE, MSG_type);
-        intent.setAction("broadcast_repeating:///message_" + MSG_type);
+        intent.setAction(actionPrefix + MSG_type);
 
         return PendingIntent.getBroadcast(context,
                 -1,
@@ -131,6 +135,16 @@ public class AndroidServiceScheduler implements ServiceScheduler, MessageDelayWi
         repeatingPendingIntents.add(MSG_type);
     }
 
+    @Override
+    public void scheduleOnce(int MSG_type, long delayMillis) {
+        scheduleAlarm(delayMillis, getMessagePendingIntent(MSG_type, "broadcast_once:///message_"));
+    }
+
+    @Override
+    public void cancelOnce(int MSG_type) {
+        alarmManager.cancel(getMessagePendingIntent(MSG_type, "broadcast_once:///message_"));
+    }
+
     @Override
     public void postToServiceDelayed(long delay, int type, Parcelable what, boolean surviveReboot) {
         int index = postToServiceCounter.next();
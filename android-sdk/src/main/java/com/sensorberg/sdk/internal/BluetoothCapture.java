@@ -0,0 +1,210 @@
+package com.sensorberg.sdk.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Class {@link BluetoothCapture} defines the binary capture file of raw advertisements written by the
+ * {@link RecordingBluetoothPlatform} and read by the {@link ReplayBluetoothPlatform}.
+ * <p>
+ * The file starts with a magic number and the wall clock time of the first record. Every record then holds the
+ * milliseconds since the previous record as a variable length integer, the 6 byte device address, the rssi, the
+ * length of the scan record and the scan record without its trailing zero padding. A typical iBeacon sighting takes
+ * about 40 bytes.
+ */
+public final class BluetoothCapture {
+
+    static final int MAGIC = 0x53424331; // "SBC1"
+
+    private static final int ADDRESS_LENGTH = 6;
+
+    private BluetoothCapture() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    public static class Writer implements Closeable {
+
+        private final DataOutputStream output;
+
+        private long previousTimestamp = Long.MIN_VALUE;
+
+        public Writer(File file) throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            output.writeInt(MAGIC);
+        }
+
+        /**
+         * Appends a record. Records must be written in time order, an earlier timestamp is stored as 0 ms later.
+         *
+         * @param timestamp  wall clock time of the sighting
+         * @param address    the device address as "AA:BB:CC:DD:EE:FF", null or invalid ones are stored as 0
+         * @param rssi       the rssi
+         * @param scanRecord the raw scan record, at most 255 bytes
+         * @throws IOException if the file cannot be written
+         */
+        public synchronized void write(long timestamp, String address, int rssi, byte[] scanRecord) throws IOException {
+            if (previousTimestamp == Long.MIN_VALUE) {
+                output.writeLong(timestamp);
+                previousTimestamp = timestamp;
+            }
+            writeVarLong(Math.max(0, timestamp - previousTimestamp));
+            previousTimestamp = Math.max(previousTimestamp, timestamp);
+            writeAddress(address);
+            output.writeByte(rssi);
+            int length = Math.min(scanRecord.length, 255);
+            int trimmed = length;
+            while (trimmed > 0 && scanRecord[trimmed - 1] == 0) {
+                trimmed--;
+            }
+            output.writeByte(length);
+            output.writeByte(trimmed);
+            output.write(scanRecord, 0, trimmed);
+        }
+
+        public synchronized void flush() throws IOException {
+            output.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            output.close();
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                output.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            output.writeByte((int) value);
+        }
+
+        private void writeAddress(String address) throws IOException {
+            long value = 0;
+            if (address != null && address.length() == 17) {
+                try {
+                    value = Long.parseLong(address.replace(":", ""), 16);
+                } catch (NumberFormatException e) {
+                    value = 0;
+                }
+            }
+            for (int shift = 40; shift >= 0; shift -= 8) {
+                output.writeByte((int) (value >>> shift));
+            }
+        }
+    }
+
+    /**
+     * Reads a capture record by record, the getters return the values of the current record.
+     */
+    public static class Reader implements Closeable {
+
+        private final DataInputStream input;
+
+        private final byte[] addressBytes = new byte[ADDRESS_LENGTH];
+
+        private boolean started;
+
+        private long timestamp;
+
+        private String address;
+
+        private int rssi;
+
+        private byte[] scanRecord;
+
+        public Reader(File file) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != MAGIC) {
+                input.close();
+                throw new IOException(file + " is not a bluetooth capture");
+            }
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return false at the end of the capture or if the last record was cut off
+         * @throws IOException if the file cannot be read
+         */
+        public boolean next() throws IOException {
+            try {
+                if (!started) {
+                    timestamp = input.readLong();
+                    started = true;
+                }
+                timestamp += readVarLong();
+                input.readFully(addressBytes);
+                address = formatAddress(addressBytes);
+                rssi = input.readByte();
+                int length = input.readUnsignedByte();
+                int trimmed = input.readUnsignedByte();
+                scanRecord = new byte[length];
+                input.readFully(scanRecord, 0, trimmed);
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the device address, null if it was not recorded
+         */
+        public String getAddress() {
+            return address;
+        }
+
+        public int getRssi() {
+            return rssi;
+        }
+
+        /**
+         * @return the scan record with its original length, handed out to the scanner so it is not reused
+         */
+        public byte[] getScanRecord() {
+            return scanRecord;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = input.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        private static String formatAddress(byte[] bytes) {
+            boolean empty = true;
+            StringBuilder builder = new StringBuilder(17);
+            for (int i = 0; i < bytes.length; i++) {
+                int value = bytes[i] & 0xFF;
+                empty &= value == 0;
+                if (i > 0) {
+                    builder.append(':');
+                }
+                builder.append(Character.toUpperCase(Character.forDigit(value >> 4, 16)));
+                builder.append(Character.toUpperCase(Character.forDigit(value & 0x0F, 16)));
+            }
+            return empty ? null : builder.toString();
+        }
+    }
+}
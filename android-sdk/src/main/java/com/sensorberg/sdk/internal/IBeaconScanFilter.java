@@ -0,0 +1,186 @@
+package com.sensorberg.sdk.internal;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.scanner.BeaconFrameParser;
+import com.sensorberg.sdk.scanner.BeaconFrameTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class {@link IBeaconScanFilter} describes the iBeacon manufacturer data the bluetooth controller should let through,
+ * one entry per proximity UUID. The data starts right after the company id, i.e. with the iBeacon type and length
+ * bytes followed by the proximity UUID, major and minor are not filtered.
+ * <p>
+ * Built for a {@link BeaconFrameTable}, it also lets through every advertisement with the service UUID of a layout in
+ * service data, e.g. Eddystone. A layout of another company than Apple, e.g. AltBeacon which any manufacturer may
+ * send, cannot be told apart by the controller, so the filter lets everything through while the table has one.
+ */
+public final class IBeaconScanFilter {
+
+    public static final int APPLE_COMPANY_ID = 0x004C;
+
+    private static final byte IBEACON_TYPE = 0x02;
+
+    private static final byte IBEACON_LENGTH = 0x15;
+
+    private static final int FILTER_DATA_LENGTH = 18;
+
+    private static final int MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+    private static final int INCOMPLETE_16_BIT_SERVICE_UUIDS = 0x02;
+
+    private static final int COMPLETE_16_BIT_SERVICE_UUIDS = 0x03;
+
+    private static final byte[] MASK = new byte[FILTER_DATA_LENGTH];
+
+    static {
+        Arrays.fill(MASK, (byte) 0xFF);
+    }
+
+    private final List<byte[]> manufacturerData;
+
+    private final Set<Integer> serviceUUIDs;
+
+    /**
+     * Filters iBeacons only.
+     *
+     * @param proximityUUIDs the proximity UUIDs as hexadecimal {@link String}s without dashes, invalid ones are skipped
+     */
+    public IBeaconScanFilter(Collection<String> proximityUUIDs) {
+        this(proximityUUIDs, Collections.<Integer>emptySet());
+    }
+
+    /**
+     * Filters the layouts of the table.
+     *
+     * @param proximityUUIDs the proximity UUIDs as hexadecimal {@link String}s without dashes, invalid ones are skipped
+     * @param frameTable     the layouts the scanner recognizes
+     */
+    public IBeaconScanFilter(Collection<String> proximityUUIDs, BeaconFrameTable frameTable) {
+        this(onlyAppleLayouts(frameTable) ? proximityUUIDs : Collections.<String>emptyList(),
+                frameTable.getIdentifiers(BeaconFrameParser.AD_TYPE_SERVICE_DATA));
+    }
+
+    private IBeaconScanFilter(Collection<String> proximityUUIDs, Set<Integer> serviceUUIDs) {
+        this.serviceUUIDs = Collections.unmodifiableSet(serviceUUIDs);
+        List<byte[]> data = new ArrayList<>(proximityUUIDs.size());
+        for (String proximityUUID : proximityUUIDs) {
+            byte[] filterData = toFilterData(proximityUUID);
+            if (filterData != null) {
+                data.add(filterData);
+            } else {
+                Logger.log.logError("Invalid proximityUUID for the scan filter: " + proximityUUID);
+            }
+        }
+        manufacturerData = Collections.unmodifiableList(data);
+    }
+
+    /**
+     * Returns the manufacturer data to match, one entry per proximity UUID. Empty if nothing should be filtered.
+     *
+     * @return the manufacturer data without the company id
+     */
+    public List<byte[]> getManufacturerData() {
+        return manufacturerData;
+    }
+
+    /**
+     * Returns the mask for every entry of {@link #getManufacturerData()}.
+     *
+     * @return a new array, all bytes are compared
+     */
+    public byte[] getManufacturerDataMask() {
+        return MASK.clone();
+    }
+
+    /**
+     * Returns the 16 bit service UUIDs to let through as a whole, in addition to {@link #getManufacturerData()}.
+     *
+     * @return the service UUIDs, unused if the filter {@link #isEmpty()}
+     */
+    public Set<Integer> getServiceUUIDs() {
+        return serviceUUIDs;
+    }
+
+    public boolean isEmpty() {
+        return manufacturerData.isEmpty() || serviceUUIDs.contains(BeaconFrameParser.ANY_IDENTIFIER);
+    }
+
+    /**
+     * Applies the filter to a raw scan record the same way the bluetooth controller does.
+     *
+     * @param scanRecord the raw scan record
+     * @return true if the filter is empty, the scan record contains iBeacon data with one of the proximity UUIDs or
+     * one of the service UUIDs
+     */
+    public boolean matches(byte[] scanRecord) {
+        if (isEmpty()) {
+            return true;
+        }
+        int offset = 0;
+        while (offset < scanRecord.length) {
+            int length = scanRecord[offset] & 0xFF;
+            if (length == 0 || offset + length >= scanRecord.length) {
+                return false;
+            }
+            int type = scanRecord[offset + 1] & 0xFF;
+            if (type == MANUFACTURER_SPECIFIC_DATA && length - 3 >= FILTER_DATA_LENGTH
+                    && ((scanRecord[offset + 2] & 0xFF) | ((scanRecord[offset + 3] & 0xFF) << 8)) == APPLE_COMPANY_ID) {
+                for (byte[] data : manufacturerData) {
+                    if (regionEquals(scanRecord, offset + 4, data)) {
+                        return true;
+                    }
+                }
+            } else if (type == INCOMPLETE_16_BIT_SERVICE_UUIDS || type == COMPLETE_16_BIT_SERVICE_UUIDS) {
+                for (int i = offset + 2; i + 1 <= offset + length; i += 2) {
+                    if (serviceUUIDs.contains((scanRecord[i] & 0xFF) | ((scanRecord[i + 1] & 0xFF) << 8))) {
+                        return true;
+                    }
+                }
+            }
+            offset += length + 1;
+        }
+        return false;
+    }
+
+    private static boolean onlyAppleLayouts(BeaconFrameTable frameTable) {
+        for (int companyId : frameTable.getIdentifiers(BeaconFrameParser.AD_TYPE_MANUFACTURER_SPECIFIC_DATA)) {
+            if (companyId != APPLE_COMPANY_ID) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEquals(byte[] scanRecord, int offset, byte[] data) {
+        for (int i = 0; i < data.length; i++) {
+            if (scanRecord[offset + i] != data[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] toFilterData(String proximityUUID) {
+        if (proximityUUID == null || proximityUUID.length() != 32) {
+            return null;
+        }
+        byte[] data = new byte[FILTER_DATA_LENGTH];
+        data[0] = IBEACON_TYPE;
+        data[1] = IBEACON_LENGTH;
+        for (int i = 0; i < 16; i++) {
+            int digitHigh = Character.digit(proximityUUID.charAt(i * 2), 16);
+            int digitLow = Character.digit(proximityUUID.charAt(i * 2 + 1), 16);
+            if (digitHigh == -1 || digitLow == -1) {
+                return null;
+            }
+            data[i + 2] = (byte) ((digitHigh << 4) + digitLow);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,112 @@
+package com.sensorberg.sdk.internal;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
+import com.sensorberg.sdk.internal.interfaces.Clock;
+import com.sensorberg.sdk.scanner.BeaconFrameTable;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.os.Build;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Class {@link RecordingBluetoothPlatform} wraps another {@link BluetoothPlatform} and writes every advertisement it
+ * delivers to a {@link BluetoothCapture} file before handing it to the scanner. The capture can be replayed with the
+ * {@link ReplayBluetoothPlatform} to reproduce the behaviour of the scanner at a venue.
+ */
+public class RecordingBluetoothPlatform implements BluetoothPlatform, Closeable {
+
+    private final BluetoothPlatform platform;
+
+    private final Clock clock;
+
+    private final BluetoothCapture.Writer writer;
+
+    private volatile boolean stopped;
+
+    public RecordingBluetoothPlatform(BluetoothPlatform platform, Clock clock, File captureFile) throws IOException {
+        this.platform = platform;
+        this.clock = clock;
+        this.writer = new BluetoothCapture.Writer(captureFile);
+    }
+
+    @Override
+    public boolean isBluetoothLowEnergyDeviceTurnedOn() {
+        return platform.isBluetoothLowEnergyDeviceTurnedOn();
+    }
+
+    @Override
+    public boolean isBluetoothLowEnergySupported() {
+        return platform.isBluetoothLowEnergySupported();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void startLeScan(final BluetoothAdapter.LeScanCallback scanCallback) {
+        platform.startLeScan(new BluetoothAdapter.LeScanCallback() {
+            @Override
+            public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+                record(device, rssi, scanRecord);
+                scanCallback.onLeScan(device, rssi, scanRecord);
+            }
+        });
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void stopLeScan() {
+        platform.stopLeScan();
+        if (stopped) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            Logger.log.logError("could not flush the bluetooth capture", e);
+        }
+    }
+
+    @Override
+    public boolean isLeScanRunning() {
+        return platform.isLeScanRunning();
+    }
+
+    @Override
+    public void setProximityUUIDs(Collection<String> proximityUUIDs) {
+        platform.setProximityUUIDs(proximityUUIDs);
+    }
+
+    @Override
+    public void setBeaconFrameTable(BeaconFrameTable beaconFrameTable) {
+        platform.setBeaconFrameTable(beaconFrameTable);
+    }
+
+    /**
+     * Stops recording and closes the capture file, the scan itself is not affected.
+     *
+     * @throws IOException if the capture file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        stopped = true;
+        writer.close();
+    }
+
+    private void record(BluetoothDevice device, int rssi, byte[] scanRecord) {
+        if (stopped || scanRecord == null) {
+            return;
+        }
+        try {
+            writer.write(clock.now(), device != null ? device.getAddress() : null, rssi, scanRecord);
+        } catch (IOException e) {
+            stopped = true;
+            Logger.log.logError("could not write the bluetooth capture, recording stopped", e);
+        }
+    }
+}
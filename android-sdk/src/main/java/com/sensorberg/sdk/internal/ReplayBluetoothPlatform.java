@@ -0,0 +1,298 @@
+package com.sensorberg.sdk.internal;
+
+import com.sensorberg.sdk.internal.interfaces.AddressedScanCallback;
+import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
+import com.sensorberg.sdk.internal.interfaces.SettableClock;
+import com.sensorberg.sdk.model.BeaconId;
+import com.sensorberg.sdk.scanner.BeaconAdvertisement;
+import com.sensorberg.sdk.scanner.BeaconFrameTable;
+import com.sensorberg.sdk.scanner.ScanEvent;
+import com.sensorberg.sdk.scanner.ScannerListener;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.os.Build;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class {@link ReplayBluetoothPlatform} feeds a {@link BluetoothCapture} back into the scanner, in virtual time.
+ * <p>
+ * Before every record the {@link SettableClock} of the scanner is set to the recorded time, so exits, pauses and
+ * timeouts happen as they did at the venue. The replay runs at real speed, accelerated or as fast as possible, see
+ * {@link #replay(float, Report)}. Records arriving while the scanner does not scan are dropped like the radio would,
+ * and proximity UUID filters are applied like the bluetooth controller would. A scanner that takes an
+ * {@link AddressedScanCallback} gets the recorded device addresses, others get no device.
+ * <p>
+ * The replay hands every record to the scanner on the calling thread. The scanner time and the virtual time of its
+ * events are only exact if the scanner processes the record before the callback returns, i.e. with
+ * {@link com.sensorberg.sdk.settings.SettingsManager#getScannerRecordBufferSize()} at 0 or with a runloop that is not
+ * threaded. Otherwise the callback only queues the record, and the clock may already be set to a later record when
+ * the scanner thread gets to it.
+ */
+public class ReplayBluetoothPlatform implements BluetoothPlatform {
+
+    /**
+     * Replays without waiting between the records.
+     */
+    public static final float AS_FAST_AS_POSSIBLE = Float.POSITIVE_INFINITY;
+
+    private final File captureFile;
+
+    private final SettableClock clock;
+
+    private volatile BluetoothAdapter.LeScanCallback scanCallback;
+
+    private Collection<String> proximityUUIDs = Collections.emptyList();
+
+    private volatile BeaconFrameTable beaconFrameTable = BeaconFrameTable.DEFAULT;
+
+    private volatile IBeaconScanFilter scanFilter = new IBeaconScanFilter(proximityUUIDs, beaconFrameTable);
+
+    public ReplayBluetoothPlatform(File captureFile, SettableClock clock) {
+        this.captureFile = captureFile;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean isBluetoothLowEnergyDeviceTurnedOn() {
+        return true;
+    }
+
+    @Override
+    public boolean isBluetoothLowEnergySupported() {
+        return true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void startLeScan(BluetoothAdapter.LeScanCallback scanCallback) {
+        this.scanCallback = scanCallback;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void stopLeScan() {
+        scanCallback = null;
+    }
+
+    @Override
+    public boolean isLeScanRunning() {
+        return scanCallback != null;
+    }
+
+    @Override
+    public synchronized void setProximityUUIDs(Collection<String> proximityUUIDs) {
+        this.proximityUUIDs = proximityUUIDs;
+        scanFilter = new IBeaconScanFilter(proximityUUIDs, beaconFrameTable);
+    }
+
+    @Override
+    public synchronized void setBeaconFrameTable(BeaconFrameTable beaconFrameTable) {
+        this.beaconFrameTable = beaconFrameTable;
+        scanFilter = new IBeaconScanFilter(proximityUUIDs, beaconFrameTable);
+    }
+
+    /**
+     * Replays the whole capture. The {@link Report} has to be registered as {@link ScannerListener} of the scanner
+     * to count the entries and exits.
+     *
+     * @param speed  how many times faster than recorded, {@link #AS_FAST_AS_POSSIBLE} to not wait at all
+     * @param report the {@link Report} to fill
+     * @return the report
+     * @throws IOException if the capture cannot be read
+     * @throws InterruptedException if the thread was interrupted while waiting for the next record
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public Report replay(float speed, Report report) throws IOException, InterruptedException {
+        BluetoothCapture.Reader reader = new BluetoothCapture.Reader(captureFile);
+        BeaconAdvertisement advertisement = new BeaconAdvertisement();
+        long previousTimestamp = Long.MIN_VALUE;
+        long replayStart = System.nanoTime();
+        try {
+            while (true) {
+                long readStart = System.nanoTime();
+                if (!reader.next()) {
+                    break;
+                }
+                report.readNanos.add(System.nanoTime() - readStart);
+
+                long timestamp = reader.getTimestamp();
+                if (previousTimestamp != Long.MIN_VALUE && speed != AS_FAST_AS_POSSIBLE) {
+                    long wait = (long) ((timestamp - previousTimestamp) / speed);
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                }
+                previousTimestamp = timestamp;
+                clock.setNowInMillis(timestamp);
+                report.records++;
+
+                byte[] scanRecord = reader.getScanRecord();
+                BluetoothAdapter.LeScanCallback callback = scanCallback;
+                if (callback == null || !scanFilter.matches(scanRecord)) {
+                    report.dropped++;
+                    continue;
+                }
+
+                long parseStart = System.nanoTime();
+                if (beaconFrameTable.parse(scanRecord, advertisement) && advertisement.hasBeaconId()) {
+                    report.parseNanos.add(System.nanoTime() - parseStart);
+                    report.onSeen(advertisement.toBeaconId(), timestamp);
+                }
+
+                long scannerStart = System.nanoTime();
+                if (callback instanceof AddressedScanCallback) {
+                    ((AddressedScanCallback) callback).onLeScan(reader.getAddress(), reader.getRssi(), scanRecord);
+                } else {
+                    callback.onLeScan(null, reader.getRssi(), scanRecord);
+                }
+                report.scannerNanos.add(System.nanoTime() - scannerStart);
+            }
+        } finally {
+            reader.close();
+        }
+        report.replayNanos += System.nanoTime() - replayStart;
+        return report;
+    }
+
+    /**
+     * Statistics of a replay: throughput, entries and exits and the time spent per stage.
+     * <p>
+     * The stages are reading the record from the capture, parsing its frame and the scanner callback, which includes
+     * the parsing again and all bookkeeping up to the {@link ScanEvent}. With a scan record buffer and a threaded
+     * runloop the scanner stage only covers queueing the record, see {@link ReplayBluetoothPlatform}. The exit latency
+     * is the virtual time between the last sighting of a beacon and its exit event.
+     */
+    public static class Report implements ScannerListener {
+
+        private final Map<BeaconId, Long> lastSeen = new HashMap<>();
+
+        private long records;
+
+        private long dropped;
+
+        private long replayNanos;
+
+        private int entries;
+
+        private int exits;
+
+        private final Stage readNanos = new Stage();
+
+        private final Stage parseNanos = new Stage();
+
+        private final Stage scannerNanos = new Stage();
+
+        private final Stage exitLatency = new Stage();
+
+        private synchronized void onSeen(BeaconId beaconId, long timestamp) {
+            lastSeen.put(beaconId, timestamp);
+        }
+
+        @Override
+        public synchronized void onScanEventDetected(ScanEvent event) {
+            if (event.isEntry()) {
+                entries++;
+            } else {
+                exits++;
+                Long seen = lastSeen.get(event.getBeaconId());
+                if (seen != null) {
+                    exitLatency.add(event.getEventTime() - seen);
+                }
+            }
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the records that arrived while the scanner was paused or that did not pass the scan filter
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public int getExits() {
+            return exits;
+        }
+
+        /**
+         * @return the replayed records per second of wall clock time
+         */
+        public long getThroughput() {
+            return replayNanos == 0 ? 0 : records * 1000000000L / replayNanos;
+        }
+
+        public Stage getReadNanos() {
+            return readNanos;
+        }
+
+        public Stage getParseNanos() {
+            return parseNanos;
+        }
+
+        public Stage getScannerNanos() {
+            return scannerNanos;
+        }
+
+        /**
+         * @return the milliseconds of virtual time between the last sighting of a beacon and its exit
+         */
+        public Stage getExitLatency() {
+            return exitLatency;
+        }
+
+        @Override
+        public String toString() {
+            return records + " records (" + dropped + " dropped) at " + getThroughput() + " records/s, "
+                    + entries + " entries, " + exits + " exits; read " + readNanos + " ns, parse " + parseNanos
+                    + " ns, scanner " + scannerNanos + " ns, exit latency " + exitLatency + " ms";
+        }
+    }
+
+    /**
+     * Count, mean and maximum of the samples of one stage.
+     */
+    public static class Stage {
+
+        private long count;
+
+        private long total;
+
+        private long max;
+
+        void add(long value) {
+            count++;
+            total += value;
+            max = Math.max(max, value);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "avg " + getMean() + " max " + max;
+        }
+    }
+}
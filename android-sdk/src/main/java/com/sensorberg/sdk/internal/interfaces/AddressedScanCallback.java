@@ -0,0 +1,22 @@
+package com.sensorberg.sdk.internal.interfaces;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.os.Build;
+
+/**
+ * A {@link BluetoothAdapter.LeScanCallback} that also takes the address of the device as a {@link String}. Platforms
+ * that have no {@link android.bluetooth.BluetoothDevice}, like a replay, hand the recorded address over with it.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public interface AddressedScanCallback extends BluetoothAdapter.LeScanCallback {
+
+    /**
+     * Called like {@link #onLeScan(android.bluetooth.BluetoothDevice, int, byte[])}.
+     *
+     * @param address    the address of the device, null if it is not known
+     * @param rssi       the rssi of the advertisement
+     * @param scanRecord the raw scan record
+     */
+    void onLeScan(String address, int rssi, byte[] scanRecord);
+}
@@ -1,9 +1,13 @@
 package com.sensorberg.sdk.internal.interfaces;
 
+import com.sensorberg.sdk.scanner.BeaconFrameTable;
+
 import android.annotation.TargetApi;
 import android.bluetooth.BluetoothAdapter;
 import android.os.Build;
 
+import java.util.Collection;
+
 public interface BluetoothPlatform {
 
     /**
@@ -28,4 +32,19 @@ public interface BluetoothPlatform {
 
     boolean isLeScanRunning();
 
+    /**
+     * Restricts the scan to iBeacons with one of the proximity UUIDs. Platforms that cannot filter in hardware
+     * ignore it, the scanner has to cope with other advertisements anyway.
+     *
+     * @param proximityUUIDs the proximity UUIDs as hexadecimal {@link String}s without dashes, empty to scan for everything
+     */
+    void setProximityUUIDs(Collection<String> proximityUUIDs);
+
+    /**
+     * Sets the beacon layouts the scanner recognizes, so the hardware filter lets all of them through.
+     *
+     * @param beaconFrameTable the compiled {@link BeaconFrameTable}, {@link BeaconFrameTable#DEFAULT} if not set
+     */
+    void setBeaconFrameTable(BeaconFrameTable beaconFrameTable);
+
 }
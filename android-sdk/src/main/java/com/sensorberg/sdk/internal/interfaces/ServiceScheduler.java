@@ -22,6 +22,14 @@ public interface ServiceScheduler {
 
     void scheduleRepeating(int MSG_index, long value, TimeUnit timeUnit);
 
+    /**
+     * Posts the message to the service once after the delay. It replaces the one scheduled before for the same
+     * message, but not a repeating one from {@link #scheduleRepeating(int, long, TimeUnit)}.
+     */
+    void scheduleOnce(int MSG_type, long delayMillis);
+
+    void cancelOnce(int MSG_type);
+
     void postToServiceDelayed(long delay, int type, Parcelable what, boolean surviveReboot);
 
     void postToServiceDelayed(long delay, int type, Parcelable what, boolean surviveReboot, int index);
@@ -0,0 +1,9 @@
+package com.sensorberg.sdk.internal.interfaces;
+
+/**
+ * A {@link Clock} whose time is set from the outside, e.g. to replay a capture in virtual time.
+ */
+public interface SettableClock extends Clock {
+
+    void setNowInMillis(long nowInMillis);
+}
@@ -0,0 +1,199 @@
+package com.sensorberg.sdk.internal.transport;
+
+import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.model.server.ResolveResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class {@link LayoutSnapshotStore} keeps the last layout in a file of its own, in the binary format of
+ * {@link ResolveResponse#writeTo(java.io.DataOutput)}.
+ * <p>
+ * The file starts with a header of a magic number, the format version, a hash of the layout and its length. A layout
+ * with the hash of the stored one is not written again. At startup the file is memory-mapped and only its header is
+ * read, the layout is decoded when it is needed for the first time, see {@link Snapshot#decode()}.
+ */
+public class LayoutSnapshotStore {
+
+    public static final String FILE_NAME = "layoutSnapshot";
+
+    /**
+     * Keeps no file, the layout only lives as long as the process.
+     */
+    public static final LayoutSnapshotStore NONE = new LayoutSnapshotStore(null);
+
+    private static final int MAGIC = 0x53424c53; // SBLS
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final File file;
+
+    /**
+     * The hash of the layout in the file once it was written or decoded, 0 before.
+     */
+    private long storedHash;
+
+    public LayoutSnapshotStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Maps the stored layout without decoding it.
+     *
+     * @return the snapshot, null if there is none or if it was written by another format version
+     */
+    public synchronized Snapshot open() {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                Logger.log.logError("Ignoring the layout snapshot, it has an unknown format");
+                return null;
+            }
+            long hash = buffer.getLong();
+            int length = buffer.getInt();
+            if (length != buffer.remaining()) {
+                Logger.log.logError("Ignoring the layout snapshot, it is truncated");
+                return null;
+            }
+            return new Snapshot(hash, buffer.slice());
+        } catch (IOException e) {
+            Logger.log.logError("Could not open the layout snapshot", e);
+            return null;
+        } finally {
+            close(input);
+        }
+    }
+
+    /**
+     * Stores the layout unless it equals the stored one.
+     *
+     * @param layout the new layout
+     * @return true if the file was written
+     */
+    public synchronized boolean write(ResolveResponse layout) {
+        if (file == null) {
+            return false;
+        }
+        FileOutputStream output = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            layout.writeTo(new DataOutputStream(bytes));
+            byte[] body = bytes.toByteArray();
+            long hash = hash(body);
+            if (hash == storedHash && file.exists()) {
+                return false;
+            }
+            File temporary = new File(file.getPath() + ".tmp");
+            output = new FileOutputStream(temporary);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(hash);
+            out.writeInt(body.length);
+            out.write(body);
+            out.flush();
+            output.getFD().sync();
+            output.close();
+            output = null;
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+            storedHash = hash;
+            return true;
+        } catch (IOException e) {
+            Logger.log.logError("Could not write the layout snapshot", e);
+            return false;
+        } finally {
+            close(output);
+        }
+    }
+
+    private static long hash(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(ByteBuffer bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            hash = (hash ^ (bytes.get(i) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    @SuppressWarnings("EmptyCatchBlock")
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+
+            }
+        }
+    }
+
+    /**
+     * A stored layout that is not decoded yet. The mapping stays valid after the file was replaced.
+     */
+    public final class Snapshot {
+
+        private final long hash;
+
+        private final ByteBuffer body;
+
+        Snapshot(long hash, ByteBuffer body) {
+            this.hash = hash;
+            this.body = body;
+        }
+
+        /**
+         * Decodes the layout.
+         *
+         * @return the layout, null if the snapshot is damaged
+         */
+        public ResolveResponse decode() {
+            ByteBuffer in = body.duplicate();
+            if (hash(in) != hash) {
+                Logger.log.logError("Ignoring the layout snapshot, its hash does not match");
+                return null;
+            }
+            ResolveResponse layout;
+            try {
+                layout = ResolveResponse.readFrom(in);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                Logger.log.logError("Ignoring the layout snapshot, it cannot be decoded", e);
+                return null;
+            }
+            synchronized (LayoutSnapshotStore.this) {
+                //only an intact file spares writing the same layout again
+                storedHash = hash;
+            }
+            return layout;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import okhttp3.Headers;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
@@ -192,6 +193,23 @@ public class RetrofitApiServiceImpl {
         }
     }
 
+    public Call<ResponseBody> publishHistory(RequestBody body) {
+        if (version == 0) {
+            return mApiServiceV0.publishHistory(body);
+        } else if (version == 1) {
+            return mApiServiceV1.publishHistory(body);
+        } else {
+            return mApiServiceV2.publishHistory(mApiToken, body);
+        }
+    }
+
+    /**
+     * Only backend version 2 accepts the compact history.
+     */
+    public Call<ResponseBody> publishCompactHistory(RequestBody body) {
+        return mApiServiceV2.publishCompactHistory(mApiToken, body);
+    }
+
     public Call<SettingsResponse> getSettings() {
         return getSettings(mApiToken);
     }
@@ -12,6 +12,7 @@ import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.internal.transport.interfaces.TransportHistoryCallback;
 import com.sensorberg.sdk.internal.transport.interfaces.TransportSettingsCallback;
 import com.sensorberg.sdk.internal.transport.model.HistoryBody;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
 import com.sensorberg.sdk.internal.transport.model.SettingsResponse;
 import com.sensorberg.sdk.model.persistence.ActionConversion;
 import com.sensorberg.sdk.model.persistence.BeaconAction;
@@ -23,9 +24,15 @@ import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.scanner.ScanEvent;
 
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import lombok.Setter;
@@ -34,6 +41,7 @@ import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
+import static com.sensorberg.sdk.settings.SharedPreferencesKeys.Network.KEY_COMPACT_HISTORY;
 import static com.sensorberg.sdk.settings.SharedPreferencesKeys.Network.KEY_RESOLVE_RESPONSE;
 import static com.sensorberg.utils.ListUtils.map;
 
@@ -43,11 +51,57 @@ public class RetrofitApiTransport implements Transport {
 
     public static int BACKEND_VERSION = 2;
 
+    /**
+     * From backend version 2 on the resolution of a beacon downloads the whole layout. With local resolution the
+     * layout is downloaded once and the beacons are resolved against it until the next layout update or until it is
+     * invalidated, see {@link #invalidateBeaconLayout()}.
+     */
+    public static boolean LOCAL_RESOLUTION = true;
+
     private final Clock mClock;
 
     private RetrofitApiServiceImpl apiService;
 
-    private ResolveResponse lastSuccess;
+    /**
+     * The last layout, replaced as a whole. Its actions are indexed on the first resolution, so keeping the instance
+     * keeps the index. Use {@link #getLastSuccess()}, it is null until the stored layout is decoded.
+     */
+    private volatile ResolveResponse lastSuccess;
+
+    private final LayoutSnapshotStore snapshotStore;
+
+    /**
+     * Writes the layouts to {@link #snapshotStore} and decodes the stored one, in order and away from the thread of
+     * the Retrofit callbacks, which is the main thread.
+     */
+    private final Executor snapshotExecutor;
+
+    /**
+     * Guards {@link #snapshot}. It is not {@link #snapshotStore}, that one is held while a layout is written.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * The stored layout, until it is decoded into {@link #lastSuccess}. Guarded by {@link #snapshotLock}.
+     */
+    private LayoutSnapshotStore.Snapshot snapshot;
+
+    /**
+     * True once {@link #lastSuccess} was confirmed by the backend in this process, the persisted layout alone may be
+     * outdated.
+     */
+    private volatile boolean layoutCurrent;
+
+    /**
+     * The running fetches of the layout by their attributes, see {@link LayoutFetch}.
+     */
+    private final Map<SortedMap<String, String>, LayoutFetch> layoutFetches = new HashMap<>();
+
+    /**
+     * True if the backend accepts the history in the compact format. It announces that with the
+     * {@link Transport#HEADER_HISTORY_FORMAT} of its responses to uploads.
+     */
+    private volatile boolean compactHistory;
 
     private SharedPreferences prefs;
 
@@ -58,12 +112,33 @@ public class RetrofitApiTransport implements Transport {
 
     private ProximityUUIDUpdateHandler mProximityUUIDUpdateHandler = ProximityUUIDUpdateHandler.NONE;
 
+    private LayoutValidityListener layoutValidityListener = LayoutValidityListener.NONE;
+
     public RetrofitApiTransport(RetrofitApiServiceImpl retrofitApiService, Clock clk, SharedPreferences sharedPreferences, Gson gson) {
+        //nothing is stored, so there is nothing to move off the calling thread
+        this(retrofitApiService, clk, sharedPreferences, gson, LayoutSnapshotStore.NONE, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    public RetrofitApiTransport(RetrofitApiServiceImpl retrofitApiService, Clock clk, SharedPreferences sharedPreferences, Gson gson,
+                                LayoutSnapshotStore layoutSnapshotStore) {
+        this(retrofitApiService, clk, sharedPreferences, gson, layoutSnapshotStore, Executors.newSingleThreadExecutor());
+    }
+
+    public RetrofitApiTransport(RetrofitApiServiceImpl retrofitApiService, Clock clk, SharedPreferences sharedPreferences, Gson gson,
+                                LayoutSnapshotStore layoutSnapshotStore, Executor snapshotExecutor) {
         apiService = retrofitApiService;
         mClock = clk;
         prefs = sharedPreferences;
         this.gson = gson;
+        snapshotStore = layoutSnapshotStore;
+        this.snapshotExecutor = snapshotExecutor;
         load();
+        preloadLastSuccess();
     }
 
     private RetrofitApiServiceImpl getApiService() {
@@ -71,15 +146,101 @@ public class RetrofitApiTransport implements Transport {
     }
 
     private void load() {
+        synchronized (snapshotLock) {
+            snapshot = snapshotStore.open();
+        }
         String json = prefs.getString(KEY_RESOLVE_RESPONSE, null);
         if (!TextUtils.isEmpty(json)) {
-            lastSuccess = gson.fromJson(json, ResolveResponse.class);
+            //the layout used to be kept in the preferences, it is moved to the snapshot once
+            if (snapshot == null) {
+                ResolveResponse layout = gson.fromJson(json, ResolveResponse.class);
+                if (layout != null) {
+                    save(layout);
+                }
+            }
+            prefs.edit().remove(KEY_RESOLVE_RESPONSE).apply();
         }
+        compactHistory = prefs.getBoolean(KEY_COMPACT_HISTORY, false);
     }
 
-    private void save(ResolveResponse body) {
-        lastSuccess = body;
-        prefs.edit().putString(KEY_RESOLVE_RESPONSE, gson.toJson(lastSuccess)).apply();
+    /**
+     * Decodes the stored layout on the {@link #snapshotExecutor}, so the first response does not have to.
+     */
+    private void preloadLastSuccess() {
+        synchronized (snapshotLock) {
+            if (snapshot == null) {
+                return;
+            }
+        }
+        snapshotExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                getLastSuccess();
+            }
+        });
+    }
+
+    /**
+     * Returns the last layout, the stored one is decoded on the first call. That is usually the preload, a caller
+     * that comes before it decodes the layout itself.
+     *
+     * @return the layout or null if there is none
+     */
+    private ResolveResponse getLastSuccess() {
+        ResolveResponse current = lastSuccess;
+        if (current != null) {
+            return current;
+        }
+        LayoutSnapshotStore.Snapshot stored;
+        synchronized (snapshotLock) {
+            stored = snapshot;
+        }
+        if (stored == null) {
+            return lastSuccess;
+        }
+        ResolveResponse decoded = stored.decode();
+        synchronized (snapshotLock) {
+            //a layout saved in the meantime replaced the stored one
+            if (snapshot == stored) {
+                lastSuccess = decoded;
+                snapshot = null;
+            }
+            return lastSuccess;
+        }
+    }
+
+    /**
+     * Returns the layout to resolve with. A layout the backend reports as not modified is the one we already have, it
+     * is kept together with its index instead of being saved again. Before backend version 2 the responses depend on
+     * the beacon, so they are always taken.
+     */
+    private ResolveResponse keepOrSave(Response<ResolveResponse> response) {
+        ResolveResponse current = getLastSuccess();
+        if (current != null && BACKEND_VERSION >= 2 && !isModified(response)) {
+            return current;
+        }
+        save(response.body());
+        return response.body();
+    }
+
+    private boolean canResolveLocally() {
+        return LOCAL_RESOLUTION && BACKEND_VERSION >= 2 && layoutCurrent && getLastSuccess() != null;
+    }
+
+    /**
+     * Replaces the layout in memory and writes it on the {@link #snapshotExecutor}.
+     */
+    private void save(final ResolveResponse body) {
+        synchronized (snapshotLock) {
+            lastSuccess = body;
+            snapshot = null;
+        }
+        snapshotExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                snapshotStore.write(body);
+            }
+        });
     }
 
     @Override
@@ -91,6 +252,15 @@ public class RetrofitApiTransport implements Transport {
         }
     }
 
+    @Override
+    public void setLayoutValidityListener(LayoutValidityListener layoutValidityListener) {
+        if (layoutValidityListener != null) {
+            this.layoutValidityListener = layoutValidityListener;
+        } else {
+            this.layoutValidityListener = LayoutValidityListener.NONE;
+        }
+    }
+
     private boolean isModified(Response<ResolveResponse> response) {
         String header = response.headers().get(RetrofitApiServiceImpl.OKHTTP_HEADER);
         return !String.valueOf(HttpURLConnection.HTTP_NOT_MODIFIED).equals(header);
@@ -98,47 +268,61 @@ public class RetrofitApiTransport implements Transport {
 
     @Override
     public void getBeacon(final ScanEvent scanEvent, SortedMap<String, String> attributes, final BeaconResponseHandler beaconResponseHandler) {
+        if (canResolveLocally()) {
+            beaconResponseHandler.onSuccess(checkSuccessfulBeaconResponse(scanEvent, getLastSuccess()));
+            return;
+        }
+        LayoutCallback callback = new LayoutCallback() {
+            @Override
+            public void onLayout(ResolveResponse layout) {
+                beaconResponseHandler.onSuccess(checkSuccessfulBeaconResponse(scanEvent, layout));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                beaconResponseHandler.onFailure(t);
+            }
+        };
+        LayoutFetch fetch;
+        if (BACKEND_VERSION >= 2) {
+            fetch = joinOrStartLayoutFetch(attributes, callback);
+            if (fetch == null) {
+                return;
+            }
+        } else {
+            //the response depends on the beacon, it cannot be shared
+            fetch = new LayoutFetch(null, callback);
+        }
         String networkInfo = NetworkInfoBroadcastReceiver.latestNetworkInfo != null
                 ? NetworkInfoBroadcastReceiver.getNetworkInfoString() : "";
 
         getApiService()
                 .getBeacon(scanEvent.getBeaconId().getPid(), networkInfo, attributes)
-                .enqueue(new Callback<ResolveResponse>() {
-                    @Override
-                    public void onResponse(Call<ResolveResponse> call, Response<ResolveResponse> response) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            save(response.body());
-                            onSuccess(response.body(), isModified(response));
-                        } else {
-                            onFail(new Throwable("No Content, Invalid Api Key"));
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<ResolveResponse> call, Throwable t) {
-                        onFail(t);
-                    }
-
-                    void onSuccess(ResolveResponse resolveResponse, boolean changed) {
-                        List<BeaconEvent> beaconEvents = checkSuccessfulBeaconResponse(scanEvent, resolveResponse);
-                        beaconResponseHandler.onSuccess(beaconEvents);
-                        checkShouldCallBeaconResponseHandlers(resolveResponse, changed);
-                    }
-
-                    void onFail(Throwable t) {
-                        if (lastSuccess == null) {
-                            beaconResponseHandler.onFailure(t);
-                        } else {
-                            Logger.log.logError("resolution failed, but we have a backup:" + scanEvent.getBeaconId().toTraditionalString(), t);
-                            onSuccess(lastSuccess, false);
-                        }
-                    }
+                .enqueue(fetch);
+    }
 
-                });
+    /**
+     * Registers the callback with the running fetch of the layout for these attributes, if there is one.
+     *
+     * @return the new fetch the caller has to enqueue, null if the callback joined a running one
+     */
+    private LayoutFetch joinOrStartLayoutFetch(SortedMap<String, String> attributes, LayoutCallback callback) {
+        SortedMap<String, String> key = attributes == null ? new TreeMap<String, String>() : new TreeMap<>(attributes);
+        synchronized (layoutFetches) {
+            LayoutFetch running = layoutFetches.get(key);
+            if (running != null) {
+                running.callbacks.add(callback);
+                return null;
+            }
+            LayoutFetch fetch = new LayoutFetch(key, callback);
+            layoutFetches.put(key, fetch);
+            return fetch;
+        }
     }
 
     private void checkShouldCallBeaconResponseHandlers(ResolveResponse successfulResponse, boolean changed) {
         mProximityUUIDUpdateHandler.proximityUUIDListUpdated(successfulResponse.getAccountProximityUUIDs(), changed);
+        layoutValidityListener.layoutValidityChangesAt(successfulResponse.getNextValidityChange(mClock.now()));
 
         if (successfulResponse.reportTriggerSeconds != null) {
             beaconHistoryUploadIntervalListener
@@ -165,7 +349,16 @@ public class RetrofitApiTransport implements Transport {
 
     @Override
     public boolean setApiToken(String apiToken) {
-        return getApiService().setApiToken(apiToken);
+        boolean changed = getApiService().setApiToken(apiToken);
+        if (changed) {
+            invalidateBeaconLayout();
+        }
+        return changed;
+    }
+
+    @Override
+    public void invalidateBeaconLayout() {
+        layoutCurrent = false;
     }
 
     @Override
@@ -199,6 +392,44 @@ public class RetrofitApiTransport implements Transport {
 
     @Override
     public void publishHistory(final List<BeaconScan> scans, final List<BeaconAction> actions, final List<ActionConversion> conversions, final TransportHistoryCallback callback) {
+        HistoryBody body = new HistoryBody(scans, actions, conversions, mClock);
+        publishHistory(getApiService().publishHistory(body), scans, actions, conversions, callback);
+    }
+
+    @Override
+    public void publishHistory(HistoryRequestBody body, TransportHistoryCallback callback) {
+        if (BACKEND_VERSION >= 2 && compactHistory) {
+            publishHistory(getApiService().publishCompactHistory(body.compact()), null, null, null, callback);
+        } else {
+            publishHistory(getApiService().publishHistory(body), null, null, null, callback);
+        }
+    }
+
+    /**
+     * Remembers whether the backend accepts the compact history. A backend that rejects its media type does not, an
+     * upload that failed for another reason tells nothing.
+     */
+    private void updateHistoryFormat(Response<ResponseBody> response) {
+        boolean compact;
+        if (response.code() == HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+            compact = false;
+        } else if (response.isSuccessful()) {
+            String formats = response.headers().get(HEADER_HISTORY_FORMAT);
+            compact = formats != null && formats.contains(HISTORY_FORMAT_COMPACT);
+        } else {
+            return;
+        }
+        if (compact != compactHistory) {
+            Logger.log.logBeaconHistoryPublisherState(compact
+                    ? "backend accepts the compact history"
+                    : "backend requires the plain history");
+            compactHistory = compact;
+            prefs.edit().putBoolean(KEY_COMPACT_HISTORY, compact).apply();
+        }
+    }
+
+    private void publishHistory(Call<ResponseBody> call, final List<BeaconScan> scans, final List<BeaconAction> actions,
+            final List<ActionConversion> conversions, final TransportHistoryCallback callback) {
 
         /**
          * Unfortunately from V1 to V2 our servers changed the response to `publishHistory`
@@ -208,12 +439,10 @@ public class RetrofitApiTransport implements Transport {
          * and until we can abandon V0 and V1, below is the hacky code needed.
          */
 
-        HistoryBody body = new HistoryBody(scans, actions, conversions, mClock);
-        Call<ResponseBody> call = getApiService().publishHistory(body);
-
         call.enqueue(new Callback<ResponseBody>() {
             @Override
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                updateHistoryFormat(response);
                 if (response.isSuccessful()) {
                     callback.onSuccess(scans, actions, conversions);
                     if (response.body() != null) {
@@ -241,39 +470,23 @@ public class RetrofitApiTransport implements Transport {
 
     @Override
     public void updateBeaconLayout(SortedMap<String, String> attributes) {
-        getApiService()
-                .updateBeaconLayout(attributes)
-                .enqueue(new Callback<ResolveResponse>() {
-                    @Override
-                    public void onResponse(Call<ResolveResponse> call, Response<ResolveResponse> response) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            save(response.body());
-                            onSuccess(response.body(), isModified(response));
-                        } else {
-                            onFail(new Exception("Failed to updateBeaconLayout. Response body is empty"));
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<ResolveResponse> call, Throwable t) {
-                        onFail(t);
-                    }
-
-                    void onSuccess(ResolveResponse resolveResponse, boolean changed) {
-                        mProximityUUIDUpdateHandler.proximityUUIDListUpdated(resolveResponse.getAccountProximityUUIDs(), changed);
-                    }
-
-                    void onFail(Throwable t) {
-                        if (lastSuccess == null) {
-                            Logger.log.logError("UpdateBeaconLayout failed", t);
-                            mProximityUUIDUpdateHandler.proximityUUIDListUpdated(Collections.EMPTY_LIST, true);
-                        } else {
-                            Logger.log.logError("UpdateBeaconLayout failed, but we have a backup", t);
-                            onSuccess(lastSuccess, false);
-                        }
-                    }
+        LayoutFetch fetch = joinOrStartLayoutFetch(attributes, new LayoutCallback() {
+            @Override
+            public void onLayout(ResolveResponse layout) {
+                //the handlers were called by the fetch
+            }
 
-                });
+            @Override
+            public void onFailure(Throwable t) {
+                Logger.log.logError("UpdateBeaconLayout failed", t);
+                mProximityUUIDUpdateHandler.proximityUUIDListUpdated(Collections.EMPTY_LIST, true);
+            }
+        });
+        if (fetch != null) {
+            getApiService()
+                    .updateBeaconLayout(attributes)
+                    .enqueue(fetch);
+        }
     }
 
     @Override
@@ -284,4 +497,91 @@ public class RetrofitApiTransport implements Transport {
     public <T> void enqueueWithRetry(Call<T> call, final Callback<T> callback) {
         call.enqueue(new CallbackWithRetry<>(callback));
     }
+
+    /**
+     * Waits for the layout of a {@link LayoutFetch}.
+     */
+    private interface LayoutCallback {
+
+        /**
+         * Called with the fetched layout, or with the last one if the fetch failed.
+         */
+        void onLayout(ResolveResponse layout);
+
+        /**
+         * Called if the fetch failed and there is no layout to fall back to.
+         */
+        void onFailure(Throwable t);
+    }
+
+    /**
+     * One request for the layout, shared by every caller that asks for the layout with the same attributes while it
+     * is running. The response is saved and handed to the handlers once, then fanned out to all callbacks.
+     */
+    private final class LayoutFetch implements Callback<ResolveResponse> {
+
+        /**
+         * The attributes the fetch is registered with in {@link #layoutFetches}, null if it is not shared.
+         */
+        private final SortedMap<String, String> key;
+
+        /**
+         * Guarded by {@link #layoutFetches}.
+         */
+        private final List<LayoutCallback> callbacks = new ArrayList<>(1);
+
+        LayoutFetch(SortedMap<String, String> key, LayoutCallback callback) {
+            this.key = key;
+            callbacks.add(callback);
+        }
+
+        @Override
+        public void onResponse(Call<ResolveResponse> call, Response<ResolveResponse> response) {
+            if (response.isSuccessful() && response.body() != null) {
+                ResolveResponse layout = keepOrSave(response);
+                layoutCurrent = true;
+                onSuccess(layout, isModified(response));
+            } else {
+                onFail(new Throwable("No Content, Invalid Api Key"));
+            }
+        }
+
+        @Override
+        public void onFailure(Call<ResolveResponse> call, Throwable t) {
+            onFail(t);
+        }
+
+        private void onSuccess(ResolveResponse layout, boolean changed) {
+            checkShouldCallBeaconResponseHandlers(layout, changed);
+            for (LayoutCallback callback : finish()) {
+                callback.onLayout(layout);
+            }
+        }
+
+        private void onFail(Throwable t) {
+            ResolveResponse backup = getLastSuccess();
+            if (backup == null) {
+                for (LayoutCallback callback : finish()) {
+                    callback.onFailure(t);
+                }
+            } else {
+                Logger.log.logError("fetching the layout failed, but we have a backup", t);
+                onSuccess(backup, false);
+            }
+        }
+
+        /**
+         * Closes the fetch for new callbacks.
+         *
+         * @return the callbacks waiting for the layout
+         */
+        private List<LayoutCallback> finish() {
+            synchronized (layoutFetches) {
+                if (key != null) {
+                    layoutFetches.remove(key);
+                }
+                return callbacks;
+            }
+        }
+    }
 }
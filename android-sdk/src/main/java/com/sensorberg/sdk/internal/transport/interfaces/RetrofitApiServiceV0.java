@@ -5,6 +5,7 @@ import com.sensorberg.sdk.internal.transport.model.SettingsResponse;
 import com.sensorberg.sdk.model.server.BaseResolveResponse;
 import com.sensorberg.sdk.model.server.ResolveResponse;
 
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
@@ -26,6 +27,9 @@ public interface RetrofitApiServiceV0 {
     @POST("/layout")
     Call<ResponseBody> publishHistory(@Body HistoryBody body);
 
+    @POST("/layout")
+    Call<ResponseBody> publishHistory(@Body RequestBody body);
+
     @GET("/applications/{apiKey}/settings/android")
     Call<SettingsResponse> getSettings(@Path("apiKey") String apiKey);
 }
\ No newline at end of file
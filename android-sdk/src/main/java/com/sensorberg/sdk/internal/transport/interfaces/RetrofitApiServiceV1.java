@@ -7,6 +7,7 @@ import com.sensorberg.sdk.model.server.ResolveResponse;
 
 import java.util.SortedMap;
 
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
@@ -29,6 +30,9 @@ public interface RetrofitApiServiceV1 {
     @POST("/api/v1/sdk/events.json")
     Call<ResponseBody> publishHistory(@Body HistoryBody body);
 
+    @POST("/api/v1/sdk/events.json")
+    Call<ResponseBody> publishHistory(@Body RequestBody body);
+
     @GET("/api/v1/sdk/gateways/{apiKey}/settings.json?platform=android")
     Call<SettingsResponse> getSettings(@Path("apiKey") String apiKey);
 }
\ No newline at end of file
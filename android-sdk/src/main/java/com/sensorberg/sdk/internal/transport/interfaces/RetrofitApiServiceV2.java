@@ -7,6 +7,7 @@ import com.sensorberg.sdk.model.server.ResolveResponse;
 
 import java.util.SortedMap;
 
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
@@ -28,6 +29,13 @@ public interface RetrofitApiServiceV2 {
     @POST("/api/v2/sdk/gateways/{apiKey}/analytics.json")
     Call<ResponseBody> publishHistory(@Path("apiKey") String apiKey, @Body HistoryBody body);
 
+    @POST("/api/v2/sdk/gateways/{apiKey}/analytics.json")
+    Call<ResponseBody> publishHistory(@Path("apiKey") String apiKey, @Body RequestBody body);
+
+    @POST("/api/v2/sdk/gateways/{apiKey}/analytics.json")
+    @Headers({"Content-Encoding: gzip", Transport.HEADER_HISTORY_FORMAT + ": " + Transport.HISTORY_FORMAT_COMPACT})
+    Call<ResponseBody> publishCompactHistory(@Path("apiKey") String apiKey, @Body RequestBody body);
+
     @GET("/api/v2/sdk/gateways/{apiKey}/settings.json?platform=android")
     Call<SettingsResponse> getSettings(@Path("apiKey") String apiKey);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.sensorberg.sdk.internal.transport.interfaces;
 
 import com.sensorberg.sdk.internal.interfaces.BeaconHistoryUploadIntervalListener;
 import com.sensorberg.sdk.internal.interfaces.BeaconResponseHandler;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
 import com.sensorberg.sdk.model.persistence.ActionConversion;
 import com.sensorberg.sdk.model.persistence.BeaconAction;
 import com.sensorberg.sdk.model.persistence.BeaconScan;
@@ -20,6 +21,14 @@ public interface Transport {
 
     String HEADER_XAPIKEY = "X-Api-Key";
 
+    /**
+     * Sent by the backend with the response to a history upload to announce the formats it accepts, and sent with an
+     * upload in another format than the plain one.
+     */
+    String HEADER_HISTORY_FORMAT = "X-History-Format";
+
+    String HISTORY_FORMAT_COMPACT = "compact";
+
     interface ProximityUUIDUpdateHandler{
         ProximityUUIDUpdateHandler NONE = new ProximityUUIDUpdateHandler() {
             @Override
@@ -33,6 +42,25 @@ public interface Transport {
 
     void setProximityUUIDUpdateHandler(ProximityUUIDUpdateHandler proximityUUIDUpdateHandler);
 
+    interface LayoutValidityListener {
+        LayoutValidityListener NONE = new LayoutValidityListener() {
+            @Override
+            public void layoutValidityChangesAt(long timestamp) {
+
+            }
+        };
+
+        /**
+         * Called with every layout received from the backend.
+         *
+         * @param timestamp the next time an action of the layout becomes valid or invalid, {@link Long#MAX_VALUE} if
+         *                  the timeframes do not change anything anymore
+         */
+        void layoutValidityChangesAt(long timestamp);
+    }
+
+    void setLayoutValidityListener(LayoutValidityListener layoutValidityListener);
+
     void getBeacon(ScanEvent scanEvent, SortedMap<String, String> attributes, BeaconResponseHandler beaconResponseHandler);
 
     boolean setApiToken(String apiToken);
@@ -41,8 +69,20 @@ public interface Transport {
 
     void publishHistory(List<BeaconScan> scans, List<BeaconAction> actions, List<ActionConversion> conversions, TransportHistoryCallback callback);
 
+    /**
+     * Publishes history that is written straight from the store while it is sent, the lists of
+     * {@link TransportHistoryCallback#onSuccess(List, List, List)} are null.
+     */
+    void publishHistory(HistoryRequestBody body, TransportHistoryCallback callback);
+
     void updateBeaconLayout(SortedMap<String, String> attributes);
 
+    /**
+     * Marks the cached beacon layout as outdated, the next resolution fetches it from the backend again instead of
+     * resolving against it locally.
+     */
+    void invalidateBeaconLayout();
+
     void setBeaconHistoryUploadIntervalListener(BeaconHistoryUploadIntervalListener listener);
 
     void setLoggingEnabled(boolean enabled);
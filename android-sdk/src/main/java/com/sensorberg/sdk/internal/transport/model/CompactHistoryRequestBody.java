@@ -0,0 +1,194 @@
+package com.sensorberg.sdk.internal.transport.model;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Class {@link CompactHistoryRequestBody} writes the rows of a {@link HistoryRequestBody} in the compact format, it
+ * is gzipped and has to be sent with {@code Content-Encoding: gzip}.
+ * <p>
+ * Every kind of row is turned into columns, one array per field with one value per row, null where a row lacks the
+ * field. The values of the {@link #DICTIONARY_FIELDS} are indices into a dictionary shared by all kinds, the
+ * timestamps of the {@link #DELTA_FIELDS} are the difference to the one of the row before, the first one is absolute:
+ * <pre>
+ * {"version":1,
+ *  "dictionaries":{"pid":["..."],"location":["..."]},
+ *  "events":{"count":2,"columns":{"trigger":[1,2],"pid":[0,0],"dt":[1484000000000,3000],"location":[0,0]}},
+ *  "actions":{"count":0,"columns":{}},
+ *  "conversions":{"count":0,"columns":{}},
+ *  "sessions":{"count":0,"columns":{}},
+ *  "deviceTimestamp":"..."}
+ * </pre>
+ * The columns are built in memory, a page of the history is small enough for that.
+ */
+final class CompactHistoryRequestBody extends RequestBody {
+
+    static final int VERSION = 1;
+
+    static final String[] DICTIONARY_FIELDS = {"pid", "location"};
+
+    static final String[] DELTA_FIELDS = {"dt", "start", "end"};
+
+    private final HistoryRequestBody plain;
+
+    CompactHistoryRequestBody(HistoryRequestBody plain) {
+        this.plain = plain;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return HistoryRequestBody.MEDIA_TYPE;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        Map<String, Map<String, Integer>> dictionaries = new LinkedHashMap<>();
+        for (String field : DICTIONARY_FIELDS) {
+            dictionaries.put(field, new LinkedHashMap<String, Integer>());
+        }
+        Columns scans = new Columns(dictionaries);
+        plain.rows.writeScans(scans);
+        Columns actions = new Columns(dictionaries);
+        plain.rows.writeActions(actions);
+        Columns conversions = new Columns(dictionaries);
+        plain.rows.writeConversions(conversions);
+        Columns sessions = new Columns(dictionaries);
+        plain.rows.writeSessions(sessions);
+
+        HistoryRequestBody.CountingSink counting = new HistoryRequestBody.CountingSink(sink);
+        BufferedSink gzip = Okio.buffer(new GzipSink(counting));
+        JsonWriter out = new JsonWriter(new OutputStreamWriter(gzip.outputStream(), HistoryRequestBody.UTF_8));
+        out.beginObject();
+        out.name("version").value(VERSION);
+        out.name("dictionaries").beginObject();
+        for (Map.Entry<String, Map<String, Integer>> dictionary : dictionaries.entrySet()) {
+            out.name(dictionary.getKey()).beginArray();
+            for (String value : dictionary.getValue().keySet()) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+        out.endObject();
+        writeColumns(out, "events", scans);
+        writeColumns(out, "actions", actions);
+        writeColumns(out, "conversions", conversions);
+        writeColumns(out, "sessions", sessions);
+        out.name("deviceTimestamp");
+        plain.gson.toJson(plain.deviceTimestamp, Date.class, out);
+        out.endObject();
+        out.flush();
+        //closing writes the gzip trailer, the connection stays open
+        gzip.close();
+
+        long plainSize = plain.envelopeSize() + scans.plainBytes + actions.plainBytes + conversions.plainBytes
+                + sessions.plainBytes;
+        plain.bytesWritten = counting.count;
+        plain.bytesSaved = plainSize - counting.count;
+    }
+
+    private void writeColumns(JsonWriter out, String name, Columns columns) throws IOException {
+        out.name(name).beginObject();
+        out.name("count").value(columns.count);
+        out.name("columns").beginObject();
+        for (Map.Entry<String, JsonArray> column : columns.columns.entrySet()) {
+            out.name(column.getKey());
+            plain.gson.toJson(column.getValue(), out);
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    /**
+     * The rows of one kind turned into columns.
+     */
+    private static final class Columns implements HistoryRequestBody.RowWriter {
+
+        private final JsonParser parser = new JsonParser();
+
+        private final Map<String, Map<String, Integer>> dictionaries;
+
+        final Map<String, JsonArray> columns = new LinkedHashMap<>();
+
+        int count;
+
+        /**
+         * The size the rows have in the plain format, with the commas between them.
+         */
+        long plainBytes;
+
+        /**
+         * The last timestamp of every delta encoded field.
+         */
+        private final Map<String, Long> previousTimes = new HashMap<>();
+
+        Columns(Map<String, Map<String, Integer>> dictionaries) {
+            this.dictionaries = dictionaries;
+            for (String field : DELTA_FIELDS) {
+                previousTimes.put(field, 0L);
+            }
+        }
+
+        @Override
+        public void write(String json) throws IOException {
+            plainBytes += json.getBytes(HistoryRequestBody.UTF_8).length + (count > 0 ? 1 : 0);
+            for (Map.Entry<String, JsonElement> field : parser.parse(json).getAsJsonObject().entrySet()) {
+                JsonArray column = columns.get(field.getKey());
+                if (column == null) {
+                    column = new JsonArray();
+                    columns.put(field.getKey(), column);
+                    fill(column, count);
+                }
+                column.add(encode(field.getKey(), field.getValue()));
+            }
+            count++;
+            for (JsonArray column : columns.values()) {
+                fill(column, count);
+            }
+        }
+
+        private JsonElement encode(String field, JsonElement value) {
+            if (!value.isJsonPrimitive()) {
+                return value;
+            }
+            Map<String, Integer> dictionary = dictionaries.get(field);
+            if (dictionary != null) {
+                Integer index = dictionary.get(value.getAsString());
+                if (index == null) {
+                    index = dictionary.size();
+                    dictionary.put(value.getAsString(), index);
+                }
+                return new JsonPrimitive(index);
+            }
+            Long previousTime = previousTimes.get(field);
+            if (previousTime != null && value.getAsJsonPrimitive().isNumber()) {
+                long time = value.getAsLong();
+                previousTimes.put(field, time);
+                return new JsonPrimitive(time - previousTime);
+            }
+            return value;
+        }
+
+        private static void fill(JsonArray column, int size) {
+            while (column.size() < size) {
+                column.add(JsonNull.INSTANCE);
+            }
+        }
+    }
+}
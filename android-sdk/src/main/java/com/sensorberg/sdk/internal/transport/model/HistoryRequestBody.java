@@ -0,0 +1,183 @@
+package com.sensorberg.sdk.internal.transport.model;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.sensorberg.sdk.internal.interfaces.Clock;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * Class {@link HistoryRequestBody} writes the JSON of a {@link HistoryBody} straight to the connection. The scans,
+ * actions, conversions and dwell sessions are copied from their {@link Rows} while the request is sent, none of them is held in
+ * memory. If the backend accepts it the history is sent in the compact format instead, see {@link #compact()}.
+ * <p>
+ * OkHttp may send a request again, so the rows have to be the same every time they are written.
+ */
+public class HistoryRequestBody extends RequestBody {
+
+    static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8");
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The stored history of one upload, every row is the JSON of one item.
+     */
+    public interface Rows {
+
+        void writeScans(RowWriter out) throws IOException;
+
+        void writeActions(RowWriter out) throws IOException;
+
+        void writeConversions(RowWriter out) throws IOException;
+
+        void writeSessions(RowWriter out) throws IOException;
+    }
+
+    /**
+     * Receives the rows of one kind in their order.
+     */
+    public interface RowWriter {
+
+        void write(String json) throws IOException;
+    }
+
+    final Rows rows;
+
+    final Gson gson;
+
+    final Date deviceTimestamp;
+
+    volatile long bytesWritten;
+
+    volatile long bytesSaved;
+
+    public HistoryRequestBody(Rows rows, Gson gson, Clock clock) {
+        this.rows = rows;
+        this.gson = gson;
+        this.deviceTimestamp = new Date(clock.now());
+    }
+
+    private HistoryRequestBody(Rows rows, Gson gson, Date deviceTimestamp) {
+        this.rows = rows;
+        this.gson = gson;
+        this.deviceTimestamp = deviceTimestamp;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        CountingSink counting = new CountingSink(sink);
+        BufferedSink buffered = Okio.buffer(counting);
+        final JsonWriter out = new JsonWriter(new OutputStreamWriter(buffered.outputStream(), UTF_8));
+        RowWriter rowWriter = new RowWriter() {
+            @Override
+            public void write(String json) throws IOException {
+                out.jsonValue(json);
+            }
+        };
+        out.beginObject();
+        out.name("events").beginArray();
+        rows.writeScans(rowWriter);
+        out.endArray();
+        out.name("actions").beginArray();
+        rows.writeActions(rowWriter);
+        out.endArray();
+        out.name("conversions").beginArray();
+        rows.writeConversions(rowWriter);
+        out.endArray();
+        out.name("sessions").beginArray();
+        rows.writeSessions(rowWriter);
+        out.endArray();
+        out.name("deviceTimestamp");
+        gson.toJson(deviceTimestamp, Date.class, out);
+        out.endObject();
+        out.flush();
+        buffered.emit();
+        bytesWritten = counting.count;
+        bytesSaved = 0;
+    }
+
+    /**
+     * @return the size of the body without any rows, the part of the plain format that is not a row or a separator
+     */
+    long envelopeSize() throws IOException {
+        Buffer buffer = new Buffer();
+        new HistoryRequestBody(new Rows() {
+            @Override
+            public void writeScans(RowWriter out) {
+            }
+
+            @Override
+            public void writeActions(RowWriter out) {
+            }
+
+            @Override
+            public void writeConversions(RowWriter out) {
+            }
+
+            @Override
+            public void writeSessions(RowWriter out) {
+            }
+        }, gson, deviceTimestamp).writeTo(buffer);
+        return buffer.size();
+    }
+
+    /**
+     * @return a body with the same rows in the compact format, its sizes are reported by this body
+     */
+    public RequestBody compact() {
+        return new CompactHistoryRequestBody(this);
+    }
+
+    /**
+     * @return the size of the body the last time it was written, compressed if it was sent in the compact format
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return how much smaller the body was than the plain format the last time it was written
+     */
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Counts the bytes that pass to the connection. Closing it does not close the connection, it is owned by OkHttp.
+     */
+    static final class CountingSink extends ForwardingSink {
+
+        long count;
+
+        CountingSink(Sink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            count += byteCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
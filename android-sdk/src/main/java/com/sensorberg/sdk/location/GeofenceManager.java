@@ -42,6 +42,7 @@ public class GeofenceManager implements GeofenceListener {
     private Gson gson;
     private GeofenceStorage storage;
     private PlayServiceManager play;
+    private LocationHelper location;
 
     private List<GeofenceListener> listeners = new ArrayList<>();
 
@@ -56,12 +57,14 @@ public class GeofenceManager implements GeofenceListener {
 
     private final boolean playServicesNotAvailable;
 
-    public GeofenceManager(Context context, SettingsManager settings, SharedPreferences prefs, Gson gson, PlayServiceManager play) {
+    public GeofenceManager(Context context, SettingsManager settings, SharedPreferences prefs, Gson gson, PlayServiceManager play,
+            LocationHelper location) {
         this.context = context;
         this.prefs = prefs;
         this.gson = gson;
         this.play = play;
         this.settings = settings;
+        this.location = location;
 
         playServicesNotAvailable = (play == null);
 
@@ -600,6 +603,7 @@ public class GeofenceManager implements GeofenceListener {
             if (incoming != null) {
                 current = incoming;
                 storeLastKnown(current);
+                location.onLocationChanged(incoming);
                 Logger.log.geofence("Update: location change at " + incoming);
                 if (trigger(incoming)) {
                     removeGeofences(incoming);
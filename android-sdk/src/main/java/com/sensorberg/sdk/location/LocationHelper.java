@@ -1,8 +1,11 @@
 package com.sensorberg.sdk.location;
 
 import android.location.Location;
+import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Looper;
 
 import com.sensorberg.sdk.BuildConfig;
 import com.sensorberg.sdk.Logger;
@@ -13,12 +16,40 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Class {@link LocationHelper} provides the geohash of the scan and geofence events.
+ * <p>
+ * The geohash is cached for at most {@link SettingsManager#getGeohashMaxAge()}, so the scanner does not query every
+ * location provider for each entry and exit. The cache is refreshed by passive location updates and by the location
+ * updates of the {@link GeofenceManager}, reading it is a volatile read without IPC.
+ */
 public class LocationHelper {
 
     private LocationManager manager;
     private SettingsManager settings;
 
-    private GeoHashLocation location;
+    private volatile CachedGeohash cached;
+
+    private volatile boolean passiveUpdatesRequested;
+
+    private final LocationListener passiveListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            LocationHelper.this.onLocationChanged(location);
+        }
+
+        @Override
+        public void onStatusChanged(String provider, int status, Bundle extras) {
+        }
+
+        @Override
+        public void onProviderEnabled(String provider) {
+        }
+
+        @Override
+        public void onProviderDisabled(String provider) {
+        }
+    };
 
     public LocationHelper(LocationManager manager, SettingsManager settings) {
         this.manager = manager;
@@ -27,23 +58,73 @@ public class LocationHelper {
 
     /**
      * Get most recent geohash fulfilling accuracy / age boundaries.
-     * This methods works as passively as possible.
+     * This methods works as passively as possible, the providers are only queried if the cached geohash expired.
      *
      * @return Geohash if location is within given accuracy and age, null if not.
      * Also null if the location is not available or permissions are missing.
      */
     public String getGeohash() {
-        location = acquireGeohash();
-        if (location != null) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
-                if (!BuildConfig.DEBUG && location.isFromMockProvider()) {
-                    Logger.log.geofenceError("Mock location on non-debug build, ignoring", null);
-                    return null;
-                }
+        CachedGeohash current = cached;
+        long now = System.currentTimeMillis();
+        if (current != null && now < current.validUntil) {
+            return current.geohash;
+        }
+        requestPassiveUpdates();
+        GeoHashLocation location = acquireGeohash(current == null ? null : current.location);
+        if (location == null) {
+            cached = new CachedGeohash(null, now + getMaxLocationAge());
+            return null;
+        }
+        return cache(location).geohash;
+    }
+
+    /**
+     * Offers a new location to the geohash cache. It replaces the cached one if it fulfills the accuracy / age
+     * boundaries and is newer.
+     *
+     * @param location the new location, may be null
+     */
+    public void onLocationChanged(Location location) {
+        if (!isAccurateAndFreshAndNotNull(location)) {
+            return;
+        }
+        CachedGeohash current = cached;
+        if (current != null && current.location != null && current.location.getTime() >= location.getTime()) {
+            return;
+        }
+        cache(new GeoHashLocation(location));
+    }
+
+    private CachedGeohash cache(GeoHashLocation location) {
+        String geohash = location.getGeohash();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            if (!BuildConfig.DEBUG && location.isFromMockProvider()) {
+                Logger.log.geofenceError("Mock location on non-debug build, ignoring", null);
+                geohash = null;
             }
-            return location.getGeohash();
         }
-        return null;
+        CachedGeohash result = new CachedGeohash(location, geohash, location.getTime() + getMaxLocationAge());
+        cached = result;
+        return result;
+    }
+
+    /**
+     * Listens to the locations other apps request, without causing any location updates itself.
+     */
+    private void requestPassiveUpdates() {
+        if (passiveUpdatesRequested) {
+            return;
+        }
+        try {
+            if (manager.getProvider(LocationManager.PASSIVE_PROVIDER) != null) {
+                manager.requestLocationUpdates(LocationManager.PASSIVE_PROVIDER, getMaxLocationAge() / 2, 0,
+                        passiveListener, Looper.getMainLooper());
+                passiveUpdatesRequested = true;
+            }
+        } catch (SecurityException ex) {
+            // retried with the next cache miss, the permission might be granted by then
+            Logger.log.logError("Missing permission for passive location updates", ex);
+        }
     }
 
     /**
@@ -64,15 +145,16 @@ public class LocationHelper {
      * Try to get current location as passively as possible.
      * (by using getLastKnownLocation only)
      *
+     * @param previous the location of the expired cache entry, may be null
      * @return Most recent known location.
      */
-    private GeoHashLocation acquireGeohash() {
+    private GeoHashLocation acquireGeohash(GeoHashLocation previous) {
         List<Location> locations = new ArrayList<>(3);
 
-        // re-evaluated current location
+        // re-evaluated previous location
         // it might be still the best, or might be too old
-        if (isAccurateAndFreshAndNotNull(location)) {
-            locations.add(location);
+        if (isAccurateAndFreshAndNotNull(previous)) {
+            locations.add(previous);
         }
 
         // loop through available providers and grab getLastKnownLocation from them
@@ -134,4 +216,26 @@ public class LocationHelper {
             return 0;
         }
     };
+
+    private static class CachedGeohash {
+
+        final GeoHashLocation location;
+
+        final String geohash;
+
+        /**
+         * Wall clock time at which the location gets too old.
+         */
+        final long validUntil;
+
+        CachedGeohash(GeoHashLocation location, long validUntil) {
+            this(location, null, validUntil);
+        }
+
+        CachedGeohash(GeoHashLocation location, String geohash, long validUntil) {
+            this.location = location;
+            this.geohash = geohash;
+            this.validUntil = validUntil;
+        }
+    }
 }
@@ -181,6 +181,57 @@ public class BeaconId implements Parcelable, Serializable {
         return (result);
     }
 
+    /**
+     * Returns the {@link #hashCode()} of a {@link BeaconId} without geofence data built from the given values,
+     * without creating the {@link BeaconId}.
+     *
+     * @param uuidMostSignificantBits  the most significant bits of the proximity {@link UUID}
+     * @param uuidLeastSignificantBits the least significant bits of the proximity {@link UUID}
+     * @param majorId                  the major id
+     * @param minorId                  the minor id
+     * @return the hash code the matching {@link BeaconId} would have
+     */
+    public static int hashCode(long uuidMostSignificantBits, long uuidLeastSignificantBits, int majorId, int minorId) {
+        final int prime = 31;
+        int bytesHash = 1;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytesHash = prime * bytesHash + (byte) (uuidMostSignificantBits >>> shift);
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytesHash = prime * bytesHash + (byte) (uuidLeastSignificantBits >>> shift);
+        }
+        bytesHash = prime * bytesHash + (byte) (majorId >>> 8);
+        bytesHash = prime * bytesHash + (byte) majorId;
+        bytesHash = prime * bytesHash + (byte) (minorId >>> 8);
+        bytesHash = prime * bytesHash + (byte) minorId;
+        return prime + bytesHash;
+    }
+
+    /**
+     * Compares this {@link BeaconId} with the given values without allocating.
+     *
+     * @param uuidMostSignificantBits  the most significant bits of the proximity {@link UUID}
+     * @param uuidLeastSignificantBits the least significant bits of the proximity {@link UUID}
+     * @param majorId                  the major id
+     * @param minorId                  the minor id
+     * @return true if this is a beacon (not a geofence) with exactly these values
+     */
+    public boolean matches(long uuidMostSignificantBits, long uuidLeastSignificantBits, int majorId, int minorId) {
+        return geofenceData == null
+                && getMajorId() == majorId
+                && getMinorId() == minorId
+                && readLong(beaconId, 0x00) == uuidMostSignificantBits
+                && readLong(beaconId, 0x08) == uuidLeastSignificantBits;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
     /**
      * Returns the beacon id (a concatenation of {@link UUID}, major id, and minor id).
      *
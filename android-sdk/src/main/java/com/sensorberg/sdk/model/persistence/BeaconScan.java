@@ -55,17 +55,25 @@ public class BeaconScan {
     public static BeaconScan from(ScanEvent scanEvent) {
         BeaconScan value = new BeaconScan();
         value.setTrigger(scanEvent.isEntry() ? ScanEventType.ENTRY.getMask() : ScanEventType.EXIT.getMask());
-        if (scanEvent.getBeaconId().getGeofenceData() == null) {
-            value.setPid(scanEvent.getBeaconId().getPid());
-        } else {
-            value.setPid(scanEvent.getBeaconId().getGeofenceData().getFence());
-        }
+        value.setPid(pidOf(scanEvent));
         value.setCreatedAt(scanEvent.getEventTime());
         value.setGeohash(scanEvent.getGeohash());
         value.setPairingId(scanEvent.getPairingId());
         return value;
     }
 
+    /**
+     * @param scanEvent - ScanEvent object.
+     * @return - The pid of the beacon or the fence of the geofence of the event.
+     */
+    public static String pidOf(ScanEvent scanEvent) {
+        if (scanEvent.getBeaconId().getGeofenceData() == null) {
+            return scanEvent.getBeaconId().getPid();
+        } else {
+            return scanEvent.getBeaconId().getGeofenceData().getFence();
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
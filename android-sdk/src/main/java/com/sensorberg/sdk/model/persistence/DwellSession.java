@@ -0,0 +1,99 @@
+package com.sensorberg.sdk.model.persistence;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import lombok.Getter;
+
+/**
+ * Class {@link DwellSession} is the stay of the device at a beacon, it replaces the entries and exits of the beacon
+ * in the history when they are aggregated. Every entry and exit is a sample of the session, the entries carry the
+ * measured rssi and the exits the smoothed rssi of the scanner.
+ */
+public class DwellSession {
+
+    @Expose
+    @Getter
+    @SerializedName("pid")
+    private final String pid;
+
+    @Expose
+    @Getter
+    @SerializedName("start")
+    private final long start;
+
+    @Expose
+    @Getter
+    @SerializedName("end")
+    private long end;
+
+    @Expose
+    @Getter
+    @SerializedName("samples")
+    private int samples;
+
+    /**
+     * -- GETTER --
+     *
+     * @return the lowest rssi of the samples, null if none of them had one
+     */
+    @Expose
+    @Getter
+    @SerializedName("minRssi")
+    private Integer minRssi;
+
+    /**
+     * -- GETTER --
+     *
+     * @return the highest rssi of the samples, null if none of them had one
+     */
+    @Expose
+    @Getter
+    @SerializedName("maxRssi")
+    private Integer maxRssi;
+
+    @Expose
+    @Getter
+    @SerializedName("location")
+    private final String geohash;
+
+    public DwellSession(String pid, long start, String geohash) {
+        this(pid, start, start, 0, null, null, geohash);
+    }
+
+    public DwellSession(String pid, long start, long end, int samples, Integer minRssi, Integer maxRssi, String geohash) {
+        this.pid = pid;
+        this.start = start;
+        this.end = end;
+        this.samples = samples;
+        this.minRssi = minRssi;
+        this.maxRssi = maxRssi;
+        this.geohash = geohash;
+    }
+
+    /**
+     * Adds an entry or exit of the beacon.
+     *
+     * @param time the time of the sample
+     * @param rssi the rssi of the sample, ignored unless {@link #isRssi(int)}
+     */
+    public void add(long time, int rssi) {
+        end = Math.max(end, time);
+        samples++;
+        if (isRssi(rssi)) {
+            minRssi = minRssi == null ? rssi : Math.min(minRssi, rssi);
+            maxRssi = maxRssi == null ? rssi : Math.max(maxRssi, rssi);
+        }
+    }
+
+    /**
+     * Exits of beacons that were restored without a measurement and events that were built without one have no
+     * rssi, they report 0 or {@link Integer#MIN_VALUE}.
+     *
+     * @param rssi the rssi of a sample
+     * @return true if it was measured
+     */
+    public static boolean isRssi(int rssi) {
+        return rssi < 0 && rssi != Integer.MIN_VALUE;
+    }
+}
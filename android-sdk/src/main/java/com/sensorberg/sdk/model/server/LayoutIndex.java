@@ -0,0 +1,144 @@
+package com.sensorberg.sdk.model.server;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class {@link LayoutIndex} maps the beacons and geofences of a layout to the {@link ResolveAction}s they trigger.
+ * It is built once per layout and never changed, so it can be shared between threads without locking.
+ * <p>
+ * Beacon ids are stored without dashes and in lower case, geofences as they are, the same way
+ * {@link ResolveAction#containsBeacon(BeaconId)} compares them. Every key holds one bucket per event mask up to
+ * {@link #MAX_INDEXED_TRIGGER}, so a lookup is a single hash map access followed by an array access.
+ */
+final class LayoutIndex {
+
+    static final LayoutIndex EMPTY = new LayoutIndex(Collections.<String, ResolveAction[][]>emptyMap(),
+            Collections.<String, ResolveAction[][]>emptyMap(), ValiditySchedule.ALWAYS_VALID);
+
+    /**
+     * Entry and exit, the masks a {@link com.sensorberg.sdk.scanner.ScanEvent} can have.
+     */
+    private static final int MAX_INDEXED_TRIGGER = 3;
+
+    private final Map<String, ResolveAction[][]> beacons;
+
+    private final Map<String, ResolveAction[][]> fences;
+
+    private final ValiditySchedule schedule;
+
+    private LayoutIndex(Map<String, ResolveAction[][]> beacons, Map<String, ResolveAction[][]> fences, ValiditySchedule schedule) {
+        this.beacons = beacons;
+        this.fences = fences;
+        this.schedule = schedule;
+    }
+
+    /**
+     * Builds the index of a layout.
+     *
+     * @param actions the actions of the layout, may be null
+     * @return the index, the actions of every bucket are in layout order
+     */
+    static LayoutIndex build(List<ResolveAction> actions) {
+        if (actions == null || actions.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, List<ResolveAction>> beaconActions = new HashMap<>();
+        Map<String, List<ResolveAction>> fenceActions = new HashMap<>();
+        for (ResolveAction action : actions) {
+            List<String> bids = action.getBeacons();
+            if (bids == null) {
+                continue;
+            }
+            for (String bid : bids) {
+                if (bid == null) {
+                    continue;
+                }
+                add(beaconActions, normalizePid(bid), action);
+                add(fenceActions, bid, action);
+            }
+        }
+        return new LayoutIndex(toBuckets(beaconActions), toBuckets(fenceActions), ValiditySchedule.build(actions));
+    }
+
+    /**
+     * Returns the timeframes of the layout, indexed together with the beacons.
+     *
+     * @return the {@link ValiditySchedule} of the layout
+     */
+    ValiditySchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Returns the actions of a beacon or geofence for an event mask, whatever their timeframes.
+     *
+     * @param beaconId  the {@link BeaconId} of the event
+     * @param eventMask the event mask, see {@link ResolveAction#matchTrigger(int)}
+     * @return the matching actions in layout order, must not be modified
+     */
+    List<ResolveAction> get(BeaconId beaconId, int eventMask) {
+        ResolveAction[][] buckets;
+        if (beaconId.getGeofenceData() == null) {
+            buckets = beacons.get(normalizePid(beaconId.getPid()));
+        } else {
+            buckets = fences.get(beaconId.getGeofenceData().getFence());
+        }
+        if (buckets == null) {
+            return Collections.emptyList();
+        }
+        if (eventMask >= 0 && eventMask <= MAX_INDEXED_TRIGGER) {
+            return Arrays.asList(buckets[eventMask]);
+        }
+        List<ResolveAction> result = new ArrayList<>();
+        for (ResolveAction action : buckets[0]) {
+            if (action.matchTrigger(eventMask)) {
+                result.add(action);
+            }
+        }
+        return result;
+    }
+
+    private static void add(Map<String, List<ResolveAction>> index, String key, ResolveAction action) {
+        List<ResolveAction> bucket = index.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>(1);
+            index.put(key, bucket);
+        } else if (bucket.get(bucket.size() - 1) == action) {
+            return; // the same beacon listed twice by one action
+        }
+        bucket.add(action);
+    }
+
+    /**
+     * Splits the actions of every key by the event masks they match, mask 0 matches all of them.
+     */
+    private static Map<String, ResolveAction[][]> toBuckets(Map<String, List<ResolveAction>> index) {
+        Map<String, ResolveAction[][]> result = new HashMap<>(index.size() * 4 / 3 + 1);
+        List<ResolveAction> matching = new ArrayList<>();
+        for (Map.Entry<String, List<ResolveAction>> entry : index.entrySet()) {
+            ResolveAction[][] buckets = new ResolveAction[MAX_INDEXED_TRIGGER + 1][];
+            for (int eventMask = 0; eventMask <= MAX_INDEXED_TRIGGER; eventMask++) {
+                matching.clear();
+                for (ResolveAction action : entry.getValue()) {
+                    if (action.matchTrigger(eventMask)) {
+                        matching.add(action);
+                    }
+                }
+                buckets[eventMask] = matching.toArray(new ResolveAction[matching.size()]);
+            }
+            result.put(entry.getKey(), buckets);
+        }
+        return result;
+    }
+
+    private static String normalizePid(String pid) {
+        return pid.replace("-", "").toLowerCase();
+    }
+}
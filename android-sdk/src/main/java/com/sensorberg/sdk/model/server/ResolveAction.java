@@ -1,19 +1,32 @@
 package com.sensorberg.sdk.model.server;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import com.google.gson.annotations.Expose;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import com.sensorberg.sdk.action.Action;
 import com.sensorberg.sdk.action.ActionFactory;
+import com.sensorberg.sdk.action.ActionTemplate;
 import com.sensorberg.sdk.model.BeaconId;
 import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.settings.TimeConstants;
 import com.sensorberg.utils.ListUtils;
 import com.sensorberg.utils.UUIDUtils;
 
-import org.json.JSONException;
-
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -22,72 +35,64 @@ import lombok.Getter;
 import lombok.ToString;
 
 @SuppressWarnings("WeakerAccess")
-@ToString
+@ToString(exclude = {"template", "compiled"})
+@JsonAdapter(ResolveAction.GsonTypeAdapterFactory.class)
 public class ResolveAction implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     public static final ListUtils.Mapper<ResolveAction, BeaconEvent> BEACON_EVENT_MAPPER = new ListUtils.Mapper<ResolveAction, BeaconEvent>() {
         public BeaconEvent map(ResolveAction resolveAction) {
-            try {
-                Action action = ActionFactory
-                        .getAction(resolveAction.type, resolveAction.content, UUID.fromString(UUIDUtils.addUuidDashes(resolveAction.eid)),
-                                resolveAction.delay * TimeConstants.ONE_SECOND);
-                if (action == null) {
-                    return null;
-                }
-                return new BeaconEvent.Builder()
-                        .withAction(action)
-                        .withSuppressionTime(resolveAction.suppressionTime * TimeConstants.ONE_SECOND)
-                        .withSendOnlyOnce(resolveAction.sendOnlyOnce)
-                        .withDeliverAtDate(resolveAction.deliverAt)
-                        .withTrigger(resolveAction.trigger)
-                        .withReportImmediately(resolveAction.reportImmediately)
-                        .build();
-            } catch (JSONException e) {
+            Action action = resolveAction.newAction();
+            if (action == null) {
                 return null;
             }
+            return new BeaconEvent.Builder()
+                    .withAction(action)
+                    .withSuppressionTime(resolveAction.suppressionTime * TimeConstants.ONE_SECOND)
+                    .withSendOnlyOnce(resolveAction.sendOnlyOnce)
+                    .withDeliverAtDate(resolveAction.deliverAt)
+                    .withTrigger(resolveAction.trigger)
+                    .withReportImmediately(resolveAction.reportImmediately)
+                    .build();
         }
     };
 
-    @Expose
     private String eid;
 
-    @Expose
     private int trigger;
 
-    @Expose
     private int type;
 
-    @Expose
     private String name;
 
-    @Expose
     private List<String> beacons;
 
-    @Expose
     private long suppressionTime; //in seconds
 
-    @Expose
     private boolean sendOnlyOnce;
 
-    @Expose
     private long delay;
 
-    @Expose
     @Getter
     private boolean reportImmediately;
 
-    @Expose
-    @Getter
-    private JsonObject content;
+    /**
+     * The content as compact JSON, it is only parsed when the action fires, see {@link #compile()}.
+     */
+    private String rawContent;
 
-    @Expose
     private List<Timeframe> timeframes;
 
-    @Expose
     private Date deliverAt;
 
+    /**
+     * The parsed content, built by {@link #compile()} when the action fires for the first time.
+     */
+    private transient volatile ActionTemplate template;
+
+    private transient volatile boolean compiled;
+
     @SuppressWarnings("WeakerAccess")
     public ResolveAction(String uuid, int trigger, int type, String name, List<String> beacons, long suppressionTime, long delay,
             boolean     reportImmediately, JsonObject content, Date deliverAt) {
@@ -99,10 +104,103 @@ public class ResolveAction implements Serializable {
         this.suppressionTime = suppressionTime;
         this.delay = delay;
         this.reportImmediately = reportImmediately;
-        this.content = content;
+        this.rawContent = content == null ? null : content.toString();
         this.deliverAt = deliverAt;
     }
 
+    private ResolveAction() {
+    }
+
+    /**
+     * Returns the content of the action, parsed anew on every call.
+     *
+     * @return the content, null if the action has none
+     */
+    public JsonObject getContent() {
+        return rawContent == null ? null : new JsonParser().parse(rawContent).getAsJsonObject();
+    }
+
+    /**
+     * Parses the content of the action, once per layout.
+     */
+    void compile() {
+        if (compiled) {
+            return;
+        }
+        template = ActionFactory.getTemplate(type, getContent(), UUID.fromString(UUIDUtils.addUuidDashes(eid)), delay * TimeConstants.ONE_SECOND);
+        compiled = true;
+    }
+
+    /**
+     * Creates a new instance of the action, only its instance uuid differs from the others.
+     *
+     * @return the {@link Action}, null if the action cannot be presented
+     */
+    Action newAction() {
+        compile();
+        ActionTemplate current = template;
+        return current == null ? null : current.newAction();
+    }
+
+    /**
+     * Writes the action in the binary format of the layout snapshot, see {@link #readFrom(ByteBuffer)}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        SnapshotFormat.writeString(out, eid);
+        out.writeInt(trigger);
+        out.writeInt(type);
+        SnapshotFormat.writeString(out, name);
+        SnapshotFormat.writeStrings(out, beacons);
+        out.writeLong(suppressionTime);
+        out.writeBoolean(sendOnlyOnce);
+        out.writeLong(delay);
+        out.writeBoolean(reportImmediately);
+        SnapshotFormat.writeString(out, rawContent);
+        if (timeframes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(timeframes.size());
+            for (Timeframe timeframe : timeframes) {
+                SnapshotFormat.writeDate(out, timeframe.start);
+                SnapshotFormat.writeDate(out, timeframe.end);
+            }
+        }
+        SnapshotFormat.writeDate(out, deliverAt);
+    }
+
+    static ResolveAction readFrom(ByteBuffer in) {
+        ResolveAction value = new ResolveAction();
+        value.eid = SnapshotFormat.readString(in);
+        value.trigger = in.getInt();
+        value.type = in.getInt();
+        value.name = SnapshotFormat.readString(in);
+        value.beacons = SnapshotFormat.readStrings(in);
+        value.suppressionTime = in.getLong();
+        value.sendOnlyOnce = in.get() != 0;
+        value.delay = in.getLong();
+        value.reportImmediately = in.get() != 0;
+        value.rawContent = SnapshotFormat.readString(in);
+        int timeframeCount = in.getInt();
+        if (timeframeCount >= 0) {
+            value.timeframes = new ArrayList<>(timeframeCount);
+            for (int i = 0; i < timeframeCount; i++) {
+                Date start = SnapshotFormat.readDate(in);
+                Date end = SnapshotFormat.readDate(in);
+                value.timeframes.add(new Timeframe(start == null ? null : start.getTime(), end == null ? null : end.getTime()));
+            }
+        }
+        value.deliverAt = SnapshotFormat.readDate(in);
+        return value;
+    }
+
+    List<String> getBeacons() {
+        return beacons;
+    }
+
+    List<Timeframe> getTimeframes() {
+        return timeframes;
+    }
+
     public boolean matchTrigger(int eventMask) {
         return (eventMask & trigger) == eventMask;
     }
@@ -160,6 +258,8 @@ public class ResolveAction implements Serializable {
 
         private Date deliverAt;
 
+        private List<Timeframe> timeframes;
+
         public Builder() {
         }
 
@@ -213,8 +313,214 @@ public class ResolveAction implements Serializable {
             return this;
         }
 
+        public Builder withTimeframes(List<Timeframe> timeframes) {
+            this.timeframes = timeframes;
+            return this;
+        }
+
         public ResolveAction build() {
-            return new ResolveAction(uuid, trigger, type, name, beacons, suppressionTime, delay, reportImmediately, content, deliverAt);
+            ResolveAction resolveAction = new ResolveAction(uuid, trigger, type, name, beacons, suppressionTime, delay, reportImmediately, content, deliverAt);
+            resolveAction.timeframes = timeframes;
+            return resolveAction;
+        }
+    }
+
+    /**
+     * Reads and writes {@link ResolveAction}s with a {@link JsonReader} instead of reflection. The content is copied
+     * token by token into compact JSON without building a {@link JsonObject}, all other fields are read directly.
+     */
+    static final class GsonTypeAdapterFactory implements TypeAdapterFactory {
+
+        private static final TypeToken<List<Timeframe>> TIMEFRAMES = new TypeToken<List<Timeframe>>() {
+        };
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != ResolveAction.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new GsonTypeAdapter(gson.getAdapter(Date.class), gson.getAdapter(TIMEFRAMES));
+        }
+    }
+
+    private static final class GsonTypeAdapter extends TypeAdapter<ResolveAction> {
+
+        private final TypeAdapter<Date> dateAdapter;
+
+        private final TypeAdapter<List<Timeframe>> timeframesAdapter;
+
+        GsonTypeAdapter(TypeAdapter<Date> dateAdapter, TypeAdapter<List<Timeframe>> timeframesAdapter) {
+            this.dateAdapter = dateAdapter;
+            this.timeframesAdapter = timeframesAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, ResolveAction value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("eid").value(value.eid);
+            out.name("trigger").value(value.trigger);
+            out.name("type").value(value.type);
+            out.name("name").value(value.name);
+            out.name("beacons");
+            if (value.beacons == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (String beacon : value.beacons) {
+                    out.value(beacon);
+                }
+                out.endArray();
+            }
+            out.name("suppressionTime").value(value.suppressionTime);
+            out.name("sendOnlyOnce").value(value.sendOnlyOnce);
+            out.name("delay").value(value.delay);
+            out.name("reportImmediately").value(value.reportImmediately);
+            out.name("content");
+            if (value.rawContent == null) {
+                out.nullValue();
+            } else {
+                out.jsonValue(value.rawContent);
+            }
+            out.name("timeframes");
+            timeframesAdapter.write(out, value.timeframes);
+            out.name("deliverAt");
+            dateAdapter.write(out, value.deliverAt);
+            out.endObject();
+        }
+
+        @Override
+        public ResolveAction read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ResolveAction value = new ResolveAction();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "eid":
+                        value.eid = in.nextString();
+                        break;
+                    case "trigger":
+                        value.trigger = in.nextInt();
+                        break;
+                    case "type":
+                        value.type = in.nextInt();
+                        break;
+                    case "name":
+                        value.name = in.nextString();
+                        break;
+                    case "beacons":
+                        value.beacons = readStrings(in);
+                        break;
+                    case "suppressionTime":
+                        value.suppressionTime = in.nextLong();
+                        break;
+                    case "sendOnlyOnce":
+                        value.sendOnlyOnce = in.nextBoolean();
+                        break;
+                    case "delay":
+                        value.delay = in.nextLong();
+                        break;
+                    case "reportImmediately":
+                        value.reportImmediately = in.nextBoolean();
+                        break;
+                    case "content":
+                        value.rawContent = readRawObject(in);
+                        break;
+                    case "timeframes":
+                        value.timeframes = timeframesAdapter.read(in);
+                        break;
+                    case "deliverAt":
+                        value.deliverAt = dateAdapter.read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return value;
+        }
+
+        private static List<String> readStrings(JsonReader in) throws IOException {
+            List<String> result = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    result.add(null);
+                } else {
+                    result.add(in.nextString());
+                }
+            }
+            in.endArray();
+            return result;
+        }
+
+        private static String readRawObject(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new JsonSyntaxException("Expected the content of the action to be an object but was " + in.peek());
+            }
+            StringWriter raw = new StringWriter();
+            JsonWriter out = new JsonWriter(raw);
+            out.setLenient(true);
+            out.setSerializeNulls(true);
+            copy(in, out);
+            out.flush();
+            return raw.toString();
+        }
+
+        /**
+         * Copies the next value of the reader, numbers are kept as they were written.
+         */
+        private static void copy(JsonReader in, JsonWriter out) throws IOException {
+            switch (in.peek()) {
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    out.beginObject();
+                    while (in.hasNext()) {
+                        out.name(in.nextName());
+                        copy(in, out);
+                    }
+                    in.endObject();
+                    out.endObject();
+                    break;
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    out.beginArray();
+                    while (in.hasNext()) {
+                        copy(in, out);
+                    }
+                    in.endArray();
+                    out.endArray();
+                    break;
+                case STRING:
+                    out.value(in.nextString());
+                    break;
+                case NUMBER:
+                    out.jsonValue(in.nextString());
+                    break;
+                case BOOLEAN:
+                    out.value(in.nextBoolean());
+                    break;
+                case NULL:
+                    in.nextNull();
+                    out.nullValue();
+                    break;
+                default:
+                    throw new JsonSyntaxException("Unexpected token in the content of the action: " + in.peek());
+            }
         }
     }
 }
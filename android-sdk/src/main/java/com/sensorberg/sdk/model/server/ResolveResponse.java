@@ -7,14 +7,17 @@ import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.scanner.ScanEvent;
 import com.sensorberg.utils.ListUtils;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import lombok.ToString;
 
-@ToString
+@ToString(exclude = "layoutIndex")
 public class ResolveResponse extends BaseResolveResponse implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -29,6 +32,11 @@ public class ResolveResponse extends BaseResolveResponse implements Serializable
     @SerializedName("reportTrigger")
     public Long reportTriggerSeconds;
 
+    /**
+     * Built on the first resolution, a new layout comes with a new {@link ResolveResponse} and so with a new index.
+     */
+    private transient volatile LayoutIndex layoutIndex;
+
     public List<ResolveAction> resolve(ScanEvent scanEvent, long now) {
         ArrayList<ResolveAction> beaconEvents = new ArrayList<>();
         beaconEvents.addAll(getActionsFromLayout(scanEvent, now));
@@ -43,24 +51,46 @@ public class ResolveResponse extends BaseResolveResponse implements Serializable
      * @return all matching BeaconEvents
      */
     private List<ResolveAction> getActionsFromLayout(final ScanEvent scanEvent, final long now) {
-        if (actions == null) {
+        LayoutIndex index = getLayoutIndex();
+        List<ResolveAction> candidates = index.get(scanEvent.getBeaconId(), scanEvent.getTrigger());
+        if (candidates.isEmpty()) {
             return Collections.emptyList();
         }
-        return ListUtils.filter(actions, new ListUtils.Filter<ResolveAction>() {
+        final ValiditySchedule schedule = index.getSchedule();
+        return ListUtils.filter(candidates, new ListUtils.Filter<ResolveAction>() {
             @Override
             public boolean matches(ResolveAction resolveAction) {
-                boolean matchTrigger = resolveAction.matchTrigger(scanEvent.getTrigger());
-                if (matchTrigger) {
-                    boolean matchBeacon = resolveAction.containsBeacon(scanEvent.getBeaconId());
-                    if (matchBeacon) {
-                        return resolveAction.isValidNow(now);
-                    }
-                }
-                return false;
+                return schedule.isValid(resolveAction, now);
             }
         });
     }
 
+    /**
+     * Returns the next time an action of this layout becomes valid or invalid, i.e. when the layout has to be
+     * evaluated again.
+     *
+     * @param now the current time
+     * @return the time in milliseconds, {@link Long#MAX_VALUE} if the timeframes do not change anything anymore
+     */
+    public long getNextValidityChange(long now) {
+        return getLayoutIndex().getSchedule().getNextChange(now);
+    }
+
+    /**
+     * Returns the index of the actions by beacon and trigger. Two threads resolving the first event at the same time
+     * may both build it, both results are equal.
+     *
+     * @return the index of {@link #actions}
+     */
+    LayoutIndex getLayoutIndex() {
+        LayoutIndex index = layoutIndex;
+        if (index == null) {
+            index = LayoutIndex.build(actions);
+            layoutIndex = index;
+        }
+        return index;
+    }
+
     /**
      * @return all instantActions based on the @{instantAction} ResolveActionsArray.
      */
@@ -81,6 +111,40 @@ public class ResolveResponse extends BaseResolveResponse implements Serializable
     }
 
 
+    /**
+     * Writes the layout in the compact binary format of the layout snapshot, see {@link #readFrom(ByteBuffer)}.
+     *
+     * @param out where to write the layout to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        SnapshotFormat.writeStrings(out, getAccountProximityUUIDs());
+        out.writeBoolean(reportTriggerSeconds != null);
+        if (reportTriggerSeconds != null) {
+            out.writeLong(reportTriggerSeconds);
+        }
+        SnapshotFormat.writeActions(out, actions);
+        SnapshotFormat.writeActions(out, instantActions);
+    }
+
+    /**
+     * Reads a layout written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the layout, read from its position on
+     * @return the layout
+     * @throws java.nio.BufferUnderflowException if the layout is truncated
+     */
+    public static ResolveResponse readFrom(ByteBuffer in) {
+        List<String> accountProximityUUIDs = SnapshotFormat.readStrings(in);
+        Long reportTriggerSeconds = null;
+        if (in.get() != 0) {
+            reportTriggerSeconds = in.getLong();
+        }
+        List<ResolveAction> actions = SnapshotFormat.readActions(in);
+        List<ResolveAction> instantActions = SnapshotFormat.readActions(in);
+        return new ResolveResponse(accountProximityUUIDs, actions, instantActions, reportTriggerSeconds);
+    }
+
     private ResolveResponse(List<String> accountProximityUUIDs, List<ResolveAction> actions, List<ResolveAction> instantActions,
             Long reportTriggerSeconds) {
         super(accountProximityUUIDs);
@@ -0,0 +1,105 @@
+package com.sensorberg.sdk.model.server;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Class {@link SnapshotFormat} writes and reads the values of the binary layout snapshot, see
+ * {@link ResolveResponse#writeTo(DataOutput)}. Values are big endian, strings are UTF-8 with their length in bytes in
+ * front, a length of -1 stands for null.
+ */
+final class SnapshotFormat {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NULL = -1;
+
+    private SnapshotFormat() {
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static void writeStrings(DataOutput out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static List<String> readStrings(ByteBuffer in) {
+        int size = in.getInt();
+        if (size == NULL) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    static void writeDate(DataOutput out, Date value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getTime());
+        }
+    }
+
+    static Date readDate(ByteBuffer in) {
+        return in.get() != 0 ? new Date(in.getLong()) : null;
+    }
+
+    static void writeActions(DataOutput out, List<ResolveAction> actions) throws IOException {
+        if (actions == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        out.writeInt(actions.size());
+        for (ResolveAction action : actions) {
+            action.writeTo(out);
+        }
+    }
+
+    static List<ResolveAction> readActions(ByteBuffer in) {
+        int size = in.getInt();
+        if (size == NULL) {
+            return null;
+        }
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<ResolveAction> actions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            actions.add(ResolveAction.readFrom(in));
+        }
+        return actions;
+    }
+}
@@ -0,0 +1,196 @@
+package com.sensorberg.sdk.model.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class {@link ValiditySchedule} precomputes when the {@link ResolveAction}s of a layout are valid. The
+ * {@link Timeframe}s of every action are merged into sorted, disjoint windows once per layout.
+ * <p>
+ * The validity of all actions is then evaluated for one point in time and cached until the next time any action
+ * becomes valid or invalid, see {@link #getNextChange(long)}. Until then {@link #isValid(ResolveAction, long)} is a
+ * lookup of a cached flag.
+ */
+final class ValiditySchedule {
+
+    static final long NEVER = Long.MAX_VALUE;
+
+    static final ValiditySchedule ALWAYS_VALID = new ValiditySchedule(new IdentityHashMap<ResolveAction, Integer>(), new long[0][]);
+
+    private static final Comparator<long[]> BY_START = new Comparator<long[]>() {
+        @Override
+        public int compare(long[] lhs, long[] rhs) {
+            return lhs[0] < rhs[0] ? -1 : (lhs[0] == rhs[0] ? 0 : 1);
+        }
+    };
+
+    /**
+     * The slot of every action with timeframes, actions without timeframes are always valid.
+     */
+    private final Map<ResolveAction, Integer> slots;
+
+    /**
+     * Per slot the windows as start and exclusive end pairs: start0, end0, start1, end1, ...
+     */
+    private final long[][] windows;
+
+    private volatile Evaluation evaluation;
+
+    private ValiditySchedule(Map<ResolveAction, Integer> slots, long[][] windows) {
+        this.slots = slots;
+        this.windows = windows;
+    }
+
+    /**
+     * Builds the schedule of a layout.
+     *
+     * @param actions the actions of the layout, may be null
+     * @return the schedule, {@link #ALWAYS_VALID} if no action has timeframes
+     */
+    static ValiditySchedule build(List<ResolveAction> actions) {
+        if (actions == null) {
+            return ALWAYS_VALID;
+        }
+        Map<ResolveAction, Integer> slots = new IdentityHashMap<>();
+        List<long[]> windows = new ArrayList<>();
+        for (ResolveAction action : actions) {
+            List<Timeframe> timeframes = action.getTimeframes();
+            if (timeframes == null || timeframes.isEmpty() || slots.containsKey(action)) {
+                continue;
+            }
+            slots.put(action, windows.size());
+            windows.add(merge(timeframes));
+        }
+        if (slots.isEmpty()) {
+            return ALWAYS_VALID;
+        }
+        return new ValiditySchedule(slots, windows.toArray(new long[windows.size()][]));
+    }
+
+    /**
+     * Returns whether the action is valid, like {@link ResolveAction#isValidNow(long)}.
+     *
+     * @param action an action of the layout
+     * @param now    the current time
+     * @return true if one of the timeframes of the action contains now or if it has none
+     */
+    boolean isValid(ResolveAction action, long now) {
+        Integer slot = slots.get(action);
+        if (slot == null) {
+            return true;
+        }
+        return evaluate(now).valid[slot];
+    }
+
+    /**
+     * Returns the next time an action of the layout becomes valid or invalid.
+     *
+     * @param now the current time
+     * @return the time in milliseconds, {@link #NEVER} if the validity of the actions does not change anymore
+     */
+    long getNextChange(long now) {
+        if (windows.length == 0) {
+            return NEVER;
+        }
+        return evaluate(now).until;
+    }
+
+    private Evaluation evaluate(long now) {
+        Evaluation current = evaluation;
+        if (current != null && now >= current.from && now < current.until) {
+            return current;
+        }
+        boolean[] valid = new boolean[windows.length];
+        long from = Long.MIN_VALUE;
+        long until = NEVER;
+        for (int slot = 0; slot < windows.length; slot++) {
+            long[] window = windows[slot];
+            int index = lastStartAtOrBefore(window, now);
+            if (index >= 0 && now < window[index + 1]) {
+                valid[slot] = true;
+                from = Math.max(from, window[index]);
+                until = Math.min(until, window[index + 1]);
+            } else {
+                if (index >= 0) {
+                    from = Math.max(from, window[index + 1]);
+                }
+                int next = index < 0 ? 0 : index + 2;
+                if (next < window.length) {
+                    until = Math.min(until, window[next]);
+                }
+            }
+        }
+        current = new Evaluation(from, until, valid);
+        evaluation = current;
+        return current;
+    }
+
+    /**
+     * @return the index of the start of the last window starting at or before now, -1 if there is none
+     */
+    private static int lastStartAtOrBefore(long[] window, long now) {
+        int low = 0;
+        int high = window.length / 2 - 1;
+        int result = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (window[middle * 2] <= now) {
+                result = middle * 2;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts the timeframes to sorted, disjoint windows with exclusive ends. An open start or end becomes
+     * {@link Long#MIN_VALUE} or {@link #NEVER}.
+     */
+    private static long[] merge(List<Timeframe> timeframes) {
+        List<long[]> intervals = new ArrayList<>(timeframes.size());
+        for (Timeframe timeframe : timeframes) {
+            long start = timeframe.start == null ? Long.MIN_VALUE : timeframe.start.getTime();
+            long end = timeframe.end == null || timeframe.end.getTime() == Long.MAX_VALUE ? NEVER : timeframe.end.getTime() + 1;
+            if (start < end) {
+                intervals.add(new long[]{start, end});
+            }
+        }
+        long[][] sorted = intervals.toArray(new long[intervals.size()][]);
+        Arrays.sort(sorted, BY_START);
+        long[] merged = new long[sorted.length * 2];
+        int length = 0;
+        for (long[] interval : sorted) {
+            if (length > 0 && interval[0] <= merged[length - 1]) {
+                merged[length - 1] = Math.max(merged[length - 1], interval[1]);
+            } else {
+                merged[length++] = interval[0];
+                merged[length++] = interval[1];
+            }
+        }
+        return Arrays.copyOf(merged, length);
+    }
+
+    /**
+     * The validity of all slots, unchanged from {@link #from} until right before {@link #until}.
+     */
+    private static final class Evaluation {
+
+        final long from;
+
+        final long until;
+
+        final boolean[] valid;
+
+        Evaluation(long from, long until, boolean[] valid) {
+            this.from = from;
+            this.until = until;
+            this.valid = valid;
+        }
+    }
+}
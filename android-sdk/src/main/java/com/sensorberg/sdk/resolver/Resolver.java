@@ -44,6 +44,14 @@ public final class Resolver implements RunLoop.MessageHandlerCallback {
                 queryServer(scanEvent);
                 break;
             }
+            case ResolverEvent.BATCH_RESOLUTION_START_REQUESTED: {
+                @SuppressWarnings("unchecked")
+                List<ScanEvent> scanEvents = (List<ScanEvent>) queueEvent.obj;
+                for (ScanEvent scanEvent : scanEvents) {
+                    queryServer(scanEvent);
+                }
+                break;
+            }
             default: {
                 throw new IllegalArgumentException("unhandled default case");
             }
@@ -55,6 +63,18 @@ public final class Resolver implements RunLoop.MessageHandlerCallback {
         runLoop.add(ResolverEvent.asMessage(ResolverEvent.RESOLUTION_START_REQUESTED, scanEvent));
     }
 
+    /**
+     * Resolves several {@link ScanEvent}s with a single message to the resolver thread.
+     *
+     * @param scanEvents the {@link ScanEvent}s to resolve, must not be changed afterwards
+     */
+    public void resolve(List<ScanEvent> scanEvents) {
+        if (scanEvents.isEmpty()) {
+            return;
+        }
+        runLoop.add(ResolverEvent.asMessage(ResolverEvent.BATCH_RESOLUTION_START_REQUESTED, scanEvents));
+    }
+
     public void queryServer(final ScanEvent scanEvent) {
         Logger.log.beaconResolveState(scanEvent, "starting to resolve request");
         transport.getBeacon(scanEvent, attributes, new BeaconResponseHandler() {
@@ -6,6 +6,8 @@ final class ResolverEvent {
 
     public static final int RESOLUTION_START_REQUESTED = 1;
 
+    public static final int BATCH_RESOLUTION_START_REQUESTED = 2;
+
     public static Message asMessage(int type, Object data0){
         Message message = Message.obtain();
         message.arg1 = type;
@@ -3,14 +3,18 @@ package com.sensorberg.sdk.scanner;
 import android.annotation.TargetApi;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
+import android.os.BatteryManager;
 import android.os.Build;
 import android.os.Message;
-import android.util.Pair;
 
 import com.sensorberg.SensorbergSdk;
 import com.sensorberg.sdk.Constants;
 import com.sensorberg.sdk.Logger;
+import com.sensorberg.sdk.internal.interfaces.AddressedScanCallback;
 import com.sensorberg.sdk.internal.interfaces.BluetoothPlatform;
 import com.sensorberg.sdk.internal.interfaces.Clock;
 import com.sensorberg.sdk.internal.interfaces.FileManager;
@@ -26,9 +30,12 @@ import com.sensorberg.sdk.settings.TimeConstants;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
@@ -39,6 +46,8 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
 
     private static final long NEVER_STOPPED = 0L;
 
+    private static final long JOURNAL_FLUSH_INTERVAL = 10 * TimeConstants.ONE_SECOND;
+
     long waitTime;
 
     long scanTime;
@@ -64,6 +73,66 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
 
     private final BeaconMap enteredBeacons;
 
+    /**
+     * Keeps the journal batches of {@link #enteredBeacons} in order, never held together with the scan callback.
+     */
+    private final Object journalMonitor = new Object();
+
+    private long lastJournalFlushTimestamp;
+
+    /**
+     * Reused for every scan record of a thread, so records can be parsed and rejected before taking any lock.
+     */
+    private final ThreadLocal<BeaconAdvertisement> advertisements = new ThreadLocal<BeaconAdvertisement>() {
+        @Override
+        protected BeaconAdvertisement initialValue() {
+            return new BeaconAdvertisement();
+        }
+    };
+
+    /**
+     * The proximity UUIDs of the account, swapped as a whole when they change.
+     */
+    private volatile ProximityUUIDSet proximityUUIDs = ProximityUUIDSet.ALL;
+
+    private final AtomicLong rejectedScanRecords = new AtomicLong();
+
+    /**
+     * Buffers the scan records between the bluetooth thread and the scanner thread, null if the records are
+     * processed directly in the {@link ScanCallback}.
+     */
+    private final ScanRecordRing scanRecordRing;
+
+    private final ScanRecordRing.Consumer scanRecordConsumer = new ScanRecordRing.Consumer() {
+        @Override
+        public void onScanRecord(String address, int rssi, byte[] scanRecord) {
+            AbstractScanner.this.onScanRecord(address, rssi, scanRecord);
+        }
+    };
+
+    private long loggedDroppedScanRecords;
+
+    /**
+     * Chooses the wait between two scans and the length of the scans if the settings have wait time bounds, only used
+     * on the scanner thread.
+     */
+    private final AdaptiveScanPolicy scanPolicy = new AdaptiveScanPolicy();
+
+    /**
+     * Entries and exits since the last pause, guarded by {@link #enteredBeaconsMonitor}.
+     */
+    private int scanEntries;
+
+    private int scanExits;
+
+    /**
+     * The entries and exits not yet handed to the listeners, guarded by {@link #enteredBeaconsMonitor}. They are
+     * delivered together by the next {@link ScannerEvent#EVENT_DETECTED}.
+     */
+    private List<ScanEvent> pendingScanEvents = new ArrayList<>();
+
+    private boolean scanEventDispatchPending;
+
     @Getter
     private final RunLoop runLoop;
 
@@ -91,8 +160,35 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
     @Inject
     SharedPreferences prefs;
 
+    @Inject
+    Context context;
+
     @Getter @Setter private RssiListener rssiListener = RssiListener.NONE;
 
+    /**
+     * -- SETTER --
+     * Sets how often the {@link RssiListener} is called at most. All beacons seen in between are delivered together,
+     * each with its smoothed rssi.
+     *
+     * @param rssiDispatchInterval the interval in milliseconds, 0 to dispatch after every sighting
+     */
+    @Getter @Setter private volatile long rssiDispatchInterval = DefaultSettings.DEFAULT_SCANNER_RSSI_DISPATCH_INTERVAL;
+
+    /**
+     * Guarded by {@link #enteredBeaconsMonitor}, like the rssi fields below.
+     */
+    private long nextRssiDispatch = Long.MIN_VALUE;
+
+    private boolean rssiUpdatesWaiting;
+
+    private boolean rssiDispatchPending;
+
+    private BeaconId[] rssiBeaconIds = new BeaconId[0];
+
+    private int[] rssiValues = new int[0];
+
+    @Getter private volatile BeaconFrameTable beaconFrameTable = BeaconFrameTable.DEFAULT;
+
     AbstractScanner(SettingsManager stgMgr, boolean shouldRestoreBeaconStates, Clock clk, FileManager fileManager,
             ServiceScheduler scheduler, HandlerManager handlerManager, BluetoothPlatform btPlatform) {
         settingsManager = stgMgr;
@@ -105,6 +201,9 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         File beaconFile = shouldRestoreBeaconStates ? fileManager.getFile("enteredBeaconsCache") : null;
         enteredBeacons = new BeaconMap(fileManager, beaconFile);
 
+        int recordBufferSize = settingsManager.getScannerRecordBufferSize();
+        scanRecordRing = recordBufferSize > 0 ? new ScanRecordRing(recordBufferSize) : null;
+
         waitTime = settingsManager.getBackgroundWaitTime();
         scanTime = settingsManager.getBackgroundScanTime();
         exitGraceTime = settingsManager.getExitBackgroundGraceMillis();
@@ -133,31 +232,47 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         synchronized (enteredBeaconsMonitor) {
             final long now = clock.now();
             lastExitCheckTimestamp = now;
-            if (enteredBeacons.size() > 0) {
-                enteredBeacons.filter(new BeaconMap.Filter() {
-                    public boolean filter(EventEntry beaconEntry, BeaconId beaconId) {
-                        long timeSinceWeSawTheBeacon = now - beaconEntry.getLastBeaconTime() - beaconEntry.getScanPauseTime();
-                        if (timeSinceWeSawTheBeacon > settingsManager.getExitTimeoutMillis()) {
-                            ScanEvent scanEvent = new ScanEvent(beaconId, now, false, locationHelper.getGeohash(), beaconEntry.getPairingId());
-                            runLoop.sendMessage(ScannerEvent.EVENT_DETECTED, scanEvent);
-                            Logger.log.beaconResolveState(scanEvent,
-                                    " exited (time since we saw the beacon: " + (int) (timeSinceWeSawTheBeacon / 1000) + " seconds)");
-                            return true;
-                        }
-                        return false;
-                    }
-                });
+            scanExits += enteredBeacons.removeExpired(now, settingsManager.getExitTimeoutMillis(), new BeaconMap.ExpiryListener() {
+                public void onExpired(BeaconMap beaconMap, int slot, long timeSinceWeSawTheBeacon) {
+                    //the exit carries the smoothed rssi, the last measurement the dwell sessions know of
+                    ScanEvent scanEvent = new ScanEvent(beaconMap.getBeaconId(slot), now, false, null, beaconMap.getRssi(slot), 0,
+                            locationHelper.getGeohash(), beaconMap.getPairingId(slot));
+                    pendingScanEvents.add(scanEvent);
+                    Logger.log.beaconResolveState(scanEvent,
+                            " exited (time since we saw the beacon: " + (int) (timeSinceWeSawTheBeacon / 1000) + " seconds)");
+                }
+            });
+            requestScanEventDispatch();
+        }
+    }
+
+    /**
+     * Writes the changes of the entered beacons to disk. The changes are collected while holding the
+     * enteredBeaconsMonitor, the disk I/O happens after releasing it so the scan callback is never blocked by it.
+     */
+    private void flushEnteredBeacons() {
+        synchronized (journalMonitor) {
+            BeaconMapJournal.Batch batch;
+            synchronized (enteredBeaconsMonitor) {
+                lastJournalFlushTimestamp = clock.now();
+                batch = enteredBeacons.takeJournalBatch();
+            }
+            if (batch != null) {
+                batch.write();
             }
         }
     }
 
     /**
-     * Clears the {@link ScanEvent} cache.
+     * Clears the {@link ScanEvent} cache. Takes the monitors in the order of {@link #flushEnteredBeacons()}, so a batch
+     * taken before the clear cannot be written after it.
      */
     @SuppressWarnings("WeakerAccess") //public API
     public void clearCache() {
-        synchronized (enteredBeaconsMonitor) {
-            enteredBeacons.clear();
+        synchronized (journalMonitor) {
+            synchronized (enteredBeaconsMonitor) {
+                enteredBeacons.clear();
+            }
         }
     }
 
@@ -170,45 +285,179 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         return scanning;
     }
 
-    private void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+    /**
+     * Returns the number of scan records dropped because the scanner thread could not keep up with the bluetooth thread.
+     *
+     * @return the number of dropped scan records, always 0 if the records are not buffered
+     */
+    public long getDroppedScanRecords() {
+        return scanRecordRing != null ? scanRecordRing.getDroppedCount() : 0;
+    }
+
+    /**
+     * Sets the proximity UUIDs the scanner reports, beacons with any other proximity UUID are dropped right after
+     * their frame was parsed. Safe to call from any thread, the new set is built first and then swapped in.
+     *
+     * @param proximityUUIDs the proximity UUIDs without dashes, empty to report all beacons
+     */
+    public void setProximityUUIDs(Collection<String> proximityUUIDs) {
+        this.proximityUUIDs = ProximityUUIDSet.from(proximityUUIDs);
+    }
+
+    /**
+     * Sets the beacon layouts the scanner recognizes, {@link BeaconFrameTable#DEFAULT} if not set. The bluetooth
+     * platform gets them too, so its hardware filter lets all of them through.
+     *
+     * @param beaconFrameTable the compiled {@link BeaconFrameTable}
+     */
+    public void setBeaconFrameTable(BeaconFrameTable beaconFrameTable) {
+        this.beaconFrameTable = beaconFrameTable;
+        bluetoothPlatform.setBeaconFrameTable(beaconFrameTable);
+    }
+
+    /**
+     * Returns the number of beacon sightings dropped because the proximity UUID does not belong to the account.
+     *
+     * @return the number of rejected scan records
+     */
+    public long getRejectedScanRecords() {
+        return rejectedScanRecords.get();
+    }
+
+    private void drainScanRecords() {
+        if (scanRecordRing == null) {
+            return;
+        }
+        scanRecordRing.drain(scanRecordConsumer);
+        long dropped = scanRecordRing.getDroppedCount();
+        if (dropped != loggedDroppedScanRecords) {
+            Logger.log.scannerStateChange("dropped " + (dropped - loggedDroppedScanRecords) + " scan records, the buffer of "
+                    + scanRecordRing.getCapacity() + " records was full");
+            loggedDroppedScanRecords = dropped;
+        }
+    }
+
+    private void onScanRecord(String address, int rssi, byte[] scanRecord) {
 
         if (settingsManager.getScannerMinRssi() != DefaultSettings.DEFAULT_SCANNER_MIN_RSSI &&
                 rssi < settingsManager.getScannerMinRssi()) {
             return;
         }
 
-        Pair<BeaconId, Integer> beacon = ScanHelper.getBeaconID(scanRecord);
-        if (beacon != null) {
+        BeaconAdvertisement advertisement = advertisements.get();
+        if (!beaconFrameTable.parse(scanRecord, advertisement) || !advertisement.hasBeaconId()) {
+            return;
+        }
+        if (!proximityUUIDs.accepts(advertisement)) {
+            rejectedScanRecords.incrementAndGet();
+            return;
+        }
 
-            int calRssi = beacon.second;
-            if (settingsManager.getScannerMaxDistance() != DefaultSettings.DEFAULT_SCANNER_MAX_DISTANCE &&
-                    getDistanceFromRSSI(rssi, calRssi) > settingsManager.getScannerMaxDistance()) {
-                return;
+        int calRssi = advertisement.getCalibratedTxPower();
+        if (settingsManager.getScannerMaxDistance() != DefaultSettings.DEFAULT_SCANNER_MAX_DISTANCE &&
+                getDistanceFromRSSI(rssi, calRssi) > settingsManager.getScannerMaxDistance()) {
+            return;
+        }
+
+        synchronized (enteredBeaconsMonitor) {
+            long now = clock.now();
+            int slot = enteredBeacons.indexOf(advertisement);
+
+            if (slot < 0) {
+                BeaconId beaconId = advertisement.toBeaconId();
+                ScanEvent scanEvent = new ScanEvent(beaconId, now, true, address, rssi, calRssi, locationHelper.getGeohash(), UUID.randomUUID().toString());
+                pendingScanEvents.add(scanEvent);
+                enteredBeacons.put(beaconId, new EventEntry(now, 0, ScanEventType.ENTRY.getMask(), scanEvent.getPairingId()));
+                Logger.log.beaconResolveState(scanEvent, "entered");
+                scanEntries++;
+                slot = enteredBeacons.indexOf(advertisement);
+                requestScanEventDispatch();
+            } else {
+                enteredBeacons.seenAgain(slot, now);
+                Logger.log.beaconSeenAgain(enteredBeacons.getBeaconId(slot));
             }
+            enteredBeacons.updateRssi(slot, rssi);
+            rssiUpdatesWaiting = true;
+            requestRssiDispatch(now);
+        }
+    }
 
-            BeaconId beaconId = beacon.first;
-            synchronized (enteredBeaconsMonitor) {
-                long now = clock.now();
-                EventEntry entry = enteredBeacons.get(beaconId);
-
-                if (entry == null) {
-                    String address = device != null ? device.getAddress() : null;
-                    ScanEvent scanEvent = new ScanEvent(beaconId, now, true, address, rssi, calRssi, locationHelper.getGeohash(), UUID.randomUUID().toString());
-                    runLoop.sendMessage(ScannerEvent.EVENT_DETECTED, scanEvent);
-                    entry = new EventEntry(now, 0, ScanEventType.ENTRY.getMask(), scanEvent.getPairingId());
-                    Logger.log.beaconResolveState(scanEvent, "entered");
+    /**
+     * Posts one {@link ScannerEvent#EVENT_DETECTED} for all entries and exits that came in since the last one, the
+     * events queued until the run loop handles it travel in the same batch. Must hold {@link #enteredBeaconsMonitor}.
+     */
+    private void requestScanEventDispatch() {
+        if (!pendingScanEvents.isEmpty() && !scanEventDispatchPending) {
+            scanEventDispatchPending = true;
+            runLoop.sendMessage(ScannerEvent.EVENT_DETECTED);
+        }
+    }
+
+    /**
+     * Hands the pending {@link ScanEvent}s to the listeners: all at once to a {@link BatchScannerListener}, one by one
+     * to any other {@link ScannerListener}.
+     */
+    private void dispatchScanEvents() {
+        List<ScanEvent> scanEvents;
+        synchronized (enteredBeaconsMonitor) {
+            scanEventDispatchPending = false;
+            if (pendingScanEvents.isEmpty()) {
+                return;
+            }
+            scanEvents = Collections.unmodifiableList(pendingScanEvents);
+            pendingScanEvents = new ArrayList<>();
+        }
+        synchronized (listenersMonitor) {
+            for (ScannerListener listener : listeners) {
+                if (listener instanceof BatchScannerListener) {
+                    ((BatchScannerListener) listener).onScanEventsDetected(scanEvents);
                 } else {
-                    entry = new EventEntry(now, 0, entry.getEventMask(), entry.getPairingId());
-                    Logger.log.beaconSeenAgain(beaconId);
-                    if (this.rssiListener != RssiListener.NONE) {
-                        runLoop.sendMessage(ScannerEvent.RSSI_UPDATED, new Pair<>(beaconId, rssi));
+                    for (ScanEvent scanEvent : scanEvents) {
+                        listener.onScanEventDetected(scanEvent);
                     }
                 }
-                enteredBeacons.put(beaconId, entry);
             }
         }
     }
 
+    /**
+     * Posts one {@link ScannerEvent#RSSI_UPDATED} for all rssi updates that came in since the last one, if the
+     * dispatch interval is over. Must hold {@link #enteredBeaconsMonitor}.
+     */
+    private void requestRssiDispatch(long now) {
+        if (rssiUpdatesWaiting && !rssiDispatchPending && now >= nextRssiDispatch && this.rssiListener != RssiListener.NONE) {
+            rssiDispatchPending = true;
+            runLoop.sendMessage(ScannerEvent.RSSI_UPDATED);
+        }
+    }
+
+    /**
+     * Delivers the smoothed rssi of every beacon seen since the last dispatch. The values are copied into arrays that
+     * are reused for every dispatch, the listener is called outside of the lock.
+     */
+    private void dispatchRssiUpdates() {
+        BeaconId[] beaconIds;
+        int[] values;
+        int count;
+        synchronized (enteredBeaconsMonitor) {
+            rssiDispatchPending = false;
+            rssiUpdatesWaiting = false;
+            nextRssiDispatch = clock.now() + rssiDispatchInterval;
+            if (rssiBeaconIds.length < enteredBeacons.size()) {
+                rssiBeaconIds = new BeaconId[enteredBeacons.size() * 2];
+                rssiValues = new int[rssiBeaconIds.length];
+            }
+            beaconIds = rssiBeaconIds;
+            values = rssiValues;
+            count = enteredBeacons.takeRssiUpdates(beaconIds, values);
+        }
+        RssiListener listener = this.rssiListener;
+        for (int i = 0; i < count; i++) {
+            listener.onRssiUpdated(beaconIds[i], values[i]);
+            beaconIds[i] = null;
+        }
+    }
+
     @Override
     public void handleMessage(Message message) {
         ScannerEvent queueEvent = new ScannerEvent(message.what, message.obj);
@@ -229,6 +478,7 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
             }
             case ScannerEvent.PAUSE_SCAN: {
                 bluetoothPlatform.stopLeScan();
+                drainScanRecords();
                 synchronized (enteredBeaconsMonitor) {
                     if (running) {
                         running = false;
@@ -236,8 +486,10 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                         prefs.edit().putLong(Constants.SharedPreferencesKeys.Scanner.SCAN_STOP_TIMESTAMP, stop).apply();
                     }
                 }
-                Logger.log.scannerStateChange("sleeping for " + waitTime + " millis");
-                scheduleExecution(ScannerEvent.UN_PAUSE_SCAN, waitTime);
+                flushEnteredBeacons();
+                long nextWaitTime = nextWaitTime();
+                Logger.log.scannerStateChange("sleeping for " + nextWaitTime + " millis");
+                scheduleExecution(ScannerEvent.UN_PAUSE_SCAN, nextWaitTime);
                 runLoop.cancelFixedRateExecution();
                 break;
             }
@@ -246,8 +498,10 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                 lastBreakLength = clock.now() - lastExitCheckTimestamp;
                 Logger.log.scannerStateChange("starting to scan again, scan break was " + lastBreakLength + " millis");
                 if (scanning) {
+                    long currentScanTime = isScanPolicyEnabled() ? scanPolicy.getScanTime(scanTime) : scanTime;
+                    long currentExitGraceTime = Math.min(exitGraceTime, currentScanTime / 2);
                     Logger.log.debug("ScannerStatusUnpause" + Boolean.toString(scanning));
-                    Logger.log.scannerStateChange("scanning for " + scanTime + " millis, exit grace time is "+exitGraceTime+" millis");
+                    Logger.log.scannerStateChange("scanning for " + currentScanTime + " millis, exit grace time is "+currentExitGraceTime+" millis");
                     synchronized (enteredBeaconsMonitor) {
                         if (!running) {
                             running = true;
@@ -259,13 +513,13 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                         }
                     }
                     bluetoothPlatform.startLeScan(scanCallback);
-                    scheduleExecution(ScannerEvent.PAUSE_SCAN, scanTime);
+                    scheduleExecution(ScannerEvent.PAUSE_SCAN, currentScanTime);
                     runLoop.scheduleAtFixedRate(new TimerTask() {
                         @Override
                         public void run() {
                             loop();
                         }
-                    }, exitGraceTime, TimeConstants.ONE_SECOND);
+                    }, currentExitGraceTime, TimeConstants.ONE_SECOND);
                 }
                 break;
             }
@@ -274,6 +528,7 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                 scanning = false;
                 clearScheduledExecutions();
                 bluetoothPlatform.stopLeScan();
+                drainScanRecords();
                 synchronized (enteredBeaconsMonitor) {
                     if (running) {
                         running = false;
@@ -281,26 +536,24 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
                         prefs.edit().putLong(Constants.SharedPreferencesKeys.Scanner.SCAN_STOP_TIMESTAMP, stop).apply();
                     }
                 }
+                flushEnteredBeacons();
+                scanPolicy.reset();
                 lastStopTimestamp = clock.now();
                 runLoop.cancelFixedRateExecution();
                 Logger.log.scannerStateChange("scan stopped");
                 break;
             }
             case ScannerEvent.EVENT_DETECTED: {
-                ScanEvent scanEvent = (ScanEvent) queueEvent.getData();
-                synchronized (listenersMonitor) {
-                    for (ScannerListener listener : listeners) {
-                        listener.onScanEventDetected(scanEvent);
-                    }
-                }
+                dispatchScanEvents();
                 break;
             }
             case ScannerEvent.RSSI_UPDATED: {
-                //noinspection unchecked -> see useage of ScannerEvent.RSSI_UPDATED
-                Pair<BeaconId, Integer> value = (Pair<BeaconId, Integer>) queueEvent.getData();
-                this.rssiListener.onRssiUpdated(value.first, value.second);
+                dispatchRssiUpdates();
+                break;
+            }
+            case ScannerEvent.SCAN_RECORDS_AVAILABLE: {
+                drainScanRecords();
                 break;
-
             }
             default: {
                 throw new IllegalArgumentException("unhandled case " + queueEvent.getData());
@@ -314,6 +567,12 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         if (bluetoothPlatform.isLeScanRunning()) {
             checkAndExitEnteredBeacons();
         }
+        synchronized (enteredBeaconsMonitor) {
+            requestRssiDispatch(clock.now());
+        }
+        if (clock.now() - lastJournalFlushTimestamp >= JOURNAL_FLUSH_INTERVAL) {
+            flushEnteredBeacons();
+        }
     }
 
     /**
@@ -345,11 +604,24 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         runLoop.sendMessage(ScannerEvent.SCAN_STOP_REQUESTED);
     }
 
+    /**
+     * Receives the scan records on the bluetooth thread. With a {@link ScanRecordRing} the record is only copied
+     * and the scanner thread is woken up, otherwise the record is processed right away.
+     */
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
-    private class ScanCallback implements BluetoothAdapter.LeScanCallback {
+    private class ScanCallback implements AddressedScanCallback {
 
         public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
-            AbstractScanner.this.onLeScan(device, rssi, scanRecord);
+            onLeScan(device != null ? device.getAddress() : null, rssi, scanRecord);
+        }
+
+        @Override
+        public void onLeScan(String address, int rssi, byte[] scanRecord) {
+            if (scanRecordRing == null) {
+                onScanRecord(address, rssi, scanRecord);
+            } else if (scanRecordRing.offer(address, rssi, scanRecord)) {
+                runLoop.sendMessage(ScannerEvent.SCAN_RECORDS_AVAILABLE);
+            }
         }
     }
 
@@ -381,6 +653,56 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
 
     abstract void scheduleExecution(int type, long delay);
 
+    /**
+     * Returns true if the settings have wait time bounds, the {@link AdaptiveScanPolicy} chooses the wait and the scan
+     * time then.
+     */
+    private boolean isScanPolicyEnabled() {
+        long minWaitTime = settingsManager.getScannerMinWaitTime();
+        return minWaitTime > 0 && settingsManager.getScannerMaxWaitTime() >= minWaitTime;
+    }
+
+    /**
+     * Returns the wait before the next scan: the configured {@link #waitTime}, or the choice of the
+     * {@link AdaptiveScanPolicy} if the settings have wait time bounds.
+     */
+    private long nextWaitTime() {
+        int entries;
+        int exits;
+        int beaconsInRange;
+        synchronized (enteredBeaconsMonitor) {
+            entries = scanEntries;
+            exits = scanExits;
+            beaconsInRange = enteredBeacons.size();
+            scanEntries = 0;
+            scanExits = 0;
+        }
+        if (!isScanPolicyEnabled()) {
+            return waitTime;
+        }
+        long minWaitTime = settingsManager.getScannerMinWaitTime();
+        long maxWaitTime = settingsManager.getScannerMaxWaitTime();
+
+        long now = clock.now();
+        scanPolicy.onScanFinished(now, entries, exits, beaconsInRange);
+        boolean charging = false;
+        int batteryPercent = AdaptiveScanPolicy.BATTERY_UNKNOWN;
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery != null) {
+            int plugged = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+            charging = plugged != 0;
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            if (level >= 0 && scale > 0) {
+                batteryPercent = level * 100 / scale;
+            }
+        }
+        long adaptedWaitTime = scanPolicy.getWaitTime(now, waitTime, minWaitTime, maxWaitTime, charging, batteryPercent);
+        Logger.log.scannerStateChange("adapted the wait time to " + adaptedWaitTime + " millis after " + entries + " entries and "
+                + exits + " exits, " + beaconsInRange + " beacons in range, charging: " + charging + ", battery: " + batteryPercent + "%");
+        return adaptedWaitTime;
+    }
+
     private boolean isNotSetupForForegroundScanning() {
         return waitTime != settingsManager.getForeGroundWaitTime() || scanTime != settingsManager.getForeGroundScanTime();
     }
@@ -400,6 +722,10 @@ public abstract class AbstractScanner implements RunLoop.MessageHandlerCallback,
         }
     }
 
+    /**
+     * Receives the smoothed rssi of the beacons in range, at most once per beacon and
+     * {@link #setRssiDispatchInterval(long) dispatch interval}.
+     */
     @SuppressWarnings("EmptyMethod")
     public interface RssiListener {
 
@@ -0,0 +1,134 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.settings.TimeConstants;
+
+/**
+ * Class {@link AdaptiveScanPolicy} chooses the wait between two scans and the length of the next scan from what the
+ * last scans saw.
+ * <p>
+ * A new beacon drops the wait to the minimum, so follow-up beacons and the exit are caught quickly. While entries and
+ * exits keep coming in, a new beacon was seen recently or beacons are in range, the configured scan and wait times are
+ * used. Once nothing is in range and nothing changes, the scanner is idle: it scans for half the configured scan time
+ * and waits three quarters of the configured wait time. That keeps the radio off for a larger share of the cycle, while
+ * no beacon has to wait longer for the next scan than it would with the configured times. A charging device halves the
+ * wait, a low battery doubles it and so trades entry latency for power.
+ * <p>
+ * The policy only keeps a few numbers and has no Android dependencies, the scanner and the simulation in the tests feed
+ * it the same way: {@link #onScanFinished(long, int, int, int)} after every scan, then
+ * {@link #getWaitTime(long, long, long, long, boolean, int)} and {@link #getScanTime(long)}.
+ */
+public class AdaptiveScanPolicy {
+
+    /**
+     * Weight of the churn of earlier scans, halves with every scan.
+     */
+    static final float CHURN_DECAY = 0.5f;
+
+    /**
+     * Churn from which the environment counts as dynamic, reached by one entry or exit in the last scan.
+     */
+    static final float DYNAMIC_CHURN = 0.5f;
+
+    /**
+     * How long after the last new beacon the wait stays at the configured wait time.
+     */
+    static final long QUIET_PERIOD = 5 * TimeConstants.ONE_MINUTE;
+
+    /**
+     * Share of the configured scan time an idle scan takes.
+     */
+    static final float IDLE_SCAN_TIME_FACTOR = 0.5f;
+
+    /**
+     * Share of the configured wait time an idle wait takes. With {@link #IDLE_SCAN_TIME_FACTOR} the radio is on for less
+     * of the cycle as long as the configured scan is shorter than three times the configured wait.
+     */
+    static final float IDLE_WAIT_TIME_FACTOR = 0.75f;
+
+    static final int LOW_BATTERY_PERCENT = 15;
+
+    public static final int BATTERY_UNKNOWN = -1;
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private float churn;
+
+    private long lastNewBeaconTimestamp = NEVER;
+
+    private int lastEntries;
+
+    private int beaconsInRange;
+
+    private boolean idle;
+
+    /**
+     * Records the outcome of a scan.
+     *
+     * @param now            the end of the scan
+     * @param entries        the number of beacons entered during the scan
+     * @param exits          the number of beacons exited during the scan
+     * @param beaconsInRange the number of entered beacons at the end of the scan
+     */
+    public void onScanFinished(long now, int entries, int exits, int beaconsInRange) {
+        churn = churn * CHURN_DECAY + entries + exits;
+        if (entries > 0) {
+            lastNewBeaconTimestamp = now;
+        }
+        this.lastEntries = entries;
+        this.beaconsInRange = beaconsInRange;
+    }
+
+    /**
+     * Chooses the wait before the next scan.
+     *
+     * @param now             the current time
+     * @param baseWaitTime    the wait time configured for the current foreground or background state
+     * @param minWaitTime     the lower bound from the settings
+     * @param maxWaitTime     the upper bound from the settings
+     * @param charging        true if the device is charging
+     * @param batteryPercent  the battery level or {@link #BATTERY_UNKNOWN}
+     * @return the wait time in milliseconds, between minWaitTime and maxWaitTime
+     */
+    public long getWaitTime(long now, long baseWaitTime, long minWaitTime, long maxWaitTime, boolean charging, int batteryPercent) {
+        long waitTime;
+        idle = false;
+        if (lastEntries > 0) {
+            waitTime = minWaitTime;
+        } else if (churn >= DYNAMIC_CHURN || beaconsInRange > 0
+                || (lastNewBeaconTimestamp != NEVER && now - lastNewBeaconTimestamp < QUIET_PERIOD)) {
+            waitTime = baseWaitTime;
+        } else {
+            idle = true;
+            waitTime = (long) (baseWaitTime * IDLE_WAIT_TIME_FACTOR);
+        }
+
+        if (charging) {
+            waitTime /= 2;
+        } else if (batteryPercent != BATTERY_UNKNOWN && batteryPercent <= LOW_BATTERY_PERCENT) {
+            waitTime *= 2;
+        }
+
+        return Math.max(minWaitTime, Math.min(maxWaitTime, waitTime));
+    }
+
+    /**
+     * Chooses the length of the next scan, after {@link #getWaitTime(long, long, long, long, boolean, int)}.
+     *
+     * @param baseScanTime the scan time configured for the current foreground or background state
+     * @return the scan time in milliseconds
+     */
+    public long getScanTime(long baseScanTime) {
+        return idle ? (long) (baseScanTime * IDLE_SCAN_TIME_FACTOR) : baseScanTime;
+    }
+
+    /**
+     * Forgets the history, the next wait is chosen as if the scanner just started.
+     */
+    public void reset() {
+        churn = 0;
+        lastNewBeaconTimestamp = NEVER;
+        lastEntries = 0;
+        beaconsInRange = 0;
+        idle = false;
+    }
+}
@@ -0,0 +1,40 @@
+package com.sensorberg.sdk.scanner;
+
+/**
+ * Class {@link AltBeaconFrameParser} decodes AltBeacon frames of any manufacturer: beacon code 0xBEAC, a 20 byte beacon
+ * id and the reference rssi at one meter. The beacon id is read as proximity UUID, major and minor.
+ */
+public class AltBeaconFrameParser implements BeaconFrameParser {
+
+    private static final int FRAME_LENGTH = 23;
+
+    @Override
+    public int getAdType() {
+        return AD_TYPE_MANUFACTURER_SPECIFIC_DATA;
+    }
+
+    @Override
+    public int getIdentifier() {
+        return ANY_IDENTIFIER;
+    }
+
+    @Override
+    public int getFrameCode() {
+        return 0xBE;
+    }
+
+    @Override
+    public boolean parse(byte[] scanRecord, int offset, int length, BeaconAdvertisement result) {
+        if (length < FRAME_LENGTH || scanRecord[offset + 1] != (byte) 0xAC) {
+            return false;
+        }
+        int id = offset + 2;
+        result.set(BeaconAdvertisement.FRAME_ALTBEACON,
+                BeaconAdvertisement.readLong(scanRecord, id),
+                BeaconAdvertisement.readLong(scanRecord, id + 8),
+                BeaconAdvertisement.readUnsignedShort(scanRecord, id + 16),
+                BeaconAdvertisement.readUnsignedShort(scanRecord, id + 18),
+                scanRecord[id + 20]);
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.sensorberg.sdk.scanner;
+
+import java.util.List;
+
+/**
+ * Interface {@link BatchScannerListener} defines a {@link ScannerListener} that handles all {@link ScanEvent}s the
+ * {@link Scanner} detected in one go, e.g. all beacons that entered during one scan tick. Saving, resolving and
+ * similar work is then done once per batch instead of once per event.
+ * <p>
+ * A {@link BatchScannerListener} is only called with {@link #onScanEventsDetected(List)} by the {@link Scanner},
+ * plain {@link ScannerListener}s still receive one {@link #onScanEventDetected(ScanEvent)} call per event.
+ */
+public interface BatchScannerListener extends ScannerListener {
+    /**
+     * Event-method being called when {@link ScanEvent}s have been detected.
+     *
+     * @param events the {@link ScanEvent}s detected since the last call, in the order they were detected, never empty
+     */
+    void onScanEventsDetected(List<ScanEvent> events);
+}
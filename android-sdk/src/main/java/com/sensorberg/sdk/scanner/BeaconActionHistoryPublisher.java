@@ -11,34 +11,45 @@ import com.sensorberg.sdk.internal.interfaces.HandlerManager;
 import com.sensorberg.sdk.internal.interfaces.RunLoop;
 import com.sensorberg.sdk.internal.transport.interfaces.Transport;
 import com.sensorberg.sdk.internal.transport.interfaces.TransportHistoryCallback;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
 import com.sensorberg.sdk.model.persistence.ActionConversion;
 import com.sensorberg.sdk.model.persistence.BeaconAction;
 import com.sensorberg.sdk.model.persistence.BeaconScan;
 import com.sensorberg.sdk.resolver.BeaconEvent;
 import com.sensorberg.sdk.resolver.ResolverListener;
+import com.sensorberg.sdk.settings.SettingsManager;
 import com.sensorberg.sdk.settings.TimeConstants;
 
-import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import lombok.Setter;
 
-public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.MessageHandlerCallback {
+public class BeaconActionHistoryPublisher implements BatchScannerListener, RunLoop.MessageHandlerCallback {
 
     private static final String SUPRESSION_TIME_STORE_SHARED_PREFS_TAG = "com.sensorberg.sdk.SupressionTimeStore";
 
     private static final int MSG_PUBLISH_HISTORY = 1;
+    private static final int MSG_PAGE_PUBLISHED = 2;
+    private static final int MSG_PAGE_FAILED = 3;
     private static final int MSG_DELETE_ALL_DATA = 6;
-    private static final int MSG_SAVE_SUPPRESSION_STORE = 7;
     static final int MAX_UPLOAD_SIZE = 2000;
+    /**
+     * A publishing run uploads pages until the history is empty, until it sent this many bytes or until it took
+     * {@link #MAX_PUBLISH_DURATION}.
+     */
+    static final long MAX_PUBLISH_BYTES = 5 * 1024 * 1024;
+    static final long MAX_PUBLISH_DURATION = 5 * TimeConstants.ONE_MINUTE;
     static final long MAX_SUPPRESSION_AGE = 7 * TimeConstants.ONE_DAY;
+    /**
+     * A dwell session whose beacon did not exit is closed once it was not continued for this long.
+     */
+    static final long MAX_OPEN_SESSION_AGE = TimeConstants.ONE_DAY;
 
     private Clock clock;
 
@@ -53,33 +64,56 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
 
     private final Gson gson;
 
-    private final Object lock = new Object();
-
-    private List<BeaconScan> beaconScans = new LinkedList<>();
-
-    private List<BeaconAction> beaconActions = new LinkedList<>();
+    private final HistoryStore historyStore;
 
-    private Map<String, ActionConversion> actionConversions = new HashMap<>();
+    /**
+     * Has the merge gap of the dwell sessions, see {@link HistoryStore#addToSessions(Collection, long)}.
+     */
+    private final SettingsManager settingsManager;
 
-    private HashMap<String, Long> suppressionTimeStore = new HashMap<>();
+    /**
+     * The running publishing run, null if there is none. Only used on the runloop.
+     */
+    private PublishRun publishRun;
 
-    public BeaconActionHistoryPublisher(Transport transport, Clock clock,
-                                        HandlerManager handlerManager, SharedPreferences sharedPrefs, Gson gson) {
+    public BeaconActionHistoryPublisher(Transport transport, Clock clock, HandlerManager handlerManager,
+                                        SharedPreferences sharedPrefs, Gson gson, HistoryStore historyStore,
+                                        SettingsManager settingsManager) {
         this.transport = transport;
         this.clock = clock;
         runloop = handlerManager.getBeaconPublisherRunLoop(this);
         sharedPreferences = sharedPrefs;
         this.gson = gson;
+        this.historyStore = historyStore;
+        this.settingsManager = settingsManager;
 
         loadAllData();
     }
 
     @Override
     public void onScanEventDetected(ScanEvent scanEvent) {
-        synchronized (lock) {
-            beaconScans.add(BeaconScan.from(scanEvent));
+        onScanEventsDetected(Collections.singletonList(scanEvent));
+    }
+
+    /**
+     * Stores all scans of the batch in a single transaction, or aggregates them into the dwell sessions of their
+     * beacons.
+     */
+    @Override
+    public void onScanEventsDetected(List<ScanEvent> scanEvents) {
+        if (scanEvents.isEmpty()) {
+            return;
+        }
+        long mergeGap = settingsManager.getDwellSessionMergeGap();
+        if (mergeGap >= 0) {
+            historyStore.addToSessions(scanEvents, mergeGap);
+            return;
         }
-        saveAllData();
+        List<BeaconScan> scans = new ArrayList<>(scanEvents.size());
+        for (ScanEvent scanEvent : scanEvents) {
+            scans.add(BeaconScan.from(scanEvent));
+        }
+        historyStore.addScans(scans);
     }
 
     @Override
@@ -88,55 +122,114 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
             case MSG_PUBLISH_HISTORY:
                 publishHistorySynchronously();
                 break;
+            case MSG_PAGE_PUBLISHED:
+                onPagePublished((PublishRun) queueEvent.obj);
+                break;
+            case MSG_PAGE_FAILED:
+                ((PublishRun) queueEvent.obj).page = null;
+                if (queueEvent.obj == publishRun) {
+                    finishPublishRun();
+                }
+                break;
             case MSG_DELETE_ALL_DATA:
                 deleteAllData();
                 break;
-            case MSG_SAVE_SUPPRESSION_STORE:
-                saveSuppressionTimeStore();
-                break;
         }
     }
 
+    /**
+     * Starts a publishing run unless one is running. A run that took too long is only replaced once its page was
+     * answered, a new run would select the same unacknowledged rows and upload them twice.
+     */
     private void publishHistorySynchronously() {
-        final List<BeaconScan> notSentScans;
-        final List<BeaconAction> notSentActions;
-        final List<String> notSentConversionsKeys;
-        final List<ActionConversion> notSentConversionsValues;
-        synchronized (lock) {
-            notSentScans = getList(beaconScans);
-            notSentActions = getList(beaconActions);
-            notSentConversionsKeys = getList(actionConversions.keySet());
-            notSentConversionsValues = getList(actionConversions.values());
+        if (publishRun != null && (publishRun.page != null || clock.now() - publishRun.started < MAX_PUBLISH_DURATION)) {
+            Logger.log.logBeaconHistoryPublisherState("already publishing");
+            return;
+        }
+        closeSessions();
+        publishRun = new PublishRun(clock.now());
+        publishPage(publishRun);
+    }
+
+    /**
+     * Acknowledges the published page by advancing the committed cursor of the {@link HistoryStore}, that is done on
+     * the runloop like every other write of the publisher.
+     */
+    private void onPagePublished(PublishRun run) {
+        historyStore.commit(run.page.lastSeq);
+        run.page = null;
+        if (run != publishRun) {
+            return; // a run that was given up
+        }
+        if (run.bytes >= MAX_PUBLISH_BYTES || clock.now() - run.started >= MAX_PUBLISH_DURATION) {
+            Logger.log.logBeaconHistoryPublisherState("publishing budget used up after " + run.bytes + " bytes");
+            finishPublishRun();
+            return;
+        }
+        publishPage(run);
+    }
+
+    /**
+     * Moves the dwell sessions that can no longer be continued to the history, all of them if the scans are no longer
+     * aggregated.
+     */
+    private void closeSessions() {
+        long mergeGap = settingsManager.getDwellSessionMergeGap();
+        long now = clock.now();
+        int closed = mergeGap >= 0
+                ? historyStore.closeSessions(now - mergeGap, now - MAX_OPEN_SESSION_AGE)
+                : historyStore.closeSessions(Long.MAX_VALUE, Long.MAX_VALUE);
+        if (closed > 0) {
+            Logger.log.logBeaconHistoryPublisherState("closed " + closed + " dwell sessions");
         }
+    }
 
-        if (notSentScans.isEmpty() && notSentActions.isEmpty() && notSentConversionsKeys.isEmpty()) {
+    /**
+     * Ends the run and deletes what it published, the acknowledgement of the single pages only moved the cursor.
+     */
+    private void finishPublishRun() {
+        publishRun = null;
+        historyStore.compact();
+    }
+
+    /**
+     * Uploads the oldest page of the history, it is streamed from the {@link HistoryStore} by a
+     * {@link HistoryRequestBody}. Once it is published the next page follows.
+     */
+    private void publishPage(final PublishRun run) {
+        final HistoryStore.Page page = historyStore.nextPage(MAX_UPLOAD_SIZE);
+
+        if (page.isEmpty()) {
             Logger.log.logBeaconHistoryPublisherState("nothing to report");
+            finishPublishRun();
             return;
         } else {
             Logger.log.logBeaconHistoryPublisherState("reporting "
-                    + notSentScans.size() + " scans and "
-                    + notSentActions.size() + " actions and " +
-                    +notSentConversionsKeys.size() + " conversions");
+                    + page.scanCount + " scans and "
+                    + page.actionCount + " actions and "
+                    + page.conversionCount + " conversions and "
+                    + page.sessionCount + " dwell sessions");
         }
 
+        run.page = page;
+        final HistoryRequestBody body = new HistoryRequestBody(page, gson, clock);
         TransportHistoryCallback transportHistoryCallback = new TransportHistoryCallback() {
             @Override
             public void onSuccess(List<BeaconScan> scanObjectList, List<BeaconAction> actionList, List<ActionConversion> conversions) {
-                synchronized (lock) {
-                    beaconActions.removeAll(notSentActions);
-                    beaconScans.removeAll(notSentScans);
-                    actionConversions.keySet().removeAll(notSentConversionsKeys);
-                }
                 Logger.log.logBeaconHistoryPublisherState("published "
-                        + notSentActions.size() + " campaignStats and "
-                        + notSentScans.size() + " beaconStats and " +
-                        +notSentConversionsKeys.size() + " actionConversions successfully.");
-                saveAllData();
+                        + page.actionCount + " campaignStats and "
+                        + page.scanCount + " beaconStats and "
+                        + page.conversionCount + " actionConversions and "
+                        + page.sessionCount + " dwellSessions successfully in "
+                        + body.getBytesWritten() + " bytes, " + body.getBytesSaved() + " bytes saved.");
+                run.bytes += body.getBytesWritten();
+                runloop.add(runloop.obtainMessage(MSG_PAGE_PUBLISHED, run));
             }
 
             @Override
             public void onFailure(Exception throwable) {
                 Logger.log.logError("not able to publish history", throwable);
+                runloop.add(runloop.obtainMessage(MSG_PAGE_FAILED, run));
             }
 
             @Override
@@ -145,19 +238,7 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
             }
         };
 
-        transport.publishHistory(notSentScans, notSentActions, notSentConversionsValues, transportHistoryCallback);
-    }
-
-    private static <T> List<T> getList(Collection<T> collection) {
-        if (collection.size() > MAX_UPLOAD_SIZE) {
-            if (collection instanceof List) {
-                return new LinkedList<>(((List<T>) collection).subList(0, MAX_UPLOAD_SIZE));
-            } else {
-                return new LinkedList<>(new LinkedList<>(collection).subList(0, MAX_UPLOAD_SIZE));
-            }
-        } else {
-            return new LinkedList<>(collection);
-        }
+        transport.publishHistory(body, transportHistoryCallback);
     }
 
     public void publishHistory() {
@@ -165,27 +246,18 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
     }
 
     public void onActionPresented(BeaconEvent beaconEvent) {
-        synchronized (lock) {
-            beaconActions.add(BeaconAction.from(beaconEvent));
-        }
-        saveAllData();
+        historyStore.addActions(Collections.singletonList(BeaconAction.from(beaconEvent)));
         if (beaconEvent.isReportImmediately()) {
             publishHistory();
         }
     }
 
     public void onConversionUpdate(ActionConversion incoming) {
-        synchronized (lock) {
-            ActionConversion existing = actionConversions.get(incoming.getActionInstanceUuid());
-            if (existing != null && incoming.getType() <= existing.getType()) {
-                Logger.log.verbose("Conversion " + existing.getActionInstanceUuid() + " type change rejected. " +
-                        "Type can be changed only to higher. " +
-                        "Existing type: " + existing.getType() + " Incoming type: " + incoming.getType());
-                return;
-            }
-            actionConversions.put(incoming.getActionInstanceUuid(), incoming);
+        if (!historyStore.putConversion(incoming)) {
+            Logger.log.verbose("Conversion " + incoming.getActionInstanceUuid() + " type change rejected. " +
+                    "Type can be changed only to higher. " +
+                    "Incoming type: " + incoming.getType());
         }
-        saveAllData();
     }
 
     public void deleteAllObjects() {
@@ -199,17 +271,10 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
      * @return - A list of notSentBeaconScans.
      */
     public boolean actionShouldBeSuppressed(final long lastAllowedPresentationTime, final UUID actionUUID) {
-        Long lastPresentation;
-        synchronized (lock) {
-            lastPresentation = suppressionTimeStore.get(actionUUID.toString());
-        }
+        Long lastPresentation = historyStore.getPresentationTime(actionUUID.toString());
         boolean value = lastPresentation != null && lastPresentation >= lastAllowedPresentationTime;
         if (!value) {
-            synchronized (lock) {
-                suppressionTimeStore.put(actionUUID.toString(), clock.now());
-            }
-            saveAllData();
-            runloop.add(runloop.obtainMessage(MSG_SAVE_SUPPRESSION_STORE));
+            historyStore.putPresentationTime(actionUUID.toString(), clock.now());
         }
         return value;
     }
@@ -222,108 +287,69 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
      * @return - Select class object.
      */
     public boolean actionWasShownBefore(final UUID actionUUID) {
-        boolean value;
-        synchronized (lock) {
-            value = suppressionTimeStore.containsKey(actionUUID.toString());
-        }
+        boolean value = historyStore.getPresentationTime(actionUUID.toString()) != null;
         if (!value) {
-            synchronized (lock) {
-                suppressionTimeStore.put(actionUUID.toString(), clock.now());
-            }
-            saveAllData();
-            runloop.add(runloop.obtainMessage(MSG_SAVE_SUPPRESSION_STORE));
+            historyStore.putPresentationTime(actionUUID.toString(), clock.now());
         }
         return value;
     }
 
+    /**
+     * Drops the published history and the outdated presentation times, and moves the history of older versions out
+     * of the shared preferences. Nothing else is read, the history is read page by page when it is published.
+     */
     private void loadAllData() {
-        synchronized (lock) {
-            String actionJson = sharedPreferences.getString(BeaconAction.SHARED_PREFS_TAG, "");
-            if (!actionJson.isEmpty()) {
-                Type listType = new TypeToken<List<BeaconAction>>() {
-                }.getType();
-                beaconActions = gson.fromJson(actionJson, listType);
-            }
+        migrateSharedPreferences();
+        historyStore.compact();
+        historyStore.deletePresentationTimesOlderThan(clock.now() - MAX_SUPPRESSION_AGE);
+        Logger.log.logBeaconHistoryPublisherState(historyStore.size() + " items in the history");
+    }
 
-            String scanJson = sharedPreferences.getString(BeaconScan.SHARED_PREFS_TAG, "");
-            if (!scanJson.isEmpty()) {
-                Type listType = new TypeToken<List<BeaconScan>>() {
-                }.getType();
-                beaconScans = gson.fromJson(scanJson, listType);
-            }
+    private void migrateSharedPreferences() {
+        String actionJson = sharedPreferences.getString(BeaconAction.SHARED_PREFS_TAG, "");
+        if (!actionJson.isEmpty()) {
+            Type listType = new TypeToken<List<BeaconAction>>() {
+            }.getType();
+            List<BeaconAction> actions = gson.fromJson(actionJson, listType);
+            historyStore.addActions(actions);
+        }
 
-            String conversionJson = sharedPreferences.getString(ActionConversion.SHARED_PREFS_TAG, "");
-            if (!conversionJson.isEmpty()) {
-                Type mapType = new TypeToken<HashMap<String, ActionConversion>>() {
-                }.getType();
-                actionConversions = gson.fromJson(conversionJson, mapType);
-            }
-            Logger.log.logBeaconHistoryPublisherState("loaded "
-                    + beaconActions.size() + " campaignStats and "
-                    + beaconScans.size() + " beaconStats "
-                    + actionConversions.size() + " actionConversions from shared preferences");
-
-            String supressionTimeStoreString = sharedPreferences.getString(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG, "");
-            if (!supressionTimeStoreString.isEmpty()) {
-                Type hashMapType = new TypeToken<HashMap<String, Long>>() {
-                }.getType();
-                suppressionTimeStore = gson.fromJson(supressionTimeStoreString, hashMapType);
-                Iterator<Map.Entry<String, Long>> iterator = suppressionTimeStore.entrySet().iterator();
-                long old = clock.now() - MAX_SUPPRESSION_AGE;
-                while (iterator.hasNext()) {
-                    Map.Entry<String, Long> entry = iterator.next();
-                    if (entry.getValue() <= old) {
-                        iterator.remove();
-                    }
-                }
-            }
+        String scanJson = sharedPreferences.getString(BeaconScan.SHARED_PREFS_TAG, "");
+        if (!scanJson.isEmpty()) {
+            Type listType = new TypeToken<List<BeaconScan>>() {
+            }.getType();
+            List<BeaconScan> scans = gson.fromJson(scanJson, listType);
+            historyStore.addScans(scans);
         }
-    }
 
-    public void saveAllData() {
-        String actionsJson;
-        String scansJson;
-        String conversionJson;
-        String supressionTimeStoreJson;
-        synchronized (lock) {
-            actionsJson = gson.toJson(beaconActions);
-            scansJson = gson.toJson(beaconScans);
-            conversionJson = gson.toJson(actionConversions);
-            supressionTimeStoreJson = gson.toJson(suppressionTimeStore);
+        String conversionJson = sharedPreferences.getString(ActionConversion.SHARED_PREFS_TAG, "");
+        if (!conversionJson.isEmpty()) {
+            Type mapType = new TypeToken<Map<String, ActionConversion>>() {
+            }.getType();
+            Map<String, ActionConversion> conversions = gson.fromJson(conversionJson, mapType);
+            for (ActionConversion conversion : conversions.values()) {
+                historyStore.putConversion(conversion);
+            }
         }
-        if (Logger.isVerboseLoggingEnabled()) {
-            try {
-                Logger.log.logBeaconHistoryPublisherState("size of the stats" +
-                        " campaignStats:" + actionsJson.getBytes("UTF-8").length +
-                        " beaconStats:" + scansJson.getBytes("UTF-8").length +
-                        " conversionStats:" + conversionJson.getBytes("UTF-8").length);
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
+
+        String supressionTimeStoreString = sharedPreferences.getString(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG, "");
+        if (!supressionTimeStoreString.isEmpty()) {
+            Type hashMapType = new TypeToken<Map<String, Long>>() {
+            }.getType();
+            Map<String, Long> suppressionTimeStore = gson.fromJson(supressionTimeStoreString, hashMapType);
+            for (Map.Entry<String, Long> entry : suppressionTimeStore.entrySet()) {
+                historyStore.putPresentationTime(entry.getKey(), entry.getValue());
             }
         }
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor
-                .putString(BeaconAction.SHARED_PREFS_TAG, actionsJson)
-                .putString(BeaconScan.SHARED_PREFS_TAG, scansJson)
-                .putString(ActionConversion.SHARED_PREFS_TAG, conversionJson)
-                .putString(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG, supressionTimeStoreJson)
-                .apply();
-        Logger.log.logBeaconHistoryPublisherState(
-                "saved " + beaconActions.size() + " campaignStats and "
-                        + beaconScans.size() + " beaconStats and "
-                        + actionConversions.size() + " actionConversions and "
-                        + suppressionTimeStore.size() + " supression related items to shared preferences");
+
+        deleteLegacySharedPreferences();
     }
 
-    public void saveSuppressionTimeStore() {
-        String supressionTimeStoreJson;
-        synchronized (lock) {
-            supressionTimeStoreJson = gson.toJson(suppressionTimeStore);
-        }
-        sharedPreferences
-                .edit()
-                .putString(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG, supressionTimeStoreJson)
-                .apply();
+    private void deleteLegacySharedPreferences() {
+        deleteSavedFromSharedPreferences(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG);
+        deleteSavedFromSharedPreferences(BeaconScan.SHARED_PREFS_TAG);
+        deleteSavedFromSharedPreferences(BeaconAction.SHARED_PREFS_TAG);
+        deleteSavedFromSharedPreferences(ActionConversion.SHARED_PREFS_TAG);
     }
 
     private void deleteSavedFromSharedPreferences(String key) {
@@ -334,19 +360,30 @@ public class BeaconActionHistoryPublisher implements ScannerListener, RunLoop.Me
 
     public void deleteAllData() {
         Logger.log.logBeaconHistoryPublisherState("will purge the saved data of "
-                + beaconActions.size() + " campaignStats and "
-                + beaconScans.size() + " beaconStats and "
-                + actionConversions.size() + "actionConversions");
-        synchronized (lock) {
-            beaconActions = new LinkedList<>();
-            beaconScans = new LinkedList<>();
-            actionConversions = new HashMap<>();
-            suppressionTimeStore = new HashMap<>();
-        }
+                + historyStore.size() + " items");
+        historyStore.clear();
+        deleteLegacySharedPreferences();
+    }
 
-        deleteSavedFromSharedPreferences(SUPRESSION_TIME_STORE_SHARED_PREFS_TAG);
-        deleteSavedFromSharedPreferences(BeaconScan.SHARED_PREFS_TAG);
-        deleteSavedFromSharedPreferences(BeaconAction.SHARED_PREFS_TAG);
-        deleteSavedFromSharedPreferences(ActionConversion.SHARED_PREFS_TAG);
+    /**
+     * A series of pages that are published one after the other.
+     */
+    private static final class PublishRun {
+
+        final long started;
+
+        /**
+         * Only written by the callback of the page that is published.
+         */
+        volatile long bytes;
+
+        /**
+         * The page that is published, null while none is. Only used on the runloop.
+         */
+        HistoryStore.Page page;
+
+        PublishRun(long started) {
+            this.started = started;
+        }
     }
 }
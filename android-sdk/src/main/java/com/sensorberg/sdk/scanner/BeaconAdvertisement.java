@@ -0,0 +1,164 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.model.BeaconId;
+
+import java.util.UUID;
+
+import lombok.Getter;
+
+/**
+ * Class {@link BeaconAdvertisement} holds a decoded beacon advertisement as primitives.
+ * Instances are mutable and meant to be reused: {@link ScanHelper#parseBeacon(byte[], BeaconAdvertisement)} and
+ * {@link BeaconFrameTable#parse(byte[], BeaconAdvertisement)} overwrite the fields in place, so decoding a scan record
+ * does not allocate. It is intended for internal use only.
+ * <p>
+ * All frames that identify a beacon are mapped to the iBeacon layout of a {@link BeaconId}: AltBeacon ids already are a
+ * proximity UUID with major and minor, the 16 bytes of an Eddystone-UID namespace and instance become the proximity UUID
+ * with major and minor 0, the 8 bytes of an Eddystone-EID the upper half of the proximity UUID. Eddystone-TLM frames only
+ * carry telemetry, see {@link #hasBeaconId()}.
+ */
+public final class BeaconAdvertisement {
+
+    public static final int FRAME_IBEACON = 1;
+
+    public static final int FRAME_ALTBEACON = 2;
+
+    public static final int FRAME_EDDYSTONE_UID = 3;
+
+    public static final int FRAME_EDDYSTONE_EID = 4;
+
+    public static final int FRAME_EDDYSTONE_TLM = 5;
+
+    /**
+     * -- GETTER --
+     * Returns the type of the last decoded frame, one of the FRAME_ constants.
+     *
+     * @return the frame type
+     */
+    @Getter private int frameType;
+
+    /**
+     * -- GETTER --
+     * Returns the most significant bits of the proximity {@link UUID}.
+     *
+     * @return the most significant bits of the proximity {@link UUID}
+     */
+    @Getter private long uuidMostSignificantBits;
+
+    /**
+     * -- GETTER --
+     * Returns the least significant bits of the proximity {@link UUID}.
+     *
+     * @return the least significant bits of the proximity {@link UUID}
+     */
+    @Getter private long uuidLeastSignificantBits;
+
+    @Getter private int majorId;
+
+    @Getter private int minorId;
+
+    /**
+     * -- GETTER --
+     * The calibrated tx power sent by the beacon, i.e. the rssi at one meter distance.
+     *
+     * @return rssi in db
+     */
+    @Getter private int calibratedTxPower;
+
+    /**
+     * -- GETTER --
+     * The battery voltage of the last Eddystone-TLM frame.
+     *
+     * @return battery voltage in mV, 0 if not supported by the beacon
+     */
+    @Getter private int batteryVoltage;
+
+    /**
+     * -- GETTER --
+     * The temperature of the last Eddystone-TLM frame.
+     *
+     * @return temperature in 1/256 degrees Celsius, -32768 if not supported by the beacon
+     */
+    @Getter private int temperature;
+
+    @Getter private long advertisingCount;
+
+    /**
+     * -- GETTER --
+     * The time since the beacon was powered on, from the last Eddystone-TLM frame.
+     *
+     * @return uptime in 0.1 second resolution
+     */
+    @Getter private long uptime;
+
+    void set(byte[] advertisement, int offset) {
+        set(FRAME_IBEACON, readLong(advertisement, offset), readLong(advertisement, offset + 8),
+                readUnsignedShort(advertisement, offset + 16), readUnsignedShort(advertisement, offset + 18), advertisement[offset + 20]);
+    }
+
+    void set(int frameType, long uuidMostSignificantBits, long uuidLeastSignificantBits, int majorId, int minorId, int calibratedTxPower) {
+        this.frameType = frameType;
+        this.uuidMostSignificantBits = uuidMostSignificantBits;
+        this.uuidLeastSignificantBits = uuidLeastSignificantBits;
+        this.majorId = majorId;
+        this.minorId = minorId;
+        this.calibratedTxPower = calibratedTxPower;
+    }
+
+    void setTelemetry(int batteryVoltage, int temperature, long advertisingCount, long uptime) {
+        this.frameType = FRAME_EDDYSTONE_TLM;
+        this.batteryVoltage = batteryVoltage;
+        this.temperature = temperature;
+        this.advertisingCount = advertisingCount;
+        this.uptime = uptime;
+    }
+
+    /**
+     * Returns true if the last decoded frame identifies a beacon, i.e. if the id getters and {@link #toBeaconId()} are valid.
+     *
+     * @return false for telemetry frames
+     */
+    public boolean hasBeaconId() {
+        return frameType != FRAME_EDDYSTONE_TLM;
+    }
+
+    /**
+     * Compares the advertised id with a {@link BeaconId} without allocating.
+     *
+     * @param beaconId the {@link BeaconId} to compare with
+     * @return true if the {@link BeaconId} identifies the advertising beacon
+     */
+    public boolean matches(BeaconId beaconId) {
+        return beaconId.matches(uuidMostSignificantBits, uuidLeastSignificantBits, majorId, minorId);
+    }
+
+    /**
+     * Returns the {@link BeaconId#hashCode()} of the advertised id without creating the {@link BeaconId}.
+     *
+     * @return the hash code of the matching {@link BeaconId}
+     */
+    public int beaconIdHashCode() {
+        return BeaconId.hashCode(uuidMostSignificantBits, uuidLeastSignificantBits, majorId, minorId);
+    }
+
+    /**
+     * Creates a new {@link BeaconId} for the advertised id.
+     *
+     * @return a new {@link BeaconId}
+     */
+    public BeaconId toBeaconId() {
+        return new BeaconId(new UUID(uuidMostSignificantBits, uuidLeastSignificantBits), majorId, minorId);
+    }
+
+    static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,44 @@
+package com.sensorberg.sdk.scanner;
+
+/**
+ * Interface {@link BeaconFrameParser} decodes one beacon frame layout. The {@link BeaconFrameTable} selects the parser by
+ * the AD type, the company id or 16 bit service UUID and the first byte after it, so a parser is only called for
+ * records that already carry its header.
+ */
+public interface BeaconFrameParser {
+
+    int AD_TYPE_SERVICE_DATA = 0x16;
+
+    int AD_TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+    /**
+     * Matches every company id or service UUID, for layouts that can be sent by any manufacturer.
+     */
+    int ANY_IDENTIFIER = 0x10000;
+
+    /**
+     * @return the AD type of the structure holding the frame
+     */
+    int getAdType();
+
+    /**
+     * @return the company id or 16 bit service UUID following the AD type, or {@link #ANY_IDENTIFIER}
+     */
+    int getIdentifier();
+
+    /**
+     * @return the first byte after the identifier
+     */
+    int getFrameCode();
+
+    /**
+     * Decodes the frame into the {@link BeaconAdvertisement}.
+     *
+     * @param scanRecord the raw scan record
+     * @param offset     the offset of the frame code
+     * @param length     the number of bytes of the AD structure starting at the frame code
+     * @param result     the {@link BeaconAdvertisement} to fill
+     * @return true if the frame was decoded
+     */
+    boolean parse(byte[] scanRecord, int offset, int length, BeaconAdvertisement result);
+}
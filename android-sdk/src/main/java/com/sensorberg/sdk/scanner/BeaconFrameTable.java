@@ -0,0 +1,161 @@
+package com.sensorberg.sdk.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Class {@link BeaconFrameTable} identifies beacon frames of all registered layouts in one pass over a scan record.
+ * <p>
+ * The {@link Builder} compiles the {@link BeaconFrameParser}s into an open addressing table keyed on AD type, company id
+ * or service UUID and frame code. Every AD structure of the record costs one lookup, or two if a layout matches any
+ * company id, instead of trying each parser in turn. The table is immutable and can be shared between threads.
+ */
+public final class BeaconFrameTable {
+
+    /**
+     * All layouts the SDK knows: iBeacon, AltBeacon and Eddystone-UID, -EID and -TLM.
+     */
+    public static final BeaconFrameTable DEFAULT = new Builder()
+            .add(new IBeaconFrameParser())
+            .add(new AltBeaconFrameParser())
+            .add(new EddystoneFrameParser(EddystoneFrameParser.FRAME_UID))
+            .add(new EddystoneFrameParser(EddystoneFrameParser.FRAME_EID))
+            .add(new EddystoneFrameParser(EddystoneFrameParser.FRAME_TLM))
+            .build();
+
+    /**
+     * AD type, identifier and frame code of the smallest structure a parser is called for.
+     */
+    private static final int MINIMUM_STRUCTURE_LENGTH = 4;
+
+    private final long[] keys;
+
+    private final BeaconFrameParser[] parsers;
+
+    private final int mask;
+
+    /**
+     * AD types with at least one layout, so other structures are skipped without a lookup.
+     */
+    private final boolean[] adTypes = new boolean[256];
+
+    private BeaconFrameTable(List<BeaconFrameParser> registered) {
+        int capacity = Integer.highestOneBit(Math.max(registered.size(), 1) * 4 - 1) << 1;
+        keys = new long[capacity];
+        parsers = new BeaconFrameParser[capacity];
+        mask = capacity - 1;
+        for (BeaconFrameParser parser : registered) {
+            long key = key(parser.getAdType(), parser.getIdentifier(), parser.getFrameCode());
+            int slot = slot(key);
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == key) {
+                throw new IllegalArgumentException("two layouts for AD type " + parser.getAdType()
+                        + ", identifier " + parser.getIdentifier() + " and frame code " + parser.getFrameCode());
+            }
+            keys[slot] = key;
+            parsers[slot] = parser;
+            adTypes[parser.getAdType() & 0xFF] = true;
+        }
+    }
+
+    /**
+     * Decodes the first beacon frame of the scan record in place.
+     *
+     * @param scanRecord the raw scan record
+     * @param result     the {@link BeaconAdvertisement} to fill
+     * @return true if a frame was decoded, check {@link BeaconAdvertisement#hasBeaconId()} before using the id
+     */
+    public boolean parse(byte[] scanRecord, BeaconAdvertisement result) {
+        try {
+            int offset = 0;
+            while (offset < scanRecord.length) {
+                int length = scanRecord[offset] & 0xFF;
+                if (length == 0) {
+                    return false;
+                }
+                int adType = scanRecord[offset + 1] & 0xFF;
+                if (length >= MINIMUM_STRUCTURE_LENGTH && adTypes[adType]) {
+                    int identifier = (scanRecord[offset + 2] & 0xFF) | ((scanRecord[offset + 3] & 0xFF) << 8);
+                    int frameCode = scanRecord[offset + 4] & 0xFF;
+                    int remaining = length - 3;
+                    BeaconFrameParser parser = lookup(key(adType, identifier, frameCode));
+                    if (parser != null && parser.parse(scanRecord, offset + 4, remaining, result)) {
+                        return true;
+                    }
+                    parser = lookup(key(adType, BeaconFrameParser.ANY_IDENTIFIER, frameCode));
+                    if (parser != null && parser.parse(scanRecord, offset + 4, remaining, result)) {
+                        return true;
+                    }
+                }
+                offset += length + 1;
+            }
+            return false;
+        } catch (ArrayIndexOutOfBoundsException e) { //a structure claiming more bytes than the record has
+            return false;
+        }
+    }
+
+    /**
+     * Returns the company ids or service UUIDs of the layouts in structures of one AD type, e.g. to build the hardware
+     * filters of the bluetooth controller.
+     *
+     * @param adType the AD type
+     * @return the identifiers, {@link BeaconFrameParser#ANY_IDENTIFIER} among them if a layout matches any
+     */
+    public SortedSet<Integer> getIdentifiers(int adType) {
+        SortedSet<Integer> identifiers = new TreeSet<>();
+        for (BeaconFrameParser parser : parsers) {
+            if (parser != null && parser.getAdType() == adType) {
+                identifiers.add(parser.getIdentifier());
+            }
+        }
+        return identifiers;
+    }
+
+    private BeaconFrameParser lookup(long key) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return parsers[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Never 0, the AD type is at least 1 for every layout.
+     */
+    private static long key(int adType, int identifier, int frameCode) {
+        return ((long) (adType & 0xFF) << 32) | ((long) (identifier & 0x1FFFF) << 8) | (frameCode & 0xFF);
+    }
+
+    public static class Builder {
+
+        private final List<BeaconFrameParser> parsers = new ArrayList<>();
+
+        public Builder add(BeaconFrameParser parser) {
+            parsers.add(parser);
+            return this;
+        }
+
+        /**
+         * Compiles the registered layouts.
+         *
+         * @return the {@link BeaconFrameTable}
+         * @throws IllegalArgumentException if two layouts share AD type, identifier and frame code
+         */
+        public BeaconFrameTable build() {
+            return new BeaconFrameTable(new ArrayList<>(parsers));
+        }
+    }
+}
@@ -5,11 +5,41 @@ import com.sensorberg.sdk.model.BeaconId;
 
 import java.io.File;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Class {@link BeaconMap} holds the currently entered beacons.
+ * <p>
+ * The beacons are stored in an open addressing table with linear probing. The table is keyed on the packed beacon id
+ * (the two {@link UUID} longs plus major and minor) and keeps one array per field, so looking up and updating a beacon
+ * that is seen again does not allocate. Scan pauses are accounted for with a global pause offset: every slot remembers
+ * the offset at the time it was last seen, so {@link #addScanPauseTime(long)} is O(1) instead of touching every entry.
+ * <p>
+ * If a file is given, changes are recorded in a {@link BeaconMapJournal}. Nothing is written to disk until the owner
+ * calls {@link #takeJournalBatch()} and writes the returned {@link BeaconMapJournal.Batch}, so putting and updating
+ * entries never blocks on I/O. Repeat sightings only mark the slot dirty and are logged once per batch.
+ * <p>
+ * The entries are also linked in the order of their last sighting, measured in scan time, i.e. without the scan
+ * pauses. The beacon that will exit next is always the oldest one, so {@link #removeExpired(long, long, ExpiryListener)}
+ * only looks at the beacons that actually expire, and a repeat sighting just moves the beacon to the newest end.
+ * <p>
+ * Every entry also keeps a smoothed rssi, see {@link #updateRssi(int, int)}. The filter state is not persisted.
+ */
 public class BeaconMap {
 
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Variance of a single rssi measurement in dB², about 3 dB standard deviation.
+     */
+    private static final float RSSI_MEASUREMENT_NOISE = 9f;
+
+    /**
+     * Expected change of the real rssi between two sightings in dB², lets the estimate follow a moving device.
+     */
+    private static final float RSSI_PROCESS_NOISE = 0.5f;
+
     private FileManager fileManager;
 
     public interface Filter {
@@ -17,81 +47,567 @@ public class BeaconMap {
         boolean filter(EventEntry beaconEntry, BeaconId beaconId);
     }
 
-    private final HashMap<BeaconId, EventEntry> storage;
+    /**
+     * Filter that reads the columns of a slot directly, see {@link #filter(SlotFilter)}.
+     */
+    public interface SlotFilter {
+
+        boolean filter(BeaconMap beaconMap, int slot);
+    }
+
+    /**
+     * Called for every beacon removed by {@link #removeExpired(long, long, ExpiryListener)}, before it is removed.
+     */
+    public interface ExpiryListener {
+
+        void onExpired(BeaconMap beaconMap, int slot, long timeSinceLastSeen);
+    }
+
+    private static final int NONE = -1;
+
+    private final BeaconMapJournal journal;
+
+    private int size;
+
+    private int mask;
+
+    private BeaconId[] beaconIds;
+
+    private long[] uuidMostSignificantBits;
+
+    private long[] uuidLeastSignificantBits;
+
+    private int[] majorMinorIds;
+
+    private long[] lastBeaconTimes;
+
+    private long[] pauseOffsets;
 
-    private final File fileForPersistance;
+    private int[] eventMasks;
+
+    private String[] pairingIds;
+
+    private boolean[] dirty;
+
+    /**
+     * Kalman filter estimate of the rssi, NaN before the first measurement.
+     */
+    private float[] rssiEstimates;
+
+    private float[] rssiErrors;
+
+    private boolean[] rssiPending;
+
+    private int[] olderSlots;
+
+    private int[] newerSlots;
+
+    private int oldestSlot;
+
+    private int newestSlot;
+
+    /**
+     * Sum of all scan pauses since this map was created.
+     */
+    private long totalScanPauseTime;
 
     public BeaconMap(FileManager fm, File file) {
         fileManager = fm;
-        fileForPersistance = file;
-
-        if (fileForPersistance != null) {
-            storage = readBeaconEntriesFile(fileForPersistance);
+        allocate(INITIAL_CAPACITY);
 
+        if (file != null) {
+            journal = new BeaconMapJournal(file);
+            if (!journal.replay(new JournalReplay()) && size == 0 && file.exists()) {
+                // the file may still hold the serialized map written by older versions of the SDK
+                for (Map.Entry<BeaconId, EventEntry> entry : readBeaconEntriesFile(file).entrySet()) {
+                    insert(entry.getKey(), entry.getValue());
+                }
+            }
         } else {
-            storage = new HashMap<>();
+            journal = null;
         }
     }
 
     public int size() {
-        return storage.size();
+        return size;
     }
 
     public void clear() {
-        storage.clear();
-        deleteFile();
+        allocate(INITIAL_CAPACITY);
+        if (journal != null) {
+            journal.clear();
+        }
+    }
+
+    public EventEntry get(BeaconId beaconId) {
+        int slot = indexOf(beaconId);
+        return slot < 0 ? null : toEventEntry(slot);
+    }
+
+    /**
+     * Looks up the slot of an advertised beacon without allocating.
+     *
+     * @param advertisement the decoded advertisement
+     * @return the slot of the beacon or -1 if the beacon is not in the map
+     */
+    public int indexOf(BeaconAdvertisement advertisement) {
+        return indexOf(advertisement.getUuidMostSignificantBits(), advertisement.getUuidLeastSignificantBits(),
+                packMajorMinor(advertisement.getMajorId(), advertisement.getMinorId()));
+    }
+
+    /**
+     * Looks up the stored {@link BeaconId} of an advertisement without creating a new {@link BeaconId}.
+     *
+     * @param advertisement the decoded advertisement
+     * @return the stored {@link BeaconId} or null if the beacon is not in the map
+     */
+    public BeaconId getBeaconId(BeaconAdvertisement advertisement) {
+        int slot = indexOf(advertisement);
+        return slot < 0 ? null : beaconIds[slot];
+    }
+
+    public BeaconId getBeaconId(int slot) {
+        return beaconIds[slot];
+    }
+
+    public long getLastBeaconTime(int slot) {
+        return lastBeaconTimes[slot];
+    }
+
+    public long getScanPauseTime(int slot) {
+        return totalScanPauseTime - pauseOffsets[slot];
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    private void deleteFile() {
-        if (fileForPersistance != null) {
-            fileForPersistance.delete();
+    public int getEventMask(int slot) {
+        return eventMasks[slot];
+    }
+
+    public String getPairingId(int slot) {
+        return pairingIds[slot];
+    }
+
+    /**
+     * Returns the smoothed rssi of the beacon in the slot.
+     *
+     * @param slot the slot of the beacon
+     * @return the rssi in dB or {@link Integer#MIN_VALUE} if no rssi was measured yet
+     */
+    public int getRssi(int slot) {
+        float estimate = rssiEstimates[slot];
+        return estimate != estimate ? Integer.MIN_VALUE : Math.round(estimate);
+    }
+
+    /**
+     * Feeds a measured rssi into the one dimensional Kalman filter of the beacon in the slot and marks the slot for
+     * the next {@link #takeRssiUpdates(BeaconId[], int[])}.
+     *
+     * @param slot the slot of the beacon
+     * @param rssi the measured rssi
+     */
+    public void updateRssi(int slot, int rssi) {
+        float estimate = rssiEstimates[slot];
+        if (estimate != estimate) {
+            rssiEstimates[slot] = rssi;
+            rssiErrors[slot] = RSSI_MEASUREMENT_NOISE;
+        } else {
+            float error = rssiErrors[slot] + RSSI_PROCESS_NOISE;
+            float gain = error / (error + RSSI_MEASUREMENT_NOISE);
+            rssiEstimates[slot] = estimate + gain * (rssi - estimate);
+            rssiErrors[slot] = (1 - gain) * error;
         }
+        rssiPending[slot] = true;
     }
 
-    public EventEntry get(BeaconId beaconId) {
-        return storage.get(beaconId);
+    /**
+     * Copies the smoothed rssi of every beacon updated since the last call and clears the marks.
+     *
+     * @param beaconIds receives the {@link BeaconId}s, must have room for {@link #size()} entries
+     * @param rssis     receives the smoothed rssi values, must have room for {@link #size()} entries
+     * @return the number of updated beacons
+     */
+    public int takeRssiUpdates(BeaconId[] beaconIds, int[] rssis) {
+        int count = 0;
+        for (int slot = 0; slot < rssiPending.length; slot++) {
+            if (rssiPending[slot]) {
+                rssiPending[slot] = false;
+                beaconIds[count] = this.beaconIds[slot];
+                rssis[count] = getRssi(slot);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Records that the beacon in the slot was seen again. The entry is updated in place.
+     *
+     * @param slot the slot of the beacon, see {@link #indexOf(BeaconAdvertisement)}
+     * @param now  the time the beacon was seen
+     */
+    public void seenAgain(int slot, long now) {
+        lastBeaconTimes[slot] = now;
+        pauseOffsets[slot] = totalScanPauseTime;
+        dirty[slot] = true;
+        unlink(slot);
+        linkNewest(slot);
     }
 
     public void put(BeaconId beaconId, EventEntry entry) {
-        storage.put(beaconId, entry);
-        persist();
+        int slot = insert(beaconId, entry);
+        if (journal != null) {
+            journal.logPut(uuidMostSignificantBits[slot], uuidLeastSignificantBits[slot], majorMinorIds[slot],
+                    lastBeaconTimes[slot], getScanPauseTime(slot), eventMasks[slot], pairingIds[slot]);
+            dirty[slot] = false;
+        }
     }
 
     public void addScanPauseTime(long pause) {
-        for(Map.Entry<BeaconId, EventEntry> entry : storage.entrySet()) {
-            storage.put(entry.getKey(),
-                    new EventEntry(
-                            entry.getValue().getLastBeaconTime(),
-                            entry.getValue().getScanPauseTime() + pause,
-                            entry.getValue().getEventMask(),
-                            entry.getValue().getPairingId()
-                    )
-            );
+        totalScanPauseTime += pause;
+        if (journal != null) {
+            journal.logPause(pause);
         }
     }
 
-    public void filter(Filter filter) {
-        boolean modified = false;
-        Iterator<Map.Entry<BeaconId, EventEntry>> iterator = storage.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<BeaconId, EventEntry> enteredBeacon = iterator.next();
-            EventEntry beaconEntry = enteredBeacon.getValue();
-            BeaconId beaconId = enteredBeacon.getKey();
-            if (filter.filter(beaconEntry, beaconId)) {
-                iterator.remove();
-                modified = true;
+    /**
+     * Collects all changes since the last batch. Only touches memory, so it can be called while holding the lock
+     * that guards this map; the returned {@link BeaconMapJournal.Batch} should be written outside of that lock.
+     *
+     * @return the changes to write or null if this map is not persisted or nothing changed
+     */
+    public BeaconMapJournal.Batch takeJournalBatch() {
+        if (journal == null) {
+            return null;
+        }
+        boolean snapshot = journal.needsSnapshot(size);
+        if (snapshot) {
+            journal.resetPending();
+        }
+        for (int slot = 0; slot < beaconIds.length; slot++) {
+            if (beaconIds[slot] == null) {
+                continue;
+            }
+            if (snapshot) {
+                journal.logPut(uuidMostSignificantBits[slot], uuidLeastSignificantBits[slot], majorMinorIds[slot],
+                        lastBeaconTimes[slot], getScanPauseTime(slot), eventMasks[slot], pairingIds[slot]);
+            } else if (dirty[slot]) {
+                journal.logSeen(uuidMostSignificantBits[slot], uuidLeastSignificantBits[slot], majorMinorIds[slot],
+                        lastBeaconTimes[slot], getScanPauseTime(slot));
             }
+            dirty[slot] = false;
         }
-        if (modified) {
-            persist();
+        return journal.takeBatch(snapshot);
+    }
+
+    /**
+     * Writes all changes to disk right away. Callers that share this map between threads should use
+     * {@link #takeJournalBatch()} instead and write the batch outside of their lock.
+     */
+    public void flush() {
+        BeaconMapJournal.Batch batch = takeJournalBatch();
+        if (batch != null) {
+            batch.write();
         }
     }
 
-    private void persist() {
-        if (fileForPersistance != null) {
-            fileManager.write(storage, fileForPersistance);
+    /**
+     * Removes all beacons that have not been seen for longer than the exit timeout, not counting scan pauses.
+     * Starts at the beacon seen longest ago and stops at the first one that has not expired.
+     *
+     * @param now         the current time
+     * @param exitTimeout the time after which a beacon that was not seen again exits
+     * @param listener    the {@link ExpiryListener} to call for every expired beacon
+     * @return the number of removed beacons
+     */
+    public int removeExpired(long now, long exitTimeout, ExpiryListener listener) {
+        int removed = 0;
+        while (oldestSlot != NONE) {
+            int slot = oldestSlot;
+            long timeSinceLastSeen = now - lastBeaconTimes[slot] - getScanPauseTime(slot);
+            if (timeSinceLastSeen <= exitTimeout) {
+                break;
+            }
+            listener.onExpired(this, slot, timeSinceLastSeen);
+            if (journal != null) {
+                journal.logRemove(uuidMostSignificantBits[slot], uuidLeastSignificantBits[slot], majorMinorIds[slot]);
+            }
+            removeSlot(slot);
+            removed++;
         }
+        return removed;
+    }
+
+    /**
+     * Removes all entries that match the {@link Filter}. Creates an {@link EventEntry} for every entry,
+     * prefer {@link #filter(SlotFilter)} on hot paths.
+     *
+     * @param filter the {@link Filter} to apply
+     */
+    public void filter(final Filter filter) {
+        filter(new SlotFilter() {
+            @Override
+            public boolean filter(BeaconMap beaconMap, int slot) {
+                return filter.filter(toEventEntry(slot), beaconIds[slot]);
+            }
+        });
+    }
+
+    /**
+     * Removes all entries that match the {@link SlotFilter}. The table is walked directly, starting right after
+     * an empty slot: removing shifts later entries of the same cluster back into the current slot, which is
+     * then examined again, so no entry is skipped.
+     *
+     * @param filter the {@link SlotFilter} to apply
+     */
+    public void filter(SlotFilter filter) {
+        if (size == 0) {
+            return;
+        }
+        int start = 0;
+        while (beaconIds[start] != null) {
+            start = (start + 1) & mask;
+        }
+        int slot = (start + 1) & mask;
+        for (int visited = 1; visited < beaconIds.length; visited++) {
+            while (beaconIds[slot] != null && filter.filter(this, slot)) {
+                if (journal != null) {
+                    journal.logRemove(uuidMostSignificantBits[slot], uuidLeastSignificantBits[slot], majorMinorIds[slot]);
+                }
+                removeSlot(slot);
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int insert(BeaconId beaconId, EventEntry entry) {
+        UUID uuid = beaconId.getUuid();
+        return insert(beaconId, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                packMajorMinor(beaconId.getMajorId(), beaconId.getMinorId()),
+                entry.getLastBeaconTime(), entry.getScanPauseTime(), entry.getEventMask(), entry.getPairingId());
+    }
+
+    private int insert(BeaconId beaconId, long most, long least, int majorMinor,
+            long lastBeaconTime, long scanPauseTime, int eventMask, String pairingId) {
+        int slot = indexOf(most, least, majorMinor);
+        if (slot < 0) {
+            if ((size + 1) * 2 > beaconIds.length) {
+                grow();
+            }
+            slot = hash(most, least, majorMinor) & mask;
+            while (beaconIds[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            size++;
+        } else {
+            unlink(slot);
+        }
+        beaconIds[slot] = beaconId;
+        uuidMostSignificantBits[slot] = most;
+        uuidLeastSignificantBits[slot] = least;
+        majorMinorIds[slot] = majorMinor;
+        lastBeaconTimes[slot] = lastBeaconTime;
+        pauseOffsets[slot] = totalScanPauseTime - scanPauseTime;
+        eventMasks[slot] = eventMask;
+        pairingIds[slot] = pairingId;
+        dirty[slot] = false;
+        rssiEstimates[slot] = Float.NaN;
+        rssiPending[slot] = false;
+        linkNewest(slot);
+        return slot;
+    }
+
+    /**
+     * The time the beacon was last seen in scan time, i.e. with all scan pauses removed.
+     */
+    private long lastSeenScanTime(int slot) {
+        return lastBeaconTimes[slot] - pauseOffsets[slot];
+    }
+
+    /**
+     * Links the slot at the newest end of the sighting order. Sightings arrive in order, so this is O(1) unless the
+     * clock went backwards or the entry was restored, in which case the slot is walked back to its position.
+     */
+    private void linkNewest(int slot) {
+        long seen = lastSeenScanTime(slot);
+        int older = newestSlot;
+        while (older != NONE && lastSeenScanTime(older) > seen) {
+            older = olderSlots[older];
+        }
+        int newer = older == NONE ? oldestSlot : newerSlots[older];
+        olderSlots[slot] = older;
+        newerSlots[slot] = newer;
+        if (older == NONE) {
+            oldestSlot = slot;
+        } else {
+            newerSlots[older] = slot;
+        }
+        if (newer == NONE) {
+            newestSlot = slot;
+        } else {
+            olderSlots[newer] = slot;
+        }
+    }
+
+    private void unlink(int slot) {
+        int older = olderSlots[slot];
+        int newer = newerSlots[slot];
+        if (older == NONE) {
+            oldestSlot = newer;
+        } else {
+            newerSlots[older] = newer;
+        }
+        if (newer == NONE) {
+            newestSlot = older;
+        } else {
+            olderSlots[newer] = older;
+        }
+    }
+
+    private int indexOf(BeaconId beaconId) {
+        if (beaconId.getGeofenceData() != null) {
+            return -1;
+        }
+        UUID uuid = beaconId.getUuid();
+        return indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                packMajorMinor(beaconId.getMajorId(), beaconId.getMinorId()));
+    }
+
+    private int indexOf(long most, long least, int majorMinor) {
+        int slot = hash(most, least, majorMinor) & mask;
+        while (beaconIds[slot] != null) {
+            if (uuidMostSignificantBits[slot] == most
+                    && uuidLeastSignificantBits[slot] == least
+                    && majorMinorIds[slot] == majorMinor) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward shift deletion, keeps every probe sequence free of holes without using tombstones.
+     */
+    private void removeSlot(int slot) {
+        unlink(slot);
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (beaconIds[next] != null) {
+            int home = hash(uuidMostSignificantBits[next], uuidLeastSignificantBits[next], majorMinorIds[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                moveSlot(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        beaconIds[hole] = null;
+        pairingIds[hole] = null;
+        dirty[hole] = false;
+        rssiPending[hole] = false;
+        size--;
+    }
+
+    private void moveSlot(int from, int to) {
+        beaconIds[to] = beaconIds[from];
+        uuidMostSignificantBits[to] = uuidMostSignificantBits[from];
+        uuidLeastSignificantBits[to] = uuidLeastSignificantBits[from];
+        majorMinorIds[to] = majorMinorIds[from];
+        lastBeaconTimes[to] = lastBeaconTimes[from];
+        pauseOffsets[to] = pauseOffsets[from];
+        eventMasks[to] = eventMasks[from];
+        pairingIds[to] = pairingIds[from];
+        dirty[to] = dirty[from];
+        rssiEstimates[to] = rssiEstimates[from];
+        rssiErrors[to] = rssiErrors[from];
+        rssiPending[to] = rssiPending[from];
+
+        int older = olderSlots[from];
+        int newer = newerSlots[from];
+        olderSlots[to] = older;
+        newerSlots[to] = newer;
+        if (older == NONE) {
+            oldestSlot = to;
+        } else {
+            newerSlots[older] = to;
+        }
+        if (newer == NONE) {
+            newestSlot = to;
+        } else {
+            olderSlots[newer] = to;
+        }
+    }
+
+    private void allocate(int capacity) {
+        size = 0;
+        mask = capacity - 1;
+        beaconIds = new BeaconId[capacity];
+        uuidMostSignificantBits = new long[capacity];
+        uuidLeastSignificantBits = new long[capacity];
+        majorMinorIds = new int[capacity];
+        lastBeaconTimes = new long[capacity];
+        pauseOffsets = new long[capacity];
+        eventMasks = new int[capacity];
+        pairingIds = new String[capacity];
+        dirty = new boolean[capacity];
+        rssiEstimates = new float[capacity];
+        rssiErrors = new float[capacity];
+        rssiPending = new boolean[capacity];
+        olderSlots = new int[capacity];
+        newerSlots = new int[capacity];
+        oldestSlot = NONE;
+        newestSlot = NONE;
+    }
+
+    private void grow() {
+        BeaconId[] oldBeaconIds = beaconIds;
+        long[] oldMost = uuidMostSignificantBits;
+        long[] oldLeast = uuidLeastSignificantBits;
+        int[] oldMajorMinor = majorMinorIds;
+        long[] oldLastBeaconTimes = lastBeaconTimes;
+        long[] oldPauseOffsets = pauseOffsets;
+        int[] oldEventMasks = eventMasks;
+        String[] oldPairingIds = pairingIds;
+        boolean[] oldDirty = dirty;
+        float[] oldRssiEstimates = rssiEstimates;
+        float[] oldRssiErrors = rssiErrors;
+        boolean[] oldRssiPending = rssiPending;
+        int[] oldNewerSlots = newerSlots;
+        int oldOldestSlot = oldestSlot;
+
+        allocate(oldBeaconIds.length * 2);
+        // walk the old slots in sighting order, so every slot is linked at the newest end in O(1)
+        for (int i = oldOldestSlot; i != NONE; i = oldNewerSlots[i]) {
+            int slot = hash(oldMost[i], oldLeast[i], oldMajorMinor[i]) & mask;
+            while (beaconIds[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            beaconIds[slot] = oldBeaconIds[i];
+            uuidMostSignificantBits[slot] = oldMost[i];
+            uuidLeastSignificantBits[slot] = oldLeast[i];
+            majorMinorIds[slot] = oldMajorMinor[i];
+            lastBeaconTimes[slot] = oldLastBeaconTimes[i];
+            pauseOffsets[slot] = oldPauseOffsets[i];
+            eventMasks[slot] = oldEventMasks[i];
+            pairingIds[slot] = oldPairingIds[i];
+            dirty[slot] = oldDirty[i];
+            rssiEstimates[slot] = oldRssiEstimates[i];
+            rssiErrors[slot] = oldRssiErrors[i];
+            rssiPending[slot] = oldRssiPending[i];
+            linkNewest(slot);
+            size++;
+        }
+    }
+
+    private EventEntry toEventEntry(int slot) {
+        return new EventEntry(lastBeaconTimes[slot], getScanPauseTime(slot), eventMasks[slot], pairingIds[slot]);
+    }
+
+    private static int packMajorMinor(int majorId, int minorId) {
+        return (majorId << 16) | (minorId & 0xFFFF);
+    }
+
+    private static int hash(long most, long least, int majorMinor) {
+        long hash = (most ^ (least * 31) ^ majorMinor) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
     }
 
     private HashMap<BeaconId, EventEntry> readBeaconEntriesFile(File file) {
@@ -107,4 +623,37 @@ public class BeaconMap {
         }
         return value;
     }
+
+    private class JournalReplay implements BeaconMapJournal.Listener {
+
+        @Override
+        public void onPut(long most, long least, int majorMinor, long lastBeaconTime, long scanPauseTime, int eventMask, String pairingId) {
+            BeaconId beaconId = new BeaconId(new UUID(most, least), majorMinor >>> 16, majorMinor & 0xFFFF);
+            insert(beaconId, most, least, majorMinor, lastBeaconTime, scanPauseTime, eventMask, pairingId);
+        }
+
+        @Override
+        public void onSeen(long most, long least, int majorMinor, long lastBeaconTime, long scanPauseTime) {
+            int slot = indexOf(most, least, majorMinor);
+            if (slot >= 0) {
+                lastBeaconTimes[slot] = lastBeaconTime;
+                pauseOffsets[slot] = totalScanPauseTime - scanPauseTime;
+                unlink(slot);
+                linkNewest(slot);
+            }
+        }
+
+        @Override
+        public void onRemove(long most, long least, int majorMinor) {
+            int slot = indexOf(most, least, majorMinor);
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+        }
+
+        @Override
+        public void onPause(long pause) {
+            totalScanPauseTime += pause;
+        }
+    }
 }
@@ -0,0 +1,331 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Class {@link BeaconMapJournal} persists a {@link BeaconMap} as an append only log of small binary records.
+ * <p>
+ * Records are collected in memory and written in batches, see {@link #takeBatch(boolean)}. When the log grows too large
+ * it is replaced by a snapshot of the current entries, written to a temporary file first and then renamed, so a crash
+ * never leaves a half written snapshot behind. A record that was cut off by a crash is ignored on {@link #replay(Listener)}.
+ */
+public class BeaconMapJournal {
+
+    static final int MAGIC = 0x53424a31; // "SBJ1"
+
+    static final byte RECORD_PUT = 1;
+
+    static final byte RECORD_SEEN = 2;
+
+    static final byte RECORD_REMOVE = 3;
+
+    static final byte RECORD_PAUSE = 4;
+
+    /**
+     * Minimum size of the log before it gets compacted.
+     */
+    private static final long MIN_COMPACTION_SIZE = 16 * 1024;
+
+    /**
+     * The log gets compacted once it is this many times larger than a snapshot of the entries would be.
+     */
+    private static final int COMPACTION_FACTOR = 4;
+
+    private static final int APPROXIMATE_PUT_RECORD_SIZE = 80;
+
+    public interface Listener {
+
+        void onPut(long most, long least, int majorMinor, long lastBeaconTime, long scanPauseTime, int eventMask, String pairingId);
+
+        void onSeen(long most, long least, int majorMinor, long lastBeaconTime, long scanPauseTime);
+
+        void onRemove(long most, long least, int majorMinor);
+
+        void onPause(long pause);
+    }
+
+    private final File file;
+
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+
+    /**
+     * Size of the log on disk, including all batches handed out by {@link #takeBatch(boolean)}. Reset to 0 when a
+     * batch could not be written, the log on disk is unknown then. Guarded by this journal, batches are written
+     * without the lock of the {@link BeaconMap}.
+     */
+    private long journalSize;
+
+    public BeaconMapJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Replays the log into the listener.
+     *
+     * @param listener the {@link Listener} receiving the records
+     * @return true if the complete log could be read, false if it is missing, not a log or ends with a broken record
+     */
+    public boolean replay(Listener listener) {
+        if (!file.exists()) {
+            return false;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != MAGIC) {
+                return false;
+            }
+            while (true) {
+                int type = input.read();
+                if (type == -1) {
+                    break;
+                }
+                switch (type) {
+                    case RECORD_PUT:
+                        listener.onPut(input.readLong(), input.readLong(), input.readInt(),
+                                input.readLong(), input.readLong(), input.readInt(), readPairingId(input));
+                        break;
+                    case RECORD_SEEN:
+                        listener.onSeen(input.readLong(), input.readLong(), input.readInt(), input.readLong(), input.readLong());
+                        break;
+                    case RECORD_REMOVE:
+                        listener.onRemove(input.readLong(), input.readLong(), input.readInt());
+                        break;
+                    case RECORD_PAUSE:
+                        listener.onPause(input.readLong());
+                        break;
+                    default:
+                        Logger.log.logError("unknown record " + type + " in the beacon journal");
+                        return false;
+                }
+            }
+            journalSize = file.length();
+            return true;
+        } catch (EOFException e) {
+            Logger.log.logError("beacon journal ends with an incomplete record", e);
+            return false;
+        } catch (IOException e) {
+            Logger.log.logError("error reading beacon journal", e);
+            return false;
+        } finally {
+            close(input);
+        }
+    }
+
+    public void logPut(long most, long least, int majorMinor, long lastBeaconTime, long scanPauseTime, int eventMask, String pairingId) {
+        try {
+            writePut(pending, most, least, majorMinor, lastBeaconTime, scanPauseTime, eventMask, pairingId);
+        } catch (IOException e) {
+            // cannot happen, we are writing to memory
+        }
+    }
+
+    public void logSeen(long most, long least, int majorMinor, long lastBeaconTime, long scanPauseTime) {
+        try {
+            writeKey(pending, RECORD_SEEN, most, least, majorMinor);
+            pending.writeLong(lastBeaconTime);
+            pending.writeLong(scanPauseTime);
+        } catch (IOException e) {
+            // cannot happen, we are writing to memory
+        }
+    }
+
+    public void logRemove(long most, long least, int majorMinor) {
+        try {
+            writeKey(pending, RECORD_REMOVE, most, least, majorMinor);
+        } catch (IOException e) {
+            // cannot happen, we are writing to memory
+        }
+    }
+
+    public void logPause(long pause) {
+        try {
+            pending.writeByte(RECORD_PAUSE);
+            pending.writeLong(pause);
+        } catch (IOException e) {
+            // cannot happen, we are writing to memory
+        }
+    }
+
+    /**
+     * Drops all pending records and deletes the log.
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public synchronized void clear() {
+        pendingBytes.reset();
+        journalSize = 0;
+        file.delete();
+    }
+
+    /**
+     * Returns true if the next batch has to be a snapshot of all entries, either because there is no valid log
+     * on disk yet or because the log has grown too large.
+     *
+     * @param entryCount the number of entries in the {@link BeaconMap}
+     * @return true if the next batch should be a snapshot
+     */
+    public synchronized boolean needsSnapshot(int entryCount) {
+        if (journalSize == 0) {
+            return true;
+        }
+        long size = journalSize + pendingBytes.size();
+        return size > MIN_COMPACTION_SIZE && size > (long) COMPACTION_FACTOR * entryCount * APPROXIMATE_PUT_RECORD_SIZE;
+    }
+
+    /**
+     * Hands out the pending records. Cheap, it only copies memory, the returned {@link Batch} does the disk I/O.
+     *
+     * @param snapshot true if the pending records are a complete snapshot that replaces the log, see {@link #needsSnapshot(int)}
+     * @return the {@link Batch} to write or null if there is nothing to write
+     */
+    public synchronized Batch takeBatch(boolean snapshot) {
+        if (pendingBytes.size() == 0 && !snapshot) {
+            return null;
+        }
+        byte[] records = pendingBytes.toByteArray();
+        pendingBytes.reset();
+        if (snapshot) {
+            journalSize = 4 + records.length;
+            return new Batch(this, records, true);
+        }
+        journalSize += records.length;
+        return new Batch(this, records, false);
+    }
+
+    /**
+     * Called when a {@link Batch} could not be written. A missing snapshot would leave the log without its header
+     * and a failed append may leave half a record behind, so the next batch has to be a snapshot again.
+     */
+    private synchronized void onBatchFailed() {
+        journalSize = 0;
+    }
+
+    /**
+     * Drops the pending records. Used before logging all entries for a snapshot, see {@link #takeBatch(boolean)}.
+     */
+    public void resetPending() {
+        pendingBytes.reset();
+    }
+
+    private static void writePut(DataOutputStream output, long most, long least, int majorMinor, long lastBeaconTime,
+            long scanPauseTime, int eventMask, String pairingId) throws IOException {
+        writeKey(output, RECORD_PUT, most, least, majorMinor);
+        output.writeLong(lastBeaconTime);
+        output.writeLong(scanPauseTime);
+        output.writeInt(eventMask);
+        output.writeBoolean(pairingId != null);
+        if (pairingId != null) {
+            output.writeUTF(pairingId);
+        }
+    }
+
+    private static void writeKey(DataOutputStream output, byte type, long most, long least, int majorMinor) throws IOException {
+        output.writeByte(type);
+        output.writeLong(most);
+        output.writeLong(least);
+        output.writeInt(majorMinor);
+    }
+
+    private static String readPairingId(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Logger.log.logError("error closing beacon journal", e);
+            }
+        }
+    }
+
+    /**
+     * A batch of records taken from the {@link BeaconMapJournal}. Writing it does not touch the {@link BeaconMap},
+     * so it can be done outside of the lock that guards the {@link BeaconMap}.
+     */
+    public static class Batch {
+
+        private final BeaconMapJournal journal;
+
+        private final File file;
+
+        private final byte[] records;
+
+        private final boolean snapshot;
+
+        Batch(BeaconMapJournal journal, byte[] records, boolean snapshot) {
+            this.journal = journal;
+            this.file = journal.file;
+            this.records = records;
+            this.snapshot = snapshot;
+        }
+
+        public boolean isSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * Appends the records to the log, or replaces the log if this is a snapshot. If that fails the journal takes
+         * a snapshot with its next batch.
+         *
+         * @return true if the records were written
+         */
+        public boolean write() {
+            boolean written = snapshot ? writeSnapshot() : append();
+            if (!written) {
+                journal.onBatchFailed();
+            }
+            return written;
+        }
+
+        private boolean append() {
+            FileOutputStream output = null;
+            try {
+                output = new FileOutputStream(file, true);
+                output.write(records);
+                return true;
+            } catch (IOException e) {
+                Logger.log.logError("error appending to beacon journal", e);
+                return false;
+            } finally {
+                close(output);
+            }
+        }
+
+        private boolean writeSnapshot() {
+            File temporary = new File(file.getPath() + ".tmp");
+            DataOutputStream output = null;
+            try {
+                output = new DataOutputStream(new FileOutputStream(temporary));
+                output.writeInt(MAGIC);
+                output.write(records);
+                output.close();
+                output = null;
+                if (!temporary.renameTo(file)) {
+                    Logger.log.logError("could not replace beacon journal with " + temporary);
+                    return false;
+                }
+                return true;
+            } catch (IOException e) {
+                Logger.log.logError("error writing beacon journal snapshot", e);
+                return false;
+            } finally {
+                close(output);
+            }
+        }
+    }
+}
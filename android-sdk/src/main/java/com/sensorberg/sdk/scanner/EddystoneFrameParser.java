@@ -0,0 +1,93 @@
+package com.sensorberg.sdk.scanner;
+
+/**
+ * Class {@link EddystoneFrameParser} decodes the Eddystone frames sent as service data of the 16 bit UUID 0xFEAA.
+ * One instance handles one frame type, see {@link #FRAME_UID}, {@link #FRAME_EID} and {@link #FRAME_TLM}.
+ */
+public class EddystoneFrameParser implements BeaconFrameParser {
+
+    public static final int FRAME_UID = 0x00;
+
+    public static final int FRAME_TLM = 0x20;
+
+    public static final int FRAME_EID = 0x30;
+
+    private static final int EDDYSTONE_SERVICE_UUID = 0xFEAA;
+
+    /**
+     * Eddystone sends the tx power at 0 meters, the scanner expects it at one meter like iBeacon.
+     */
+    private static final int LOSS_AT_ONE_METER = 41;
+
+    private static final int UID_FRAME_LENGTH = 18;
+
+    private static final int EID_FRAME_LENGTH = 10;
+
+    private static final int TLM_FRAME_LENGTH = 14;
+
+    private static final int TLM_VERSION_UNENCRYPTED = 0x00;
+
+    private final int frameCode;
+
+    /**
+     * @param frameCode the Eddystone frame type, one of {@link #FRAME_UID}, {@link #FRAME_EID} or {@link #FRAME_TLM}
+     */
+    public EddystoneFrameParser(int frameCode) {
+        if (frameCode != FRAME_UID && frameCode != FRAME_EID && frameCode != FRAME_TLM) {
+            throw new IllegalArgumentException("unsupported Eddystone frame type " + frameCode);
+        }
+        this.frameCode = frameCode;
+    }
+
+    @Override
+    public int getAdType() {
+        return AD_TYPE_SERVICE_DATA;
+    }
+
+    @Override
+    public int getIdentifier() {
+        return EDDYSTONE_SERVICE_UUID;
+    }
+
+    @Override
+    public int getFrameCode() {
+        return frameCode;
+    }
+
+    @Override
+    public boolean parse(byte[] scanRecord, int offset, int length, BeaconAdvertisement result) {
+        switch (frameCode) {
+            case FRAME_UID:
+                if (length < UID_FRAME_LENGTH) {
+                    return false;
+                }
+                result.set(BeaconAdvertisement.FRAME_EDDYSTONE_UID,
+                        BeaconAdvertisement.readLong(scanRecord, offset + 2),
+                        BeaconAdvertisement.readLong(scanRecord, offset + 10),
+                        0, 0, scanRecord[offset + 1] - LOSS_AT_ONE_METER);
+                return true;
+            case FRAME_EID:
+                if (length < EID_FRAME_LENGTH) {
+                    return false;
+                }
+                result.set(BeaconAdvertisement.FRAME_EDDYSTONE_EID,
+                        BeaconAdvertisement.readLong(scanRecord, offset + 2),
+                        0, 0, 0, scanRecord[offset + 1] - LOSS_AT_ONE_METER);
+                return true;
+            default:
+                if (length < TLM_FRAME_LENGTH || scanRecord[offset + 1] != TLM_VERSION_UNENCRYPTED) {
+                    return false;
+                }
+                result.setTelemetry(
+                        BeaconAdvertisement.readUnsignedShort(scanRecord, offset + 2),
+                        (short) BeaconAdvertisement.readUnsignedShort(scanRecord, offset + 4),
+                        readUnsignedInt(scanRecord, offset + 6),
+                        readUnsignedInt(scanRecord, offset + 10));
+                return true;
+        }
+    }
+
+    private static long readUnsignedInt(byte[] bytes, int offset) {
+        return ((long) BeaconAdvertisement.readUnsignedShort(bytes, offset) << 16) | BeaconAdvertisement.readUnsignedShort(bytes, offset + 2);
+    }
+}
@@ -0,0 +1,442 @@
+package com.sensorberg.sdk.scanner;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.google.gson.Gson;
+import com.sensorberg.sdk.internal.transport.model.HistoryRequestBody;
+import com.sensorberg.sdk.model.persistence.ActionConversion;
+import com.sensorberg.sdk.model.persistence.BeaconAction;
+import com.sensorberg.sdk.model.persistence.BeaconScan;
+import com.sensorberg.sdk.model.persistence.DwellSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Class {@link HistoryStore} keeps the history of the {@link BeaconActionHistoryPublisher} in an append-only SQLite
+ * table. Every scan, action and conversion is a row of its own with a sequence number, appending one is a single
+ * insert instead of rewriting the whole history.
+ * <p>
+ * A conversion replaces the not yet published conversion of the same action instance and gets a new sequence number.
+ * Uploads copy the stored JSON of the rows, see {@link Page}.
+ * <p>
+ * Publishing a page advances the committed cursor to its last sequence number, see {@link #commit(long)}. That is a
+ * single row update, the rows up to the cursor are ignored from then on and deleted later by {@link #compact()}. Rows
+ * appended while publishing are after the cursor and stay untouched.
+ * <p>
+ * Scans can be aggregated into {@link DwellSession}s instead, see {@link #addToSessions(Collection, long)}. The open
+ * sessions are kept in a table of their own, a session is appended to the history once it is closed.
+ */
+public class HistoryStore {
+
+    public static final String FILE_NAME = "com.sensorberg.sdk.History";
+
+    static final int KIND_SCAN = 1;
+
+    static final int KIND_ACTION = 2;
+
+    static final int KIND_CONVERSION = 3;
+
+    static final int KIND_SESSION = 4;
+
+    private static final String SESSION_COLUMNS = "_pid, _start, _end, _samples, _minRssi, _maxRssi, _location";
+
+    private final SQLiteDatabase database;
+
+    private final Gson gson;
+
+    private final SQLiteStatement appendStatement;
+
+    private final SQLiteStatement commitStatement;
+
+    /**
+     * The sequence number of the last published row.
+     */
+    private volatile long committed;
+
+    public HistoryStore(Context context, String fileName, Gson gson) {
+        this.database = new HistoryOpenHelper(context, fileName).getWritableDatabase();
+        this.gson = gson;
+        this.appendStatement = database.compileStatement("INSERT INTO Event (_kind, _json) VALUES (?, ?)");
+        this.commitStatement = database.compileStatement("UPDATE Cursor SET _seq = ? WHERE _name = 'committed'");
+        this.committed = DatabaseUtils.longForQuery(database, "SELECT _seq FROM Cursor WHERE _name = 'committed'", null);
+    }
+
+    public synchronized void addScans(Collection<BeaconScan> scans) {
+        database.beginTransaction();
+        try {
+            for (BeaconScan scan : scans) {
+                append(KIND_SCAN, gson.toJson(scan));
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    public synchronized void addActions(Collection<BeaconAction> actions) {
+        database.beginTransaction();
+        try {
+            for (BeaconAction action : actions) {
+                append(KIND_ACTION, gson.toJson(action));
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private void append(int kind, String json) {
+        appendStatement.bindLong(1, kind);
+        appendStatement.bindString(2, json);
+        appendStatement.executeInsert();
+    }
+
+    /**
+     * Aggregates scans into the open sessions of their beacons. An exit ends the session of the beacon, an entry
+     * within the merge gap after the exit continues it. A later entry closes the session and opens a new one.
+     *
+     * @param scanEvents the scans in the order they happened
+     * @param mergeGap   the longest time in milliseconds between an exit and an entry of the same session
+     */
+    public synchronized void addToSessions(Collection<ScanEvent> scanEvents, long mergeGap) {
+        database.beginTransaction();
+        try {
+            for (ScanEvent scanEvent : scanEvents) {
+                addToSession(scanEvent, mergeGap);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private void addToSession(ScanEvent scanEvent, long mergeGap) {
+        String pid = BeaconScan.pidOf(scanEvent);
+        long time = scanEvent.getEventTime();
+        DwellSession session = null;
+        boolean inside = false;
+        Cursor cursor = database.rawQuery("SELECT " + SESSION_COLUMNS + ", _inside FROM Session WHERE _pid = ?",
+                new String[]{pid});
+        try {
+            if (cursor.moveToFirst()) {
+                session = readSession(cursor);
+                inside = cursor.getInt(7) != 0;
+            }
+        } finally {
+            cursor.close();
+        }
+        if (session != null && scanEvent.isEntry() && !inside && time - session.getEnd() > mergeGap) {
+            closeSession(session);
+            session = null;
+        }
+        if (session == null) {
+            session = new DwellSession(pid, time, scanEvent.getGeohash());
+        }
+        //geofence events have no rssi
+        int rssi = scanEvent.getBeaconId().getGeofenceData() == null ? scanEvent.getInitialRssi() : Integer.MIN_VALUE;
+        session.add(time, rssi);
+
+        ContentValues values = new ContentValues(8);
+        values.put("_pid", pid);
+        values.put("_start", session.getStart());
+        values.put("_end", session.getEnd());
+        values.put("_samples", session.getSamples());
+        values.put("_minRssi", session.getMinRssi());
+        values.put("_maxRssi", session.getMaxRssi());
+        values.put("_location", session.getGeohash());
+        values.put("_inside", scanEvent.isEntry() ? 1 : 0);
+        database.insertWithOnConflict("Session", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Appends the sessions that ended before a time to the history. Sessions whose beacon did not exit are closed
+     * too if they were not continued for long, the exit may have been lost.
+     *
+     * @param exitedBefore closes the sessions that ended before
+     * @param seenBefore   closes the sessions without an exit whose last sample is before
+     * @return the number of closed sessions
+     */
+    synchronized int closeSessions(long exitedBefore, long seenBefore) {
+        List<DwellSession> sessions = new ArrayList<>();
+        Cursor cursor = database.rawQuery("SELECT " + SESSION_COLUMNS + " FROM Session WHERE (_inside = 0 AND _end < "
+                + exitedBefore + ") OR _end < " + seenBefore + " ORDER BY _end", null);
+        try {
+            while (cursor.moveToNext()) {
+                sessions.add(readSession(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+        database.beginTransaction();
+        try {
+            for (DwellSession session : sessions) {
+                closeSession(session);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return sessions.size();
+    }
+
+    private void closeSession(DwellSession session) {
+        append(KIND_SESSION, gson.toJson(session));
+        database.delete("Session", "_pid = ?", new String[]{session.getPid()});
+    }
+
+    private static DwellSession readSession(Cursor cursor) {
+        return new DwellSession(cursor.getString(0), cursor.getLong(1), cursor.getLong(2), cursor.getInt(3),
+                cursor.isNull(4) ? null : cursor.getInt(4), cursor.isNull(5) ? null : cursor.getInt(5), cursor.getString(6));
+    }
+
+    /**
+     * @return the number of sessions that are not closed yet
+     */
+    synchronized long openSessions() {
+        return DatabaseUtils.queryNumEntries(database, "Session");
+    }
+
+    /**
+     * Stores a conversion unless the stored conversion of the same action instance has the same or a higher type.
+     *
+     * @param conversion the new conversion
+     * @return true if it was stored
+     */
+    public synchronized boolean putConversion(ActionConversion conversion) {
+        database.beginTransaction();
+        try {
+            Cursor cursor = database.rawQuery("SELECT _rank FROM Event WHERE _key = ? AND _seq > " + committed,
+                    new String[]{conversion.getActionInstanceUuid()});
+            try {
+                if (cursor.moveToFirst() && conversion.getType() <= cursor.getInt(0)) {
+                    return false;
+                }
+            } finally {
+                cursor.close();
+            }
+            ContentValues values = new ContentValues(4);
+            values.put("_kind", KIND_CONVERSION);
+            values.put("_key", conversion.getActionInstanceUuid());
+            values.put("_rank", conversion.getType());
+            values.put("_json", gson.toJson(conversion));
+            database.insertWithOnConflict("Event", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            database.setTransactionSuccessful();
+            return true;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Selects the oldest rows after the committed cursor for an upload, they are not read before the upload is
+     * written.
+     *
+     * @param limit the maximum number of rows
+     * @return the page, empty if there is nothing to publish
+     */
+    synchronized Page nextPage(int limit) {
+        Page page = new Page(committed);
+        Cursor cursor = database.rawQuery("SELECT _kind, COUNT(*), MAX(_seq) FROM (SELECT _seq, _kind FROM Event "
+                + "WHERE _seq > " + page.afterSeq + " ORDER BY _seq LIMIT " + limit + ") GROUP BY _kind", null);
+        try {
+            while (cursor.moveToNext()) {
+                int count = cursor.getInt(1);
+                switch (cursor.getInt(0)) {
+                    case KIND_SCAN:
+                        page.scanCount = count;
+                        break;
+                    case KIND_ACTION:
+                        page.actionCount = count;
+                        break;
+                    case KIND_CONVERSION:
+                        page.conversionCount = count;
+                        break;
+                    case KIND_SESSION:
+                        page.sessionCount = count;
+                        break;
+                }
+                page.lastSeq = Math.max(page.lastSeq, cursor.getLong(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return page;
+    }
+
+    /**
+     * Copies the stored JSON of the rows of a kind in a range of sequence numbers. It does not lock the store,
+     * appending goes on while an upload is written.
+     */
+    private void writeRows(int kind, long afterSeq, long lastSeq, HistoryRequestBody.RowWriter out)
+            throws IOException {
+        Cursor cursor = database.rawQuery("SELECT _json FROM Event WHERE _seq > " + afterSeq + " AND _seq <= " + lastSeq
+                + " AND _kind = " + kind + " ORDER BY _seq", null);
+        try {
+            while (cursor.moveToNext()) {
+                out.write(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Advances the committed cursor, the rows up to and including the sequence number count as published.
+     *
+     * @param seq the sequence number of the last published row
+     */
+    synchronized void commit(long seq) {
+        if (seq <= committed) {
+            return;
+        }
+        commitStatement.bindLong(1, seq);
+        commitStatement.executeUpdateDelete();
+        committed = seq;
+    }
+
+    /**
+     * Deletes the published rows.
+     */
+    synchronized void compact() {
+        database.delete("Event", "_seq <= " + committed, null);
+    }
+
+    /**
+     * @return the number of rows that are not published yet
+     */
+    public synchronized long size() {
+        return DatabaseUtils.queryNumEntries(database, "Event", "_seq > " + committed);
+    }
+
+    /**
+     * @return the time an action was presented last, null if it was not presented yet
+     */
+    public synchronized Long getPresentationTime(String actionUuid) {
+        Cursor cursor = database.rawQuery("SELECT _time FROM Suppression WHERE _action = ?", new String[]{actionUuid});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public synchronized void putPresentationTime(String actionUuid, long time) {
+        ContentValues values = new ContentValues(2);
+        values.put("_action", actionUuid);
+        values.put("_time", time);
+        database.insertWithOnConflict("Suppression", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    public synchronized void deletePresentationTimesOlderThan(long time) {
+        database.execSQL("DELETE FROM Suppression WHERE _time <= " + time);
+    }
+
+    public synchronized void clear() {
+        database.execSQL("DELETE FROM Event");
+        database.execSQL("DELETE FROM Suppression");
+        database.execSQL("DELETE FROM Session");
+    }
+
+    /**
+     * The oldest rows of the history, written to an upload by their kind.
+     */
+    final class Page implements HistoryRequestBody.Rows {
+
+        /**
+         * The committed cursor when the page was selected, the page starts after it.
+         */
+        final long afterSeq;
+
+        int scanCount;
+
+        int actionCount;
+
+        int conversionCount;
+
+        int sessionCount;
+
+        /**
+         * The sequence number of the last row of the page, 0 if it is empty.
+         */
+        long lastSeq;
+
+        Page(long afterSeq) {
+            this.afterSeq = afterSeq;
+        }
+
+        boolean isEmpty() {
+            return lastSeq == 0;
+        }
+
+        @Override
+        public void writeScans(HistoryRequestBody.RowWriter out) throws IOException {
+            writeRows(KIND_SCAN, afterSeq, lastSeq, out);
+        }
+
+        @Override
+        public void writeActions(HistoryRequestBody.RowWriter out) throws IOException {
+            writeRows(KIND_ACTION, afterSeq, lastSeq, out);
+        }
+
+        @Override
+        public void writeConversions(HistoryRequestBody.RowWriter out) throws IOException {
+            writeRows(KIND_CONVERSION, afterSeq, lastSeq, out);
+        }
+
+        @Override
+        public void writeSessions(HistoryRequestBody.RowWriter out) throws IOException {
+            writeRows(KIND_SESSION, afterSeq, lastSeq, out);
+        }
+    }
+
+    class HistoryOpenHelper extends SQLiteOpenHelper {
+
+        private static final int VERSION = 3;
+
+        public HistoryOpenHelper(Context context, String name) {
+            super(context, name, null, VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase database) {
+            // AUTOINCREMENT never reuses the sequence numbers of deleted rows
+            database.execSQL("CREATE TABLE Event (_seq INTEGER PRIMARY KEY AUTOINCREMENT, _kind INTEGER NOT NULL, "
+                    + "_key TEXT UNIQUE, _rank INTEGER, _json TEXT NOT NULL)");
+            database.execSQL("CREATE TABLE Suppression (_action TEXT PRIMARY KEY, _time INTEGER NOT NULL)");
+            createCursor(database);
+            createSession(database);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+            if (oldVersion < 2) {
+                createCursor(database);
+            }
+            if (oldVersion < 3) {
+                createSession(database);
+            }
+        }
+
+        private void createCursor(SQLiteDatabase database) {
+            database.execSQL("CREATE TABLE Cursor (_name TEXT PRIMARY KEY, _seq INTEGER NOT NULL)");
+            database.execSQL("INSERT INTO Cursor (_name, _seq) VALUES ('committed', 0)");
+        }
+
+        private void createSession(SQLiteDatabase database) {
+            database.execSQL("CREATE TABLE Session (_pid TEXT PRIMARY KEY, _start INTEGER NOT NULL, _end INTEGER NOT NULL, "
+                    + "_samples INTEGER NOT NULL, _minRssi INTEGER, _maxRssi INTEGER, _location TEXT, _inside INTEGER NOT NULL)");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.sensorberg.sdk.scanner;
+
+/**
+ * Class {@link IBeaconFrameParser} decodes Apple iBeacon frames: type 0x02, length 0x15, proximity UUID, major, minor
+ * and the calibrated tx power at one meter.
+ */
+public class IBeaconFrameParser implements BeaconFrameParser {
+
+    private static final int APPLE_COMPANY_ID = 0x004C;
+
+    private static final int FRAME_LENGTH = 23;
+
+    @Override
+    public int getAdType() {
+        return AD_TYPE_MANUFACTURER_SPECIFIC_DATA;
+    }
+
+    @Override
+    public int getIdentifier() {
+        return APPLE_COMPANY_ID;
+    }
+
+    @Override
+    public int getFrameCode() {
+        return 0x02;
+    }
+
+    @Override
+    public boolean parse(byte[] scanRecord, int offset, int length, BeaconAdvertisement result) {
+        if (length < FRAME_LENGTH || scanRecord[offset + 1] != 0x15) {
+            return false;
+        }
+        result.set(scanRecord, offset + 2);
+        return true;
+    }
+}
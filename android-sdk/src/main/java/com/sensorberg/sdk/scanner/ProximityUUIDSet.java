@@ -0,0 +1,146 @@
+package com.sensorberg.sdk.scanner;
+
+import com.sensorberg.sdk.Logger;
+
+import java.util.Collection;
+
+/**
+ * Class {@link ProximityUUIDSet} is an immutable set of proximity UUIDs, stored as pairs of longs in an open addressing
+ * table so a parsed {@link BeaconAdvertisement} can be checked without allocating. A set without any proximity UUID
+ * accepts every beacon, see {@link #ALL}.
+ * <p>
+ * The set is never changed, a new one is built whenever the proximity UUIDs of the account change and swapped in
+ * as a whole.
+ */
+public final class ProximityUUIDSet {
+
+    /**
+     * Accepts every proximity UUID.
+     */
+    public static final ProximityUUIDSet ALL = new ProximityUUIDSet(new long[0], 0, false);
+
+    /**
+     * Most and least significant bits of slot i at 2 * i and 2 * i + 1, the pair (0, 0) marks an empty slot.
+     */
+    private final long[] table;
+
+    private final int mask;
+
+    /**
+     * The UUID 00000000-0000-0000-0000-000000000000 cannot be stored in the table.
+     */
+    private final boolean containsZero;
+
+    private ProximityUUIDSet(long[] table, int mask, boolean containsZero) {
+        this.table = table;
+        this.mask = mask;
+        this.containsZero = containsZero;
+    }
+
+    /**
+     * Builds the set of the given proximity UUIDs.
+     *
+     * @param proximityUUIDs the proximity UUIDs as 32 hexadecimal characters without dashes, invalid ones are skipped
+     * @return the set, {@link #ALL} if no valid proximity UUID was given
+     */
+    public static ProximityUUIDSet from(Collection<String> proximityUUIDs) {
+        int capacity = 2;
+        while (capacity < proximityUUIDs.size() * 2) {
+            capacity <<= 1;
+        }
+        long[] table = new long[capacity * 2];
+        int mask = capacity - 1;
+        boolean containsZero = false;
+        int count = 0;
+        for (String proximityUUID : proximityUUIDs) {
+            if (proximityUUID == null || proximityUUID.length() != 32) {
+                Logger.log.logError("Invalid proximityUUID for the scanner: " + proximityUUID);
+                continue;
+            }
+            long mostSignificantBits;
+            long leastSignificantBits;
+            try {
+                mostSignificantBits = parseHex(proximityUUID, 0);
+                leastSignificantBits = parseHex(proximityUUID, 16);
+            } catch (NumberFormatException e) {
+                Logger.log.logError("Invalid proximityUUID for the scanner: " + proximityUUID);
+                continue;
+            }
+            count++;
+            if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+                containsZero = true;
+                continue;
+            }
+            int slot = slot(mostSignificantBits, leastSignificantBits, mask);
+            while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+                if (table[slot * 2] == mostSignificantBits && table[slot * 2 + 1] == leastSignificantBits) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot * 2] = mostSignificantBits;
+            table[slot * 2 + 1] = leastSignificantBits;
+        }
+        return count == 0 ? ALL : new ProximityUUIDSet(table, mask, containsZero);
+    }
+
+    /**
+     * Returns true if the set accepts every proximity UUID.
+     *
+     * @return true for {@link #ALL}
+     */
+    public boolean acceptsAll() {
+        return table.length == 0;
+    }
+
+    /**
+     * Checks a proximity UUID without allocating.
+     *
+     * @param mostSignificantBits  the most significant bits of the proximity UUID
+     * @param leastSignificantBits the least significant bits of the proximity UUID
+     * @return true if the set contains the proximity UUID or accepts all
+     */
+    public boolean accepts(long mostSignificantBits, long leastSignificantBits) {
+        if (table.length == 0) {
+            return true;
+        }
+        if (mostSignificantBits == 0 && leastSignificantBits == 0) {
+            return containsZero;
+        }
+        int slot = slot(mostSignificantBits, leastSignificantBits, mask);
+        while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+            if (table[slot * 2] == mostSignificantBits && table[slot * 2 + 1] == leastSignificantBits) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Checks the proximity UUID of the last frame decoded into the {@link BeaconAdvertisement}.
+     *
+     * @param advertisement a decoded {@link BeaconAdvertisement} with a beacon id
+     * @return true if the set contains the proximity UUID or accepts all
+     */
+    public boolean accepts(BeaconAdvertisement advertisement) {
+        return accepts(advertisement.getUuidMostSignificantBits(), advertisement.getUuidLeastSignificantBits());
+    }
+
+    private static int slot(long mostSignificantBits, long leastSignificantBits, int mask) {
+        long hash = (mostSignificantBits ^ (leastSignificantBits * 31)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static long parseHex(String value, int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit == -1) {
+                throw new NumberFormatException(value);
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+}
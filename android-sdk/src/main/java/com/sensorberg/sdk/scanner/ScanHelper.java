@@ -40,6 +40,22 @@ public final class ScanHelper {
     }
 
     public static Pair<BeaconId, Integer> getBeaconID(byte[] advertisement) {
+        BeaconAdvertisement beacon = new BeaconAdvertisement();
+        if (!parseBeacon(advertisement, beacon)) {
+            return null;
+        }
+        return Pair.create(beacon.toBeaconId(), beacon.getCalibratedTxPower());
+    }
+
+    /**
+     * Decodes an iBeacon advertisement in place. Nothing is allocated, the decoded values are written to the
+     * provided {@link BeaconAdvertisement}, which can be reused for the next scan record.
+     *
+     * @param advertisement the raw scan record
+     * @param result        the {@link BeaconAdvertisement} to fill
+     * @return true if the scan record contains an iBeacon advertisement, in which case result holds its values
+     */
+    public static boolean parseBeacon(byte[] advertisement, BeaconAdvertisement result) {
         try {
             int packetLength;
             int offset = 0;
@@ -47,26 +63,18 @@ public final class ScanHelper {
                 packetLength = advertisement[offset]; //first byte has the length
                 offset++;
                 if (packetLength >= MINIMUM_BEACON_PACKET_LENGTH && matchesBeaconHeader(advertisement, offset)){
-                    return toBeaconData(advertisement, offset + ADVERTISEMENT_HEADER_LENGTH + 1); //ignore one more byte after the header
+                    result.set(advertisement, offset + ADVERTISEMENT_HEADER_LENGTH + 1); //ignore one more byte after the header
+                    return true;
                 }
                 offset += packetLength; //let` move to the next package
 
             } while (packetLength > 0 && offset < advertisement.length);
-            return null;
+            return false;
         } catch (ArrayIndexOutOfBoundsException e){ //let´s be extra safe here in case the beacon advertising is broken.
-            return null;
+            return false;
         }
     }
 
-    private static Pair<BeaconId, Integer> toBeaconData(byte[] advertisement, int offset) {
-        byte[] beaconIdBytes = new byte[20];
-        java.lang.System.arraycopy(advertisement, offset, beaconIdBytes, 0, 20);
-        BeaconId beaconId = new BeaconId(beaconIdBytes);
-        int calibratedTXpower = (int) advertisement[offset + 20];
-        return Pair.create(beaconId, calibratedTXpower);
-    }
-
-
     private static boolean matchesBeaconHeader(byte[] advertisement, int offset) {
         for (int i = 0 ; i < ADVERTISEMENT_HEADER.length ; i++){
             if (advertisement[i + offset] != ADVERTISEMENT_HEADER[i]){
@@ -0,0 +1,128 @@
+package com.sensorberg.sdk.scanner;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class {@link ScanRecordRing} hands raw scan records from the bluetooth callback thread to the scanner thread.
+ * <p>
+ * It is a single producer, single consumer ring buffer: exactly one thread may call {@link #offer(String, int, byte[])}
+ * and exactly one other thread may call {@link #drain(Consumer)}. All slots are allocated up front and neither side
+ * ever takes a lock, so the bluetooth thread is never blocked by the scanner. When the ring is full the record is
+ * dropped and counted, see {@link #getDroppedCount()}.
+ */
+public class ScanRecordRing {
+
+    /**
+     * Maximum length of a legacy advertisement including the scan response. Longer records are cut off,
+     * the iBeacon data is always in the advertisement part.
+     */
+    static final int MAX_RECORD_LENGTH = 62;
+
+    public interface Consumer {
+
+        /**
+         * Called on the consumer thread for every record. The record array is reused once this method returns.
+         *
+         * @param address    the address of the device or null
+         * @param rssi       the rssi of the advertisement
+         * @param scanRecord the raw scan record, padded with zeros
+         */
+        void onScanRecord(String address, int rssi, byte[] scanRecord);
+    }
+
+    private final int mask;
+
+    private final byte[][] records;
+
+    private final int[] rssis;
+
+    private final String[] addresses;
+
+    /**
+     * Index of the next slot to write, only written by the producer.
+     */
+    private final AtomicLong writeIndex = new AtomicLong();
+
+    /**
+     * Index of the next slot to read, only written by the consumer.
+     */
+    private final AtomicLong readIndex = new AtomicLong();
+
+    /**
+     * Only written by the producer.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    /**
+     * @param capacity the minimum number of records the ring can hold, rounded up to the next power of two
+     */
+    public ScanRecordRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mask = size - 1;
+        records = new byte[size][MAX_RECORD_LENGTH];
+        rssis = new int[size];
+        addresses = new String[size];
+    }
+
+    /**
+     * Copies the scan record into the ring. Only to be called by the producer thread.
+     *
+     * @param address    the address of the device or null
+     * @param rssi       the rssi of the advertisement
+     * @param scanRecord the raw scan record
+     * @return true if the consumer has to be woken up, false if a drain is already pending or the record was dropped
+     */
+    public boolean offer(String address, int rssi, byte[] scanRecord) {
+        long write = writeIndex.get();
+        if (write - readIndex.get() > mask) {
+            droppedCount.lazySet(droppedCount.get() + 1);
+            return false;
+        }
+        int slot = (int) write & mask;
+        byte[] record = records[slot];
+        int length = Math.min(scanRecord.length, MAX_RECORD_LENGTH);
+        System.arraycopy(scanRecord, 0, record, 0, length);
+        Arrays.fill(record, length, MAX_RECORD_LENGTH, (byte) 0);
+        rssis[slot] = rssi;
+        addresses[slot] = address;
+        writeIndex.lazySet(write + 1);
+        return drainRequested.compareAndSet(false, true);
+    }
+
+    /**
+     * Hands all records that are in the ring to the {@link Consumer}. Only to be called by the consumer thread.
+     * Records offered while draining either end up in this batch or request the next drain.
+     *
+     * @param consumer the {@link Consumer} receiving the records
+     * @return the number of records handed to the {@link Consumer}
+     */
+    public int drain(Consumer consumer) {
+        drainRequested.set(false);
+        long read = readIndex.get();
+        long write = writeIndex.get();
+        for (long i = read; i < write; i++) {
+            int slot = (int) i & mask;
+            consumer.onScanRecord(addresses[slot], rssis[slot], records[slot]);
+            addresses[slot] = null;
+        }
+        readIndex.lazySet(write);
+        return (int) (write - read);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of records dropped because the ring was full.
+     *
+     * @return the number of dropped records since the ring was created
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
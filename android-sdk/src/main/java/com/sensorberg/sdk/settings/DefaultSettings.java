@@ -52,5 +52,15 @@ public class DefaultSettings {
 
     public static final int DEFAULT_SCANNER_MAX_DISTANCE = Integer.MAX_VALUE;
 
+    public static final int DEFAULT_SCANNER_RECORD_BUFFER_SIZE = 0; //scan records are processed on the bluetooth thread
+
+    public static final long DEFAULT_SCANNER_RSSI_DISPATCH_INTERVAL = TimeConstants.ONE_SECOND;
+
+    public static final long DEFAULT_SCANNER_MIN_WAIT_TIME = 0; //the wait times are used as configured
+
+    public static final long DEFAULT_SCANNER_MAX_WAIT_TIME = 0; //the wait times are used as configured
+
     public static final int DEFAULT_INITIAL_GEOFENCES_SEARCH_RADIUS = 100 * 1000; //meters, 100 km
+
+    public static final long DEFAULT_DWELL_SESSION_MERGE_GAP = -1; //the scans are not aggregated into dwell sessions
 }
@@ -129,6 +129,32 @@ public class Settings {
     @SerializedName("scanner.maximumAcceptableDistanceMeters")
     private int scannerMaxDistance = DefaultSettings.DEFAULT_SCANNER_MAX_DISTANCE;
 
+    /**
+     * Number of scan records buffered between the bluetooth thread and the scanner thread.
+     * 0 processes the records directly on the bluetooth thread.
+     */
+    @Getter
+    @Expose
+    @SerializedName("scanner.recordBufferSize")
+    private int scannerRecordBufferSize = DefaultSettings.DEFAULT_SCANNER_RECORD_BUFFER_SIZE;
+
+    /**
+     * Shortest wait between two scans the adaptive duty cycle may choose.
+     * The wait times are adapted only if this and {@link #scannerMaxWaitTime} are above 0.
+     */
+    @Getter
+    @Expose
+    @SerializedName("scanner.minWaitTime")
+    private long scannerMinWaitTime = DefaultSettings.DEFAULT_SCANNER_MIN_WAIT_TIME;
+
+    /**
+     * Longest wait between two scans the adaptive duty cycle may choose.
+     */
+    @Getter
+    @Expose
+    @SerializedName("scanner.maxWaitTime")
+    private long scannerMaxWaitTime = DefaultSettings.DEFAULT_SCANNER_MAX_WAIT_TIME;
+
     /**
      * Beacon report level.
      * REPORT_ALL = 0;
@@ -140,6 +166,15 @@ public class Settings {
     @SerializedName("network.beaconReportLevel")
     private int beaconReportLevel = DefaultSettings.DEFAULT_BEACON_REPORT_LEVEL;
 
+    /**
+     * Longest time between the exit and the next entry of a beacon that are aggregated into the same dwell session.
+     * The scans are reported one by one if it is negative, 0 only aggregates an entry with its exit.
+     */
+    @Getter
+    @Expose
+    @SerializedName("network.dwellSessionMergeGap")
+    private long dwellSessionMergeGap = DefaultSettings.DEFAULT_DWELL_SESSION_MERGE_GAP;
+
     public static final int BEACON_REPORT_LEVEL_ALL = 0;
     public static final int BEACON_REPORT_LEVEL_ONLY_CONTAINED = 1;
     public static final int BEACON_REPORT_LEVEL_NONE = 2;
@@ -197,10 +232,18 @@ public class Settings {
                     DefaultSettings.DEFAULT_SHOULD_RESTORE_BEACON_STATE);
             beaconReportLevel = preferences.getInt(SharedPreferencesKeys.Network.BEACON_REPORT_LEVEL,
                     DefaultSettings.DEFAULT_BEACON_REPORT_LEVEL);
+            dwellSessionMergeGap = preferences.getLong(SharedPreferencesKeys.Network.DWELL_SESSION_MERGE_GAP,
+                    DefaultSettings.DEFAULT_DWELL_SESSION_MERGE_GAP);
             scannerMinRssi = preferences.getInt(SharedPreferencesKeys.Scanner.MIN_RSSI,
                     DefaultSettings.DEFAULT_SCANNER_MIN_RSSI);
             scannerMaxDistance = preferences.getInt(SharedPreferencesKeys.Scanner.MAX_DISTANCE,
                     DefaultSettings.DEFAULT_SCANNER_MAX_DISTANCE);
+            scannerRecordBufferSize = preferences.getInt(SharedPreferencesKeys.Scanner.RECORD_BUFFER_SIZE,
+                    DefaultSettings.DEFAULT_SCANNER_RECORD_BUFFER_SIZE);
+            scannerMinWaitTime = preferences.getLong(SharedPreferencesKeys.Scanner.MIN_WAIT_TIME,
+                    DefaultSettings.DEFAULT_SCANNER_MIN_WAIT_TIME);
+            scannerMaxWaitTime = preferences.getLong(SharedPreferencesKeys.Scanner.MAX_WAIT_TIME,
+                    DefaultSettings.DEFAULT_SCANNER_MAX_WAIT_TIME);
         }
     }
 
@@ -226,8 +269,12 @@ public class Settings {
         millisBetweenRetries = newSettings.getMillisBetweenRetries();
         shouldRestoreBeaconStates = newSettings.isShouldRestoreBeaconStates();
         beaconReportLevel = newSettings.getBeaconReportLevel();
+        dwellSessionMergeGap = newSettings.getDwellSessionMergeGap();
         scannerMinRssi = newSettings.getScannerMinRssi();
         scannerMaxDistance = newSettings.getScannerMaxDistance();
+        scannerRecordBufferSize = newSettings.getScannerRecordBufferSize();
+        scannerMinWaitTime = newSettings.getScannerMinWaitTime();
+        scannerMaxWaitTime = newSettings.getScannerMaxWaitTime();
 
         if (rev >= 0) {
             revision = rev;
@@ -284,8 +331,12 @@ public class Settings {
             editor.putLong(SharedPreferencesKeys.Network.HISTORY_UPLOAD_INTERVAL, historyUploadInterval);
             editor.putLong(SharedPreferencesKeys.Network.BEACON_LAYOUT_UPDATE_INTERVAL, layoutUpdateInterval);
             editor.putInt(SharedPreferencesKeys.Network.BEACON_REPORT_LEVEL, beaconReportLevel);
+            editor.putLong(SharedPreferencesKeys.Network.DWELL_SESSION_MERGE_GAP, dwellSessionMergeGap);
             editor.putInt(SharedPreferencesKeys.Scanner.MIN_RSSI, scannerMinRssi);
             editor.putInt(SharedPreferencesKeys.Scanner.MAX_DISTANCE, scannerMaxDistance);
+            editor.putInt(SharedPreferencesKeys.Scanner.RECORD_BUFFER_SIZE, scannerRecordBufferSize);
+            editor.putLong(SharedPreferencesKeys.Scanner.MIN_WAIT_TIME, scannerMinWaitTime);
+            editor.putLong(SharedPreferencesKeys.Scanner.MAX_WAIT_TIME, scannerMaxWaitTime);
 
             editor.apply();
         }
@@ -328,5 +379,16 @@ public class Settings {
             return this;
         }
 
+        public Builder withScannerRecordBufferSize(int bufferSize) {
+            settings.scannerRecordBufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder withScannerWaitTimeBounds(long minWaitTime, long maxWaitTime) {
+            settings.scannerMinWaitTime = minWaitTime;
+            settings.scannerMaxWaitTime = maxWaitTime;
+            return this;
+        }
+
     }
 }
@@ -33,10 +33,15 @@ public class SettingsManager {
     }
 
     protected void updateSettings(Settings stgs) {
+        Settings previous = settings;
         settings = stgs;
         messageDelayWindowLengthListener.setMessageDelayWindowLength(getMessageDelayWindowLength());
 
         settings.persistToPreferences(preferences);
+
+        if (previous != null && previous.getBeaconReportLevel() != settings.getBeaconReportLevel()) {
+            settingsUpdateCallback.onBeaconReportLevelChange(settings.getBeaconReportLevel());
+        }
     }
 
     public void updateSettingsFromNetwork() {
@@ -186,6 +191,22 @@ public class SettingsManager {
         return getSettings().getScannerMaxDistance();
     }
 
+    public int getScannerRecordBufferSize() {
+        return getSettings().getScannerRecordBufferSize();
+    }
+
+    public long getScannerMinWaitTime() {
+        return getSettings().getScannerMinWaitTime();
+    }
+
+    public long getScannerMaxWaitTime() {
+        return getSettings().getScannerMaxWaitTime();
+    }
+
+    public long getDwellSessionMergeGap() {
+        return getSettings().getDwellSessionMergeGap();
+    }
+
     public long getMessageDelayWindowLength() {
         return getSettings().getMessageDelayWindowLength();
     }
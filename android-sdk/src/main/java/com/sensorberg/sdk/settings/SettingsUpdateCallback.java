@@ -17,6 +17,11 @@ public interface SettingsUpdateCallback {
         public void onHistoryUploadIntervalChange(long newHistoryUploadInterval) {
 
         }
+
+        @Override
+        public void onBeaconReportLevelChange(int newBeaconReportLevel) {
+
+        }
     };
 
     void onSettingsUpdateIntervalChange(Long updateIntervalMillies);
@@ -24,4 +29,6 @@ public interface SettingsUpdateCallback {
     void onSettingsBeaconLayoutUpdateIntervalChange(long newLayoutUpdateInterval);
 
     void onHistoryUploadIntervalChange(long newHistoryUploadInterval);
+
+    void onBeaconReportLevelChange(int newBeaconReportLevel);
 }
@@ -26,6 +26,12 @@ public final class SharedPreferencesKeys {
 
         public static final String MAX_DISTANCE = "com.sensorberg.preferences.settings.scannerMaxDistance";
 
+        public static final String RECORD_BUFFER_SIZE = "com.sensorberg.preferences.settings.scannerRecordBufferSize";
+
+        public static final String MIN_WAIT_TIME = "com.sensorberg.preferences.scanner.minWaitTime";
+
+        public static final String MAX_WAIT_TIME = "com.sensorberg.preferences.scanner.maxWaitTime";
+
         private Scanner() {
             throw new IllegalAccessError("Utility class");
         }
@@ -88,8 +94,12 @@ public final class SharedPreferencesKeys {
 
         public static final String BEACON_REPORT_LEVEL = "com.sensorberg.preferences.network.beaconReportLevel";
 
+        public static final String DWELL_SESSION_MERGE_GAP = "com.sensorberg.preferences.network.dwellSessionMergeGap";
+
         public static final String KEY_RESOLVE_RESPONSE = "com.sensorberg.preferences.transport.resolved";
 
+        public static final String KEY_COMPACT_HISTORY = "com.sensorberg.preferences.transport.compactHistory";
+
         private Network() {
             throw new IllegalAccessError("Utility class");
         }